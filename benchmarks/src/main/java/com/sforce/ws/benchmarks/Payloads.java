@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.sforce.ws.parser.XmlOutputStream;
+import com.sforce.ws.wsdl.Constants;
+
+/**
+ * Builds the documents the benchmarks read and write. Partner payloads follow the shape of a
+ * partner API queryResponse, with records left without xsi:type so they bind to plain XmlObjects
+ * instead of needing partner stubs. Typed payloads match the stubs wsdlc generates from the
+ * QueryIteratorTest and ToStringTest WSDLs.
+ */
+final class Payloads {
+    static final String PARTNER_NS = "urn:partner.soap.sforce.com";
+    static final String QUERY_NS = "urn:query.sample.com";
+    static final String PURCHASE_ORDER_NS = "http://www.w3.org/purchaseOrder";
+    static final int WIDE_FIELDS = 2000;
+
+    private Payloads() {
+    }
+
+    /**
+     * SOAP queryResponse with the given number of sObject records, each with fieldCount fields
+     */
+    static byte[] partnerQueryResponse(int records, int fieldCount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XmlOutputStream out = new XmlOutputStream(bytes, false);
+        out.setPrefix("soapenv", Constants.SOAP_ENVELOPE_NS);
+        out.setPrefix("xsi", Constants.SCHEMA_INSTANCE_NS);
+        out.setPrefix("", PARTNER_NS);
+        out.setPrefix("sf", Constants.PARTNER_SOBJECT_NS);
+        out.startDocument();
+        out.writeStartTag(Constants.SOAP_ENVELOPE_NS, "Envelope");
+        out.writeStartTag(Constants.SOAP_ENVELOPE_NS, "Body");
+        out.writeStartTag(PARTNER_NS, "queryResponse");
+        out.writeStartTag(PARTNER_NS, "result");
+        out.writeStringElement(PARTNER_NS, "done", "true");
+        out.writeStartTag(PARTNER_NS, "queryLocator");
+        out.writeAttribute(Constants.SCHEMA_INSTANCE_NS, "nil", "true");
+        out.writeEndTag(PARTNER_NS, "queryLocator");
+        for (int r = 0; r < records; r++) {
+            writePartnerRecord(out, r, fieldCount);
+        }
+        out.writeStringElement(PARTNER_NS, "size", String.valueOf(records));
+        out.writeEndTag(PARTNER_NS, "result");
+        out.writeEndTag(PARTNER_NS, "queryResponse");
+        out.writeEndTag(Constants.SOAP_ENVELOPE_NS, "Body");
+        out.writeEndTag(Constants.SOAP_ENVELOPE_NS, "Envelope");
+        out.endDocument();
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static void writePartnerRecord(XmlOutputStream out, int r, int fieldCount) throws IOException {
+        out.writeStartTag(PARTNER_NS, "records");
+        out.writeStringElement(Constants.PARTNER_SOBJECT_NS, "type", "Account");
+        out.writeStringElement(Constants.PARTNER_SOBJECT_NS, "Id", recordId(r));
+        for (int f = 0; f < fieldCount; f++) {
+            out.writeStringElement(Constants.PARTNER_SOBJECT_NS, fieldName(f), fieldValue(r, f));
+        }
+        out.writeEndTag(PARTNER_NS, "records");
+    }
+
+    /**
+     * a com.sample.query QueryResult document with the given number of records
+     */
+    static byte[] typedQueryResult(int records) {
+        StringBuilder xml = new StringBuilder(64 * records + 256);
+        xml.append("<result xmlns=\"").append(QUERY_NS).append("\" xmlns:xsi=\"")
+                .append(Constants.SCHEMA_INSTANCE_NS).append("\">");
+        xml.append("<done>true</done><queryLocator xsi:nil=\"true\"/>");
+        for (int r = 0; r < records; r++) {
+            xml.append("<records><name>").append(escape(fieldValue(r, 0))).append("</name></records>");
+        }
+        xml.append("<size>").append(records).append("</size></result>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * a com.sforce.soap.purchaseOrder BigType document with all of its fields set
+     */
+    static byte[] wideRecord() {
+        StringBuilder xml = new StringBuilder(40 * WIDE_FIELDS);
+        xml.append("<bigType xmlns=\"").append(PURCHASE_ORDER_NS).append("\">");
+        for (int f = 1; f <= WIDE_FIELDS; f++) {
+            xml.append("<field").append(f).append(" xmlns=\"\">").append(escape(fieldValue(0, f)))
+                    .append("</field").append(f).append(">");
+        }
+        xml.append("</bigType>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;");
+    }
+
+    static String recordId(int r) {
+        String n = Integer.toString(r, 36);
+        return "001000000000000".substring(0, 15 - n.length()) + n;
+    }
+
+    static String fieldName(int f) {
+        return "Field" + f + "__c";
+    }
+
+    static String fieldValue(int r, int f) {
+        return "Value " + r + "/" + f + " & more";
+    }
+}
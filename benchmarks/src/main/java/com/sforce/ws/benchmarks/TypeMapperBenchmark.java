@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sforce.soap.purchaseOrder.BigType;
+import com.sample.query.QueryResult;
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.bind.TypeInfo;
+import com.sforce.ws.bind.TypeMapper;
+import com.sforce.ws.bind.XMLizable;
+import com.sforce.ws.bind.XmlObject;
+import com.sforce.ws.parser.PullParserException;
+import com.sforce.ws.parser.XmlInputStream;
+import com.sforce.ws.parser.XmlOutputStream;
+import com.sforce.ws.wsdl.Constants;
+
+/**
+ * Binding through TypeMapper.readObject and XMLizable.write: generated enterprise style stubs,
+ * a 2000 field generated type and partner style XmlObject records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeMapperBenchmark {
+    private static final QName TYPED_RESULT = new QName(Payloads.QUERY_NS, "result");
+    private static final QName WIDE_RECORD = new QName(Payloads.PURCHASE_ORDER_NS, "bigType");
+    private static final QName PARTNER_RESULT = new QName(Payloads.PARTNER_NS, "result");
+
+    @Param({"200"})
+    public int records;
+
+    @Param({"50"})
+    public int fields;
+
+    private final TypeMapper typeMapper = new TypeMapper();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+
+    private byte[] typedXml;
+    private byte[] wideXml;
+    private byte[] partnerXml;
+    private QueryResult typedResult;
+    private BigType wideRecord;
+    private XmlObject partnerResult;
+
+    @Setup
+    public void setup() throws IOException, ConnectionException, PullParserException {
+        typedXml = Payloads.typedQueryResult(records);
+        wideXml = Payloads.wideRecord();
+        partnerXml = Payloads.partnerQueryResponse(records, fields);
+        typedResult = readTypedQueryResult();
+        wideRecord = readWideRecord();
+        partnerResult = readPartnerRecords();
+        if (typedResult.getRecords().length != records || wideRecord.getField2000() == null
+                || partnerResult.getField("size") == null) {
+            throw new IllegalStateException("benchmark payloads did not bind");
+        }
+    }
+
+    @Benchmark
+    public QueryResult readTypedQueryResult() throws IOException, ConnectionException, PullParserException {
+        XmlInputStream in = open(typedXml);
+        return (QueryResult) typeMapper.readObject(in, element(TYPED_RESULT), QueryResult.class);
+    }
+
+    @Benchmark
+    public BigType readWideRecord() throws IOException, ConnectionException, PullParserException {
+        XmlInputStream in = open(wideXml);
+        return (BigType) typeMapper.readObject(in, element(WIDE_RECORD), BigType.class);
+    }
+
+    @Benchmark
+    public XmlObject readPartnerRecords() throws IOException, ConnectionException, PullParserException {
+        XmlInputStream in = open(partnerXml);
+        in.nextTag(); // Envelope
+        in.nextTag(); // Body
+        in.nextTag(); // queryResponse
+        in.peekTag();
+        return (XmlObject) typeMapper.readObject(in, element(PARTNER_RESULT), XmlObject.class);
+    }
+
+    @Benchmark
+    public int writeTypedQueryResult() throws IOException {
+        return write(typedResult, TYPED_RESULT);
+    }
+
+    @Benchmark
+    public int writeWideRecord() throws IOException {
+        return write(wideRecord, WIDE_RECORD);
+    }
+
+    @Benchmark
+    public int writePartnerRecords() throws IOException {
+        return write(partnerResult, PARTNER_RESULT);
+    }
+
+    private static XmlInputStream open(byte[] xml) throws IOException, ConnectionException, PullParserException {
+        XmlInputStream in = new XmlInputStream();
+        in.setInput(new ByteArrayInputStream(xml), "UTF-8");
+        in.peekTag();
+        return in;
+    }
+
+    private static TypeInfo element(QName name) {
+        return new TypeInfo(name.getNamespaceURI(), name.getLocalPart(), null, null, 1, 1, true);
+    }
+
+    private int write(XMLizable value, QName element) throws IOException {
+        bytes.reset();
+        XmlOutputStream out = new XmlOutputStream(bytes, false);
+        out.setPrefix("xsi", Constants.SCHEMA_INSTANCE_NS);
+        out.startDocument();
+        value.write(element, out, typeMapper);
+        out.endDocument();
+        out.close();
+        return bytes.size();
+    }
+}
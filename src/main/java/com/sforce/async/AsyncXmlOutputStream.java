@@ -27,9 +27,11 @@
 package com.sforce.async;
 
 import com.sforce.ws.parser.XmlOutputStream;
+import com.sforce.ws.wsdl.Constants;
 
 import java.io.OutputStream;
 import java.io.IOException;
+import java.io.Writer;
 
 /**
  * AsyncXmlOutputStream --
@@ -39,9 +41,73 @@ import java.io.IOException;
  */
 public class AsyncXmlOutputStream extends XmlOutputStream {
 
+    private static final char[] SOBJECT_START = "<sObject>".toCharArray();
+    private static final char[] SOBJECT_END = "</sObject>".toCharArray();
+
     public AsyncXmlOutputStream(OutputStream out, boolean prettyPrint) throws IOException {
         super(out, prettyPrint);
         startDocument();
         setPrefix("", BulkConnection.NAMESPACE);
     }
+
+    /**
+     * Writes one sObject element with the given values, in schema order. A null value leaves the
+     * field out. Must be called where the async api namespace is the default one, such as inside
+     * the sObjects element of a batch; rows are not indented.
+     */
+    public void writeRow(RecordSchema schema, String... values) throws IOException {
+        if (values.length != schema.getFieldCount()) {
+            throw new IllegalArgumentException("Expected " + schema.getFieldCount() + " values, got " + values.length);
+        }
+        Writer out = startRow();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value != null) {
+                out.write(schema.startTags[i]);
+                writeText(value);
+                out.write(schema.endTags[i]);
+            }
+        }
+        out.write(SOBJECT_END);
+    }
+
+    /**
+     * Writes one sObject element from a row; unset fields are left out and null ones are sent as nil.
+     */
+    public void writeRow(RecordSchema.Row row) throws IOException {
+        RecordSchema schema = row.getSchema();
+        Writer out = startRow();
+        int[] lengths = row.lengths;
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            if (length == RecordSchema.Row.NIL) {
+                writeNil(out, schema.elementNames[i]);
+            } else if (length != RecordSchema.Row.UNSET) {
+                out.write(schema.startTags[i]);
+                writeText(row.buffer, row.start(i), length);
+                out.write(schema.endTags[i]);
+            }
+        }
+        out.write(SOBJECT_END);
+    }
+
+    private Writer startRow() throws IOException {
+        // closes a pending start tag, so the rest can go straight to the writer
+        writeText("");
+        Writer out = getWriter();
+        out.write(SOBJECT_START);
+        return out;
+    }
+
+    private void writeNil(Writer out, String name) throws IOException {
+        String prefix = getPrefix(Constants.SCHEMA_INSTANCE_NS);
+        if (prefix == null) {
+            throw new IllegalStateException("No prefix declared for " + Constants.SCHEMA_INSTANCE_NS);
+        }
+        out.write('<');
+        out.write(name);
+        out.write(' ');
+        out.write(prefix);
+        out.write(":nil=\"true\"/>");
+    }
 }
@@ -28,8 +28,6 @@ package com.sforce.async;
 
 import com.sforce.ws.ConnectionException;
 import com.sforce.ws.parser.PullParserException;
-import com.sforce.ws.parser.XmlInputStream;
-import com.sforce.ws.parser.XmlOutputStream;
 import com.sforce.ws.transport.Transport;
 import com.sforce.ws.wsdl.Constants;
 
@@ -45,7 +43,7 @@ import java.io.OutputStream;
  */
 public class BatchRequest {
 
-    private XmlOutputStream xmlStream;
+    private AsyncXmlOutputStream xmlStream;
     private Transport transport;
 
     public BatchRequest(Transport transport, OutputStream out) throws IOException {
@@ -69,6 +67,28 @@ public class BatchRequest {
         }
     }
 
+    /**
+     * Adds a record with a value per schema field, without building an SObject. Null values are left out.
+     */
+    public void addRow(RecordSchema schema, String... values) throws AsyncApiException {
+        try {
+            xmlStream.writeRow(schema, values);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to add row", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
+    /**
+     * Adds the current values of a row, which can then be cleared and filled with the next record.
+     */
+    public void addRow(RecordSchema.Row row) throws AsyncApiException {
+        try {
+            xmlStream.writeRow(row);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to add row", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
     public BatchInfo completeRequest() throws AsyncApiException {
         try {
             xmlStream.writeEndTag(BulkConnection.NAMESPACE, "sObjects");
@@ -92,10 +112,6 @@ public class BatchRequest {
     }
 
     static BatchInfo loadBatchInfo(InputStream in) throws PullParserException, IOException, ConnectionException {
-        BatchInfo info = new BatchInfo();
-        XmlInputStream xin = new XmlInputStream();
-        xin.setInput(in, "UTF-8");
-        info.load(xin, BulkConnection.typeMapper);
-        return info;
+        return BulkConnection.loadXml(in, new BatchInfo());
     }
 }
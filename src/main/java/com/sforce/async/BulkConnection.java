@@ -26,20 +26,34 @@
 
 package com.sforce.async;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -58,9 +72,11 @@ import com.sforce.ws.MessageHandler;
 import com.sforce.ws.MessageHandlerWithHeaders;
 import com.sforce.ws.bind.CalendarCodec;
 import com.sforce.ws.bind.TypeMapper;
+import com.sforce.ws.bind.XMLizable;
 import com.sforce.ws.parser.PullParserException;
 import com.sforce.ws.parser.XmlInputStream;
 import com.sforce.ws.parser.XmlOutputStream;
+import com.sforce.ws.transport.MessageHandlerInputStream;
 import com.sforce.ws.transport.Transport;
 import com.sforce.ws.util.FileUtil;
 
@@ -91,6 +107,10 @@ public class BulkConnection {
     public static final QName BATCH_LIST_QNAME = new QName(NAMESPACE, "batchInfoList");
     public static final QName ERROR_QNAME = new QName(NAMESPACE, "error");
 
+    public static final int DEFAULT_MAX_RECORDS_IN_BATCH = 10000;
+    public static final long DEFAULT_MAX_BYTES_IN_BATCH = 10000000;
+    public static final int DEFAULT_MAX_PARALLEL_UPLOADS = 4;
+
     private ConnectorConfig config;
     private HashMap<String, String> headers = new HashMap<String, String>();
     public static final TypeMapper typeMapper = new TypeMapper(null, null, false);
@@ -160,11 +180,7 @@ public class BulkConnection {
                 if (contentType == ContentType.ZIP_JSON || contentType == ContentType.JSON) {
                     return deserializeJsonToObject(in, JobInfo.class);
                 } else {
-                    XmlInputStream xin = new XmlInputStream();
-                    xin.setInput(in, "UTF-8");
-                    JobInfo result = new JobInfo();
-                    result.load(xin, typeMapper);
-                    return result;
+                    return loadXml(in, new JobInfo());
                 }
             } else {
                 parseAndThrowException(in, contentType);
@@ -183,12 +199,7 @@ public class BulkConnection {
         try {
             AsyncApiException exception;
             if (type == ContentType.XML || type == ContentType.ZIP_XML || type == ContentType.CSV || type == ContentType.ZIP_CSV) {
-                exception = new AsyncApiException();
-
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(in, "UTF-8");
-
-                exception.load(xin, typeMapper);
+                exception = loadXml(in, new AsyncApiException());
             } else if (type == ContentType.JSON || type == ContentType.ZIP_JSON) {
                 JsonParser parser = factory.createJsonParser(in);
                 exception = parser.readValueAs(AsyncApiException.class);
@@ -255,6 +266,129 @@ public class BulkConnection {
         }
     }
 
+    public List<BatchInfo> createBatchesFromCsvFile(JobInfo jobInfo, Path csvFile) throws AsyncApiException {
+        return createBatchesFromCsvFile(jobInfo, csvFile, DEFAULT_MAX_RECORDS_IN_BATCH, DEFAULT_MAX_BYTES_IN_BATCH,
+                DEFAULT_MAX_PARALLEL_UPLOADS);
+    }
+
+    /**
+     * Splits a CSV file into batches and uploads them. The file is memory mapped and its record
+     * boundaries are found on several threads, respecting line breaks inside quoted cells. Each
+     * batch is capped by both limits, starts with the file's header row and is streamed to the
+     * server straight from the mapped file. Uploads start while the rest of the file is scanned.
+     *
+     * @param maxParallelUploads number of batches uploaded at the same time on the config's async executor
+     * @return the created batches, in file order
+     */
+    public List<BatchInfo> createBatchesFromCsvFile(JobInfo jobInfo, Path csvFile, int maxRecordsInBatch,
+            long maxBytesInBatch, int maxParallelUploads) throws AsyncApiException {
+        if (jobInfo.getContentType() != null && jobInfo.getContentType() != ContentType.CSV) {
+            throw new AsyncApiException("This method can only be used with csv content type",
+                    AsyncExceptionCode.ClientInputError);
+        }
+        if (maxParallelUploads <= 0) {
+            throw new AsyncApiException("Maximum parallel uploads must be positive: " + maxParallelUploads,
+                    AsyncExceptionCode.ClientInputError);
+        }
+
+        Executor executor = config.getAsyncExecutor();
+        Semaphore uploads = new Semaphore(maxParallelUploads);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<CompletableFuture<BatchInfo>> created = new ArrayList<CompletableFuture<BatchInfo>>();
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            CsvFileSplitter splitter;
+            try {
+                splitter = new CsvFileSplitter(channel, maxRecordsInBatch, maxBytesInBatch);
+            } catch (IllegalArgumentException e) {
+                throw new AsyncApiException(e.getMessage(), AsyncExceptionCode.ClientInputError, e);
+            }
+            final byte[] header = splitter.getHeader();
+            try {
+                for (CompletableFuture<List<CsvFileSplitter.Batch>> chunk : splitter.split(executor)) {
+                    for (CsvFileSplitter.Batch batch : chunk.join()) {
+                        final MappedByteBuffer content = splitter.map(batch.start, batch.end - batch.start);
+                        // blocks while every upload slot is busy
+                        uploads.acquire();
+                        CompletableFuture<BatchInfo> upload;
+                        try {
+                            upload = CompletableFuture.supplyAsync(() -> {
+                                try {
+                                    return createBatchFromCsvBuffer(jobInfo, header, content);
+                                } catch (AsyncApiException e) {
+                                    throw new CompletionException(e);
+                                }
+                            }, executor);
+                        } catch (RejectedExecutionException e) {
+                            uploads.release();
+                            throw e;
+                        }
+                        upload.whenComplete((info, e) -> {
+                            if (e != null) {
+                                failure.compareAndSet(null, e);
+                            }
+                            uploads.release();
+                        });
+                        created.add(upload);
+                        Throwable failed = failure.get();
+                        if (failed != null) {
+                            throw failed instanceof CompletionException ? (CompletionException) failed
+                                    : new CompletionException(failed);
+                        }
+                    }
+                }
+                List<BatchInfo> result = new ArrayList<BatchInfo>(created.size());
+                for (CompletableFuture<BatchInfo> upload : created) {
+                    result.add(upload.join());
+                }
+                return result;
+            } finally {
+                // the channel must stay open until every upload has stopped reading from it
+                uploads.acquireUninterruptibly(maxParallelUploads);
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof AsyncApiException) {
+                throw (AsyncApiException) cause;
+            }
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, cause);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        } catch (RejectedExecutionException e) {
+            throw new AsyncApiException("Failed to schedule batch upload", AsyncExceptionCode.ClientInputError, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AsyncApiException("Interrupted while creating batches", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
+    private BatchInfo createBatchFromCsvBuffer(JobInfo jobInfo, byte[] header, ByteBuffer content)
+            throws AsyncApiException {
+        try {
+            String endpoint = getRestEndpoint() + "job/" + jobInfo.getId() + "/batch";
+            Transport transport = config.createTransport();
+            OutputStream out = transport.connect(endpoint, getHeaders(CSV_CONTENT_TYPE), true);
+            try {
+                out.write(header);
+                WritableByteChannel channel = Channels.newChannel(out);
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            } finally {
+                out.close();
+            }
+
+            InputStream result = transport.getContent();
+            if (!transport.isSuccessful()) parseAndThrowException(result, ContentType.CSV);
+            return BatchRequest.loadBatchInfo(result);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        } catch (PullParserException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        } catch (ConnectionException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
     public BatchInfo createBatchFromDir(JobInfo job, InputStream batchContent, File attachmentDir)
             throws AsyncApiException {
         final List<File> files = FileUtil.listFilesRecursive(attachmentDir, false);
@@ -507,6 +641,24 @@ public class BulkConnection {
 		}
     }
 
+    public JsonBatchRequest createJsonBatch(JobInfo job) throws AsyncApiException {
+        try {
+            String endpoint = getRestEndpoint();
+            Transport transport = config.createTransport();
+            endpoint = endpoint + "job/" + job.getId() + "/batch";
+            ContentType ct = job.getContentType();
+            if (ct != ContentType.JSON) { throw new AsyncApiException(
+                    "This method can only be used with JSON content type", AsyncExceptionCode.ClientInputError); }
+
+            OutputStream out = transport.connect(endpoint, getHeaders(JSON_CONTENT_TYPE));
+            return new JsonBatchRequest(transport, out);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        } catch (ConnectionException e) {
+            throw new AsyncApiException("Failed to create batch", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
     public TransformationSpecRequest createTransformationSpec(JobInfo job) throws AsyncApiException {
         try {
             String endpoint = getRestEndpoint();
@@ -534,14 +686,14 @@ public class BulkConnection {
             URL url = new URL(endpoint);
             InputStream stream = doHttpGet(url);
 
-            if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
-                return deserializeJsonToObject(stream, BatchInfoList.class);
-            } else {
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(stream, "UTF-8");
-                BatchInfoList result = new BatchInfoList();
-                result.load(xin, typeMapper);
-                return result;
+            try {
+                if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
+                    return deserializeJsonToObject(stream, BatchInfoList.class);
+                } else {
+                    return loadXml(stream, new BatchInfoList());
+                }
+            } finally {
+                stream.close();
             }
         } catch (IOException e) {
             throw new AsyncApiException("Failed to get batch info list ", AsyncExceptionCode.ClientInputError, e);
@@ -562,14 +714,14 @@ public class BulkConnection {
             URL url = new URL(endpoint);
             InputStream stream = doHttpGet(url);
 
-            if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
-                return deserializeJsonToObject(stream, BatchInfo.class);
-            } else {
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(stream, "UTF-8");
-                BatchInfo result = new BatchInfo();
-                result.load(xin, typeMapper);
-                return result;
+            try {
+                if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
+                    return deserializeJsonToObject(stream, BatchInfo.class);
+                } else {
+                    return loadXml(stream, new BatchInfo());
+                }
+            } finally {
+                stream.close();
             }
         } catch (IOException e) {
             throw new AsyncApiException("Failed to parse batch info ", AsyncExceptionCode.ClientInputError, e);
@@ -587,17 +739,17 @@ public class BulkConnection {
         try {
             InputStream stream = doHttpGet(buildBatchResultURL(jobId, batchId));
 
-            if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
-                BatchResult batchResult = new BatchResult();
-                Result[] results = deserializeJsonToObject(stream, Result[].class);
-                batchResult.setResult(results);
-                return batchResult;
-            } else {
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(stream, "UTF-8");
-                BatchResult result = new BatchResult();
-                result.load(xin, typeMapper);
-                return result;
+            try {
+                if (contentType == ContentType.JSON || contentType == ContentType.ZIP_JSON) {
+                    BatchResult batchResult = new BatchResult();
+                    Result[] results = deserializeJsonToObject(stream, Result[].class);
+                    batchResult.setResult(results);
+                    return batchResult;
+                } else {
+                    return loadXml(stream, new BatchResult());
+                }
+            } finally {
+                stream.close();
             }
         } catch (PullParserException e) {
             throw new AsyncApiException("Failed to parse result ", AsyncExceptionCode.ClientInputError, e);
@@ -618,6 +770,19 @@ public class BulkConnection {
         }
     }
 
+    /**
+     * Streams the results of a JSON batch one record at a time, for example id, success, created
+     * and errors.0.statusCode. Close the reader when done.
+     */
+    public JsonRecordReader getBatchResultReader(String jobId, String batchId) throws AsyncApiException {
+        InputStream stream = getBatchResultStream(jobId, batchId);
+        try {
+            return new JsonRecordReader(stream);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to get result ", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
     public URL buildBatchResultURL(String jobId, String batchId) throws AsyncApiException {
         try {
             return new URL(getRestEndpoint() + "job/" + jobId + "/batch/" + batchId + "/result");
@@ -651,11 +816,7 @@ public class BulkConnection {
                 list.setResult(results);
                 return list;
             } else {
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(stream, "UTF-8");
-                QueryResultList result = new QueryResultList();
-                result.load(xin, typeMapper);
-                return result;
+                return loadXml(stream, new QueryResultList());
             }
         } catch (ConnectionException e) {
             throw new AsyncApiException("Failed to parse query result list ", AsyncExceptionCode.ClientInputError, e);
@@ -674,6 +835,20 @@ public class BulkConnection {
         }
     }
     
+    /**
+     * Streams the records of a JSON query result one at a time; related fields are named like
+     * Owner.Name. Close the reader when done.
+     */
+    public JsonRecordReader getQueryResultReader(String jobId, String batchId, String resultId)
+            throws AsyncApiException {
+        InputStream stream = getQueryResultStream(jobId, batchId, resultId);
+        try {
+            return new JsonRecordReader(stream);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to get result ", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
     public URL buildQueryResultURL(String jobId, String batchId, String resultId) throws AsyncApiException {
         try {
             return new URL(getRestEndpoint() + "job/" + jobId + "/batch/" + batchId + "/result" + "/" + resultId);
@@ -705,45 +880,40 @@ public class BulkConnection {
             in = new GZIPInputStream(in);
         }
 
-        if (config.isTraceMessage() || config.hasMessageHandlers()) {
-            byte[] bytes = FileUtil.toBytes(in);
-            in = new ByteArrayInputStream(bytes);
-
-            if (config.hasMessageHandlers()) {
-                Iterator<MessageHandler> it = config.getMessagerHandlers();
-                while (it.hasNext()) {
-                    MessageHandler handler = it.next();
-                    if (handler instanceof MessageHandlerWithHeaders) {
-                        ((MessageHandlerWithHeaders)handler).handleRequest(url, new byte[0], null);
-                        ((MessageHandlerWithHeaders)handler).handleResponse(url, bytes, connection.getHeaderFields());
-                    } else {
-                        handler.handleRequest(url, new byte[0]);
-                        handler.handleResponse(url, bytes);
-                    }
+        if (config.hasMessageHandlers()) {
+            Iterator<MessageHandler> it = config.getMessagerHandlers();
+            while (it.hasNext()) {
+                MessageHandler handler = it.next();
+                if (handler instanceof MessageHandlerWithHeaders) {
+                    ((MessageHandlerWithHeaders)handler).handleRequest(url, new byte[0], null);
+                } else {
+                    handler.handleRequest(url, new byte[0]);
                 }
             }
+        }
 
-            if (config.isTraceMessage()) {
-                config.getTraceStream().println(url.toExternalForm());
+        if (config.isTraceMessage()) {
+            config.getTraceStream().println(url.toExternalForm());
 
-                Map<String, List<String>> headers = connection.getHeaderFields();
-                for (Map.Entry<String, List<String>>entry : headers.entrySet()) {
-                    StringBuffer sb = new StringBuffer();
-                    List<String> values = entry.getValue();
+            Map<String, List<String>> headers = connection.getHeaderFields();
+            for (Map.Entry<String, List<String>>entry : headers.entrySet()) {
+                StringBuffer sb = new StringBuffer();
+                List<String> values = entry.getValue();
 
-                    if (values != null) {
-                        for (String v : values) {
-                            sb.append(v);
-                        }
+                if (values != null) {
+                    for (String v : values) {
+                        sb.append(v);
                     }
-
-                    config.getTraceStream().println(entry.getKey() + ": " + sb.toString());
                 }
 
-                config.teeInputStream(bytes);
+                config.getTraceStream().println(entry.getKey() + ": " + sb.toString());
             }
         }
 
+        if (config.isTraceMessage() || config.hasMessageHandlers()) {
+            in = MessageHandlerInputStream.wrap(config, url, in, connection.getHeaderFields());
+        }
+
         if (!success) {
             ContentType type = null;
             String contentTypeHeader = connection.getContentType();
@@ -760,6 +930,17 @@ public class BulkConnection {
         return in;
     }
 
+    /**
+     * Starts watching a job with one status request per poll instead of one per batch. The
+     * listener hears about batch state changes; the returned monitor's completion finishes when
+     * the job is done.
+     */
+    public JobMonitor monitorJob(String jobId, JobMonitor.Listener listener) {
+        JobMonitor monitor = new JobMonitor(this, jobId, listener);
+        monitor.start();
+        return monitor;
+    }
+
     public JobInfo getJobStatus(String jobId) throws AsyncApiException {
         return getJobStatus(jobId, ContentType.XML);
     }
@@ -772,14 +953,14 @@ public class BulkConnection {
 
             InputStream in = doHttpGet(url);
 
-            if (contentType == ContentType.JSON  || contentType == ContentType.ZIP_JSON) {
-                return deserializeJsonToObject(in, JobInfo.class);
-            } else {
-                JobInfo result = new JobInfo();
-                XmlInputStream xin = new XmlInputStream();
-                xin.setInput(in, "UTF-8");
-                result.load(xin, typeMapper);
-                return result;
+            try {
+                if (contentType == ContentType.JSON  || contentType == ContentType.ZIP_JSON) {
+                    return deserializeJsonToObject(in, JobInfo.class);
+                } else {
+                    return loadXml(in, new JobInfo());
+                }
+            } finally {
+                in.close();
             }
         } catch (PullParserException e) {
             throw new AsyncApiException("Failed to get job status ", AsyncExceptionCode.ClientInputError, e);
@@ -790,6 +971,25 @@ public class BulkConnection {
         }
     }
 
+    /**
+     * reads an XML response into result, with a parser that is given back to the pool afterwards
+     */
+    static <T extends XMLizable> T loadXml(InputStream in, T result)
+            throws PullParserException, IOException, ConnectionException {
+        XmlInputStream xin = new XmlInputStream();
+        try {
+            xin.setInput(in, "UTF-8");
+            result.load(xin, typeMapper);
+            return result;
+        } finally {
+            xin.release();
+        }
+    }
+
+    static JsonFactory getJsonFactory() {
+        return factory;
+    }
+
     /**
      * Serialize to json
      * @param out
@@ -29,7 +29,6 @@ package com.sforce.async;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /*
  * Copyright, 1999, SALESFORCE.com
@@ -37,6 +36,10 @@ import java.util.List;
 
 /**
  * Parse a CSV file into lines of fields.
+ * <p>
+ * Fields follow RFC 4180: a quoted field may contain separators, line breaks and doubled quotes,
+ * and an empty field is returned as null. Use {@link #nextRecord(Record)} to read into a reused
+ * {@link Record} instead of allocating a list of strings per row.
  */
 
 public class CSVReader {
@@ -44,8 +47,22 @@ public class CSVReader {
     // During import we replace this char with a space
     //private static final char PARSE_FIND = '\u00A0';
 
-    private StreamTokenizer parser;
+    private static final int BUFFER_SIZE = 8192;
+
+    // parser states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private Reader input;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int lineno = 1;
+
     private char[] separators;
+    private char separator;
     private boolean ignoreBlankRecords = true;
     private int maxSizeOfIndividualCell = 131072;
     private int maxColumnsPerRow = 5000;
@@ -59,7 +76,9 @@ public class CSVReader {
 
     private int fileSizeInCharacters = 0;
     private int rowsInFile = 0;
-    private int maxFieldCount;
+
+    // backs nextRecord() so the list-returning API reuses the same parse buffers
+    private Record scratch;
 
     boolean atEOF;
 
@@ -110,205 +129,214 @@ public class CSVReader {
     public CSVReader(BufferedReader input, char[] customizedSeparators) {
     	Arrays.sort(customizedSeparators);
         this.separators = customizedSeparators;
-        
-        parser = new StreamTokenizer(input);
-        parser.ordinaryChars(0, 255);
-        parser.wordChars(0, 255);
-        parser.ordinaryChar('\"');
-        for (char customizedSeparator : customizedSeparators) {
-        	parser.ordinaryChar(customizedSeparator);
+        if (customizedSeparators.length == 1) {
+            this.separator = customizedSeparators[0];
         }
+        this.input = input;
+        atEOF = false;
+    }
 
-        // Need to do set EOL significance after setting ordinary and word
-        // chars, and need to explicitly set \n and \r as whitespace chars
-        // for EOL detection to work
-        parser.eolIsSignificant(true);
-        parser.whitespaceChars('\n', '\n');
-        parser.whitespaceChars('\r', '\r');
+    /**
+     * Continues with a new input, keeping the parse buffers, so that one reader can parse many
+     * short inputs such as single rows. Line numbers and the row and size limits of the file count
+     * from the start again. The input is read in blocks, so it needs no buffering of its own.
+     */
+    public void reset(Reader input) {
+        this.input = input;
+        position = 0;
+        limit = 0;
+        lineno = 1;
+        fileSizeInCharacters = 0;
+        rowsInFile = 0;
         atEOF = false;
     }
 
-    private void checkRecordExceptions(List<String> line) throws IOException {
-        int rowSizeInCharacters = 0;
-        if (line != null) {
-            for (String value : line) {
-                if (value != null) {
-                    rowSizeInCharacters += value.length();
-                }
-            }
+    private void checkRecordExceptions(Record record) throws IOException {
+        int rowSizeInCharacters = record.length;
 
-            if (rowSizeInCharacters > maxRowSizeInCharacters) {
-                throw new CSVParseException("Exceeded max length for one record: " + rowSizeInCharacters +
-                                            ". Max length for one record should be less than or equal to " +
-                                            maxRowSizeInCharacters, parser.lineno());
-            }
+        if (rowSizeInCharacters > maxRowSizeInCharacters) {
+            throw new CSVParseException("Exceeded max length for one record: " + rowSizeInCharacters +
+                                        ". Max length for one record should be less than or equal to " +
+                                        maxRowSizeInCharacters, lineno);
+        }
 
-            fileSizeInCharacters += rowSizeInCharacters;
+        fileSizeInCharacters += rowSizeInCharacters;
 
-            if (fileSizeInCharacters > maxFileSizeInCharacters) {
-                throw new CSVParseException("Exceeded max file size: " + fileSizeInCharacters +
-                                            ". Max file size in characters should be less than or equal to " +
-                                            maxFileSizeInCharacters, parser.lineno());
-            }
+        if (fileSizeInCharacters > maxFileSizeInCharacters) {
+            throw new CSVParseException("Exceeded max file size: " + fileSizeInCharacters +
+                                        ". Max file size in characters should be less than or equal to " +
+                                        maxFileSizeInCharacters, lineno);
+        }
 
-            rowsInFile++;
+        rowsInFile++;
 
-            if (rowsInFile > maxRowsInFile) {
-                throw new CSVParseException("Exceeded number of records : " + rowsInFile +
-                                            ". Number of records should be less than or equal to " + maxRowsInFile,
-                                            parser.lineno());
-            }
+        if (rowsInFile > maxRowsInFile) {
+            throw new CSVParseException("Exceeded number of records : " + rowsInFile +
+                                        ". Number of records should be less than or equal to " + maxRowsInFile,
+                                        lineno);
         }
     }
 
 
     public ArrayList<String> nextRecord() throws IOException {
-        ArrayList<String> record = nextRecordLocal();
+        if (scratch == null) {
+            scratch = new Record();
+        }
+        return nextRecord(scratch) ? scratch.toList() : null;
+    }
 
-        if (ignoreBlankRecords) {
-            while(record != null) {
-                boolean emptyLine = false;
-
-                if (record.size() == 0) {
-                    emptyLine = true;
-                } else if (record.size() == 1) {
-                    String val = record.get(0);
-                    if (val == null || val.length() == 0) {
-                        emptyLine = true;
-                    }
-                }
+    /**
+     * Reads the next record into the given record, replacing its previous contents. Cell views
+     * handed out by the record are only valid until it is read into again.
+     *
+     * @return false at the end of input
+     */
+    public boolean nextRecord(Record record) throws IOException {
+        boolean found = readRecord(record);
 
-                if (emptyLine) {
-                    record = nextRecordLocal();
-                } else {
-                    break;
-                }
+        if (ignoreBlankRecords) {
+            while (found && record.isBlank()) {
+                found = readRecord(record);
             }
         }
 
-        checkRecordExceptions(record);
-        return record;
+        if (found) {
+            checkRecordExceptions(record);
+        }
+        return found;
     }
 
-    private ArrayList<String> nextRecordLocal() throws IOException {
+    private boolean readRecord(Record record) throws IOException {
         if (atEOF) {
-            return null;
+            return false;
         }
 
-        ArrayList<String> record = new ArrayList<String>(maxFieldCount);
-
-        StringBuilder fieldValue = null;
-
-        while(true) {
-            int token = parser.nextToken();
+        record.clear();
+        int state = FIELD_START;
 
-            if (token == StreamTokenizer.TT_EOF) {
-                addField(record, fieldValue);
+        while (true) {
+            if (position == limit && !fill()) {
                 atEOF = true;
-                break;
-            }
-
-            if (token == StreamTokenizer.TT_EOL) {
-                addField(record, fieldValue);
-                break;
-            }
-
-            if (token == StreamTokenizer.TT_WORD) {
-                if (fieldValue != null) {
-                    throw new CSVParseException(String.format("Unknown error, near %s", fieldValue), parser.lineno());
+                if (state == QUOTED) {
+                    throw new CSVParseException("EOF reached before closing an opened quote", lineno);
                 }
-
-                fieldValue = new StringBuilder(parser.sval);
-                continue;
+                endField(record);
+                return true;
             }
 
-            if (Arrays.binarySearch(separators, (char)token) >= 0) {
-                addField(record, fieldValue);
-                fieldValue = null;
-                continue;
-            }
-
-            if (token == '"') {
-                if (fieldValue != null) {
-                    throw new CSVParseException("Found unescaped quote. A value with quote should be within a quote",
-                            parser.lineno());
-                }
+            char c = buffer[position++];
 
-                while(true) {
-                    token = parser.nextToken();
-
-                    if (token == StreamTokenizer.TT_EOF) {
-                        atEOF = true;
-                        throw new CSVParseException("EOF reached before closing an opened quote", parser.lineno());
-                    }
-
-                    if (token == StreamTokenizer.TT_EOL) {
-                        fieldValue = appendFieldValue(fieldValue, "\n");
-                        continue;
+            switch (state) {
+            case FIELD_START:
+            case UNQUOTED:
+                if (c == '"') {
+                    if (state == UNQUOTED) {
+                        throw new CSVParseException("Found unescaped quote. A value with quote should be within a quote",
+                                lineno);
                     }
-
-                    if (token == StreamTokenizer.TT_WORD) {
-                        fieldValue = appendFieldValue(fieldValue, parser.sval);
-                        continue;
-                    }
-
-                    if (Arrays.binarySearch(separators, (char)token) >= 0) {
-                        fieldValue = appendFieldValue(fieldValue, token);
-                        continue;
+                    state = QUOTED;
+                } else if (isSeparator(c)) {
+                    endField(record);
+                    state = FIELD_START;
+                } else if (c == '\n' || c == '\r') {
+                    endLine(c);
+                    endField(record);
+                    return true;
+                } else {
+                    int start = position - 1;
+                    while (position < limit && !isSpecial(buffer[position])) {
+                        position++;
                     }
+                    record.append(buffer, start, position - start);
+                    state = UNQUOTED;
+                }
+                break;
 
-                    if (token == '"') {
-                        int nextToken = parser.nextToken();
-
-                        if (nextToken == '"') {
-                            //escaped quote
-                            fieldValue = appendFieldValue(fieldValue, nextToken);
-                            continue;
-                        }
-
-                        if (nextToken == StreamTokenizer.TT_WORD) {
-                            throw new CSVParseException("Not expecting more text after end quote", parser.lineno());
-                        } else {
-                            parser.pushBack();
+            case QUOTED:
+                if (c == '"') {
+                    state = QUOTE_IN_QUOTED;
+                } else if (c == '\n' || c == '\r') {
+                    endLine(c);
+                    record.append('\n');
+                    checkCellSize(record);
+                } else {
+                    int start = position - 1;
+                    while (position < limit) {
+                        char next = buffer[position];
+                        if (next == '"' || next == '\n' || next == '\r') {
                             break;
                         }
+                        position++;
                     }
+                    record.append(buffer, start, position - start);
+                    checkCellSize(record);
                 }
+                break;
+
+            default: // QUOTE_IN_QUOTED
+                if (c == '"') {
+                    //escaped quote
+                    record.append('"');
+                    checkCellSize(record);
+                    state = QUOTED;
+                } else if (isSeparator(c)) {
+                    endField(record);
+                    state = FIELD_START;
+                } else if (c == '\n' || c == '\r') {
+                    endLine(c);
+                    endField(record);
+                    return true;
+                } else {
+                    throw new CSVParseException("Not expecting more text after end quote", lineno);
+                }
+                break;
             }
         }
+    }
 
-        if (record.size() > maxFieldCount) {
-            maxFieldCount = record.size();
-        }
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = input.read(buffer, 0, buffer.length);
+        } while (n == 0);
 
-        return record;
+        if (n < 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
     }
 
-    private StringBuilder appendFieldValue(StringBuilder fieldValue, int token) throws CSVParseException {
-        return appendFieldValue(fieldValue, ""+(char)token);
+    // \r\n counts as a single line break
+    private void endLine(char c) throws IOException {
+        lineno++;
+        if (c == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+            position++;
+        }
     }
 
-    private StringBuilder appendFieldValue(StringBuilder fieldValue, String token) throws CSVParseException {
-        if (fieldValue == null) {
-            fieldValue = new StringBuilder();
-        }
+    private boolean isSeparator(char c) {
+        return separators.length == 1 ? c == separator : Arrays.binarySearch(separators, c) >= 0;
+    }
 
-        fieldValue.append(token);
+    private boolean isSpecial(char c) {
+        return c == '"' || c == '\n' || c == '\r' || isSeparator(c);
+    }
 
-        if (token.length() > maxSizeOfIndividualCell) {
-            throw new CSVParseException("Exceeded max field size: " + token.length(), parser.lineno());
+    private void checkCellSize(Record record) throws CSVParseException {
+        int cellLength = record.length - record.cellStart(record.size);
+        if (cellLength > maxSizeOfIndividualCell) {
+            throw new CSVParseException("Exceeded max field size: " + cellLength, lineno);
         }
-
-        return fieldValue;
     }
 
+    private void endField(Record record) throws CSVParseException {
+        record.endCell();
 
-    private void addField(ArrayList<String> record, StringBuilder fieldValue) throws CSVParseException {
-        record.add(fieldValue == null ? null : fieldValue.toString());
-
-        if (record.size() > maxColumnsPerRow) {
+        if (record.size > maxColumnsPerRow) {
             throw new CSVParseException("Exceeded max number of columns per record : " + maxColumnsPerRow,
-                    parser.lineno());
+                    lineno);
         }
     }
 
@@ -323,6 +351,137 @@ public class CSVReader {
     public void setMaxCharsInFile(int newMax) {
         this.maxFileSizeInCharacters = newMax;
     }
+
+    /**
+     * A parsed row whose cells share one character buffer. A record is reused across calls to
+     * {@link CSVReader#nextRecord(Record)}, so parsing does not allocate per cell.
+     */
+    public static final class Record {
+        private char[] chars = new char[1024];
+        private int length;
+        private int[] ends = new int[16];
+        private Cell[] cells = new Cell[16];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return a view of the cell, or null when the cell is empty; the view changes when the
+         *         record is read into again
+         */
+        public CharSequence get(int index) {
+            checkIndex(index);
+            int start = cellStart(index);
+            if (start == ends[index]) {
+                return null;
+            }
+            Cell cell = cells[index];
+            if (cell == null) {
+                cell = cells[index] = new Cell();
+            }
+            cell.start = start;
+            cell.end = ends[index];
+            return cell;
+        }
+
+        /**
+         * @return the cell as a new string, or null when the cell is empty
+         */
+        public String getString(int index) {
+            checkIndex(index);
+            int start = cellStart(index);
+            return start == ends[index] ? null : new String(chars, start, ends[index] - start);
+        }
+
+        public ArrayList<String> toList() {
+            ArrayList<String> list = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(getString(i));
+            }
+            return list;
+        }
+
+        @Override
+        public String toString() {
+            return toList().toString();
+        }
+
+        boolean isBlank() {
+            return size == 0 || (size == 1 && ends[0] == 0);
+        }
+
+        int cellStart(int index) {
+            return index == 0 ? 0 : ends[index - 1];
+        }
+
+        void clear() {
+            length = 0;
+            size = 0;
+        }
+
+        void append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, length * 2);
+            }
+            chars[length++] = c;
+        }
+
+        void append(char[] src, int offset, int count) {
+            if (length + count > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            }
+            System.arraycopy(src, offset, chars, length, count);
+            length += count;
+        }
+
+        void endCell() {
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            ends[size++] = length;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+        private final class Cell implements CharSequence {
+            int start;
+            int end;
+
+            @Override
+            public int length() {
+                return end - start;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (index < 0 || index >= end - start) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + (end - start));
+                }
+                return chars[start + index];
+            }
+
+            @Override
+            public CharSequence subSequence(int from, int to) {
+                if (from < 0 || to > end - start || from > to) {
+                    throw new IndexOutOfBoundsException("Range: " + from + "-" + to + ", Length: " + (end - start));
+                }
+                return new String(chars, start + from, to - from);
+            }
+
+            @Override
+            public String toString() {
+                return new String(chars, start, end - start);
+            }
+        }
+    }
+
     //*****************
     // Excption classes
     //*****************
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a memory mapped CSV file into batches without copying it. The data after the header
+ * row is cut into chunks that are scanned on several threads: a first pass counts the quotes in
+ * each chunk, which tells every chunk whether it starts inside a quoted cell, and a second pass
+ * finds the record boundaries and groups the records into batches. A batch is a byte range of
+ * whole records; the header row is sent in front of each one.
+ *
+ * @see BulkConnection#createBatchesFromCsvFile(JobInfo, java.nio.file.Path, int, long, int)
+ */
+final class CsvFileSplitter {
+
+    static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+    static final long MIN_CHUNK_SIZE = 1024L * 1024;
+
+    private static final long QUOTES = 0x2222222222222222L;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * whole records between start (inclusive) and end (exclusive) of the file
+     */
+    static final class Batch {
+        final long start;
+        final long end;
+        final int records;
+
+        Batch(long start, long end, int records) {
+            this.start = start;
+            this.end = end;
+            this.records = records;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long chunkSize;
+    private final byte[] header;
+    private final long dataStart;
+
+    CsvFileSplitter(FileChannel channel, int maxRecords, long maxBytes) throws IOException {
+        this(channel, maxRecords, maxBytes, 0);
+    }
+
+    /**
+     * @param chunkSize bytes scanned by one task, or 0 to pick a size from the file size and processor count
+     */
+    CsvFileSplitter(FileChannel channel, int maxRecords, long maxBytes, long chunkSize) throws IOException {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("Maximum records in batch must be positive: " + maxRecords);
+        }
+        if (maxBytes <= 0 || maxBytes > Integer.MAX_VALUE - MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid maximum bytes in batch: " + maxBytes);
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+
+        MappedByteBuffer buffer = map(0, Math.min(size, maxBytes));
+        long headerEnd = findRecordEnd(buffer, 0, false);
+        if (headerEnd < 0) {
+            if (buffer.limit() < size) {
+                throw new IOException("Header row is larger than the batch size limit of " + maxBytes + " bytes");
+            }
+            headerEnd = size;
+        }
+        header = new byte[(int) headerEnd];
+        buffer.get(header);
+        dataStart = headerEnd;
+
+        if (chunkSize <= 0) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            chunkSize = Math.max(MIN_CHUNK_SIZE, (size - dataStart) / (processors * 4L) + 1);
+        }
+        this.chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * @return the header row including its line break
+     */
+    byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Starts scanning the file on at most one task per processor.
+     *
+     * @return batches of each chunk, in file order; the earlier chunks tend to complete first
+     */
+    List<CompletableFuture<List<Batch>>> split(Executor executor) {
+        final int chunks = (int) ((size - dataStart + chunkSize - 1) / chunkSize);
+        final List<CompletableFuture<List<Batch>>> result = new ArrayList<CompletableFuture<List<Batch>>>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            result.add(new CompletableFuture<List<Batch>>());
+        }
+        final int[] quotes = new int[chunks];
+
+        runParallel(executor, chunks, new ChunkTask() {
+            @Override
+            public void run(int chunk) throws IOException {
+                quotes[chunk] = countQuotes(chunk);
+            }
+        }).thenCompose(ignored -> {
+            final boolean[] inQuotes = new boolean[chunks];
+            for (int i = 1; i < chunks; i++) {
+                inQuotes[i] = inQuotes[i - 1] ^ (quotes[i - 1] & 1) != 0;
+            }
+            return runParallel(executor, chunks, new ChunkTask() {
+                @Override
+                public void run(int chunk) throws IOException {
+                    result.get(chunk).complete(scanChunk(chunk, inQuotes[chunk]));
+                }
+            });
+        }).whenComplete((ignored, e) -> {
+            if (e != null) {
+                for (CompletableFuture<List<Batch>> batches : result) {
+                    batches.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    private interface ChunkTask {
+        void run(int chunk) throws IOException;
+    }
+
+    private static CompletableFuture<Void> runParallel(Executor executor, final int chunks, final ChunkTask task) {
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(chunks, Runtime.getRuntime().availableProcessors());
+        CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = CompletableFuture.runAsync(() -> {
+                int chunk;
+                while ((chunk = next.getAndIncrement()) < chunks) {
+                    try {
+                        task.run(chunk);
+                    } catch (IOException e) {
+                        // stop the other workers early
+                        next.set(chunks);
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(running);
+    }
+
+    private int countQuotes(int chunk) throws IOException {
+        long start = dataStart + chunk * chunkSize;
+        MappedByteBuffer buffer = map(start, Math.min(chunkSize, size - start));
+        buffer.order(ByteOrder.nativeOrder());
+        int limit = buffer.limit();
+        int count = 0;
+        int i = 0;
+        for (; i + 8 <= limit; i += 8) {
+            // marks the high bit of every byte equal to '"'
+            long x = buffer.getLong(i) ^ QUOTES;
+            long zero = ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+            count += Long.bitCount(zero & HIGH_BITS);
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<Batch> scanChunk(int chunk, boolean inQuotes) throws IOException {
+        long start = dataStart + chunk * chunkSize;
+        long end = Math.min(start + chunkSize, size);
+        // the last record may run past the chunk, but never by more than a batch
+        MappedByteBuffer buffer = map(start, Math.min(size, end + maxBytes) - start);
+        List<Batch> batches = new ArrayList<Batch>();
+
+        // a record belongs to the chunk it starts in
+        long recordStart;
+        if (chunk == 0 || (!inQuotes && readByte(start - 1) == '\n')) {
+            recordStart = start;
+        } else {
+            long skipped = findRecordEnd(buffer, 0, inQuotes);
+            if (skipped < 0 || start + skipped >= end) {
+                return batches;
+            }
+            recordStart = start + skipped;
+        }
+
+        long batchStart = recordStart;
+        int records = 0;
+        while (recordStart < end) {
+            long recordEnd = findRecordEnd(buffer, (int) (recordStart - start), false);
+            if (recordEnd < 0) {
+                if (start + buffer.limit() < size) {
+                    throw new IOException("Record at byte " + recordStart + " is larger than the batch size limit of "
+                            + maxBytes + " bytes");
+                }
+                recordEnd = size;
+            } else {
+                recordEnd += start;
+            }
+
+            if (records > 0 && (records == maxRecords || header.length + recordEnd - batchStart > maxBytes)) {
+                batches.add(new Batch(batchStart, recordStart, records));
+                batchStart = recordStart;
+                records = 0;
+            }
+            if (header.length + recordEnd - recordStart > maxBytes) {
+                throw new IOException("Record at byte " + recordStart + " is larger than the batch size limit of "
+                        + maxBytes + " bytes");
+            }
+            records++;
+            recordStart = recordEnd;
+        }
+        if (records > 0) {
+            batches.add(new Batch(batchStart, recordStart, records));
+        }
+        return batches;
+    }
+
+    /**
+     * @return offset just past the line break ending the record that contains from, or -1 if it
+     * does not end within the buffer
+     */
+    private static long findRecordEnd(MappedByteBuffer buffer, int from, boolean inQuotes) {
+        int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private byte readByte(long position) throws IOException {
+        return map(position, 1).get(0);
+    }
+
+    MappedByteBuffer map(long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+}
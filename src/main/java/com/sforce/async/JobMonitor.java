@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches a bulk job with a single job status request per poll. The batch list is only fetched
+ * when the job's batch counts change, and the listener is told about every batch state transition
+ * found by comparing it with the previous list. The poll interval follows the observed rate at
+ * which batches finish, so a busy job is polled about once per expected completion and an idle
+ * one backs off towards the maximum interval.
+ *
+ * @see BulkConnection#monitorJob(String, Listener)
+ */
+public class JobMonitor implements Closeable {
+
+    /**
+     * callbacks run on the config's async executor, one poll at a time
+     */
+    public interface Listener {
+        /**
+         * @param previous state at the last poll, or null the first time the batch is seen
+         */
+        void batchStateChanged(BatchInfo batch, BatchStateEnum previous);
+
+        default void jobStatus(JobInfo job) {
+        }
+
+        /**
+         * the monitor retries with a longer interval after this returns; close it to stop
+         */
+        default void pollFailed(AsyncApiException e) {
+        }
+    }
+
+    public static final long DEFAULT_MIN_INTERVAL = 1000;
+    public static final long DEFAULT_MAX_INTERVAL = 60 * 1000;
+
+    // weight of the latest poll in the batches per second estimate
+    private static final double RATE_WEIGHT = 0.3;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "wsc-job-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final BulkConnection connection;
+    private final String jobId;
+    private final Listener listener;
+    private final CompletableFuture<JobInfo> completion = new CompletableFuture<JobInfo>();
+    private final Map<String, BatchStateEnum> batchStates = new HashMap<String, BatchStateEnum>();
+    // one poll at a time; also guards batchStates, lastCounts and lastPollNanos
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    private long minInterval = DEFAULT_MIN_INTERVAL;
+    private long maxInterval = DEFAULT_MAX_INTERVAL;
+    private long interval = DEFAULT_MIN_INTERVAL;
+    private double batchesPerSecond;
+    private int[] lastCounts;
+    private long lastPollNanos;
+    private volatile ScheduledFuture<?> nextPoll;
+    private volatile boolean closed;
+
+    public JobMonitor(BulkConnection connection, String jobId, Listener listener) {
+        this.connection = connection;
+        this.jobId = jobId;
+        this.listener = listener;
+    }
+
+    public synchronized void setMinInterval(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Minimum interval must be positive: " + millis);
+        }
+        minInterval = millis;
+        interval = Math.max(interval, millis);
+    }
+
+    public synchronized void setMaxInterval(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Maximum interval must be positive: " + millis);
+        }
+        maxInterval = millis;
+        interval = Math.min(interval, millis);
+    }
+
+    /**
+     * @return milliseconds until the next poll, as last adapted
+     */
+    public synchronized long getPollInterval() {
+        return interval;
+    }
+
+    /**
+     * @return completes with the final job status once the job is done, or is cancelled by close()
+     */
+    public CompletableFuture<JobInfo> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * starts polling right away on the connection's async executor
+     */
+    public void start() {
+        schedule(0);
+    }
+
+    /**
+     * Polls the job once, notifies the listener and adapts the interval.
+     *
+     * @return milliseconds to wait before the next poll, or -1 once the job is done
+     */
+    public long poll() throws AsyncApiException {
+        // polls are serialized with a ReentrantLock rather than the monitor, which would pin a
+        // virtual thread for the whole request; the monitor only guards the interval
+        pollLock.lock();
+        try {
+            JobInfo job = connection.getJobStatus(jobId);
+            long now = System.nanoTime();
+            int[] counts = {job.getNumberBatchesQueued(), job.getNumberBatchesInProgress(),
+                    job.getNumberBatchesCompleted(), job.getNumberBatchesFailed(), job.getNumberBatchesTotal()};
+
+            if (lastCounts == null || !Arrays.equals(counts, lastCounts)) {
+                diff(connection.getBatchInfoList(jobId).getBatchInfo());
+            }
+            long next;
+            synchronized (this) {
+                adapt(counts, now);
+                next = interval;
+            }
+            lastCounts = counts;
+            lastPollNanos = now;
+
+            listener.jobStatus(job);
+            if (isDone(job)) {
+                completion.complete(job);
+                return -1;
+            }
+            return next;
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledFuture<?> scheduled = nextPoll;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        completion.cancel(false);
+    }
+
+    private void diff(BatchInfo[] batches) {
+        if (batches == null) {
+            return;
+        }
+        for (BatchInfo batch : batches) {
+            BatchStateEnum previous = batchStates.put(batch.getId(), batch.getState());
+            if (previous != batch.getState()) {
+                listener.batchStateChanged(batch, previous);
+            }
+        }
+    }
+
+    private void adapt(int[] counts, long now) {
+        int pending = counts[0] + counts[1];
+        if (lastCounts != null) {
+            int finished = counts[2] + counts[3] - lastCounts[2] - lastCounts[3];
+            double seconds = Math.max(now - lastPollNanos, 1) / 1e9;
+            double rate = Math.max(finished, 0) / seconds;
+            batchesPerSecond = batchesPerSecond == 0 ? rate
+                    : (1 - RATE_WEIGHT) * batchesPerSecond + RATE_WEIGHT * rate;
+        }
+
+        long next;
+        if (pending == 0) {
+            // nothing to wait for until more batches are added
+            next = interval * 2;
+        } else if (batchesPerSecond > 0) {
+            next = (long) (1000 / batchesPerSecond);
+        } else {
+            // nothing finished yet, the more batches are running the sooner one is likely to
+            next = Math.max(interval * 3 / 2 / Math.max(counts[1], 1), minInterval);
+        }
+        interval = Math.max(minInterval, Math.min(maxInterval, next));
+    }
+
+    private static boolean isDone(JobInfo job) {
+        JobStateEnum state = job.getState();
+        if (state == JobStateEnum.Aborted || state == JobStateEnum.Failed || state == JobStateEnum.JobComplete) {
+            return true;
+        }
+        return state == JobStateEnum.Closed && job.getNumberBatchesQueued() == 0
+                && job.getNumberBatchesInProgress() == 0;
+    }
+
+    private void schedule(long delay) {
+        if (closed) {
+            return;
+        }
+        final Executor executor = connection.getConfig().getAsyncExecutor();
+        nextPoll = scheduler.schedule(() -> {
+            try {
+                executor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                completion.completeExceptionally(e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        if (closed) {
+            return;
+        }
+        long next;
+        try {
+            next = poll();
+        } catch (AsyncApiException e) {
+            synchronized (this) {
+                interval = Math.min(interval * 2, maxInterval);
+                next = interval;
+            }
+            listener.pollFailed(e);
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+            return;
+        }
+        if (next >= 0) {
+            schedule(next);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sforce.ws.transport.Transport;
+
+/**
+ * JSON batch request, written as a stream of records without building the whole array first.
+ *
+ * @see BulkConnection#createJsonBatch(JobInfo)
+ */
+public class JsonBatchRequest {
+
+    private final JsonGenerator generator;
+    private final Transport transport;
+
+    public JsonBatchRequest(Transport transport, OutputStream out) throws IOException {
+        this.transport = transport;
+        generator = BulkConnection.getJsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartArray();
+    }
+
+    public void addSObject(SObject object) throws AsyncApiException {
+        try {
+            writeSObject(object, 0);
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to add SObject", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
+    public void addSObjects(SObject[] objects) throws AsyncApiException {
+        for (SObject object : objects) {
+            addSObject(object);
+        }
+    }
+
+    /**
+     * Adds a record with a value per schema field, without building an SObject. Null values are left out.
+     */
+    public void addRow(RecordSchema schema, String... values) throws AsyncApiException {
+        if (values.length != schema.getFieldCount()) {
+            throw new IllegalArgumentException("Expected " + schema.getFieldCount() + " values, got " + values.length);
+        }
+        try {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    writeFieldName(schema, i);
+                    generator.writeString(values[i]);
+                    writeFieldEnd(schema, i);
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to add row", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
+    /**
+     * Adds the current values of a row, which can then be cleared and filled with the next record.
+     * Fields set to null are sent as JSON null.
+     */
+    public void addRow(RecordSchema.Row row) throws AsyncApiException {
+        RecordSchema schema = row.getSchema();
+        int[] lengths = row.lengths;
+        try {
+            generator.writeStartObject();
+            for (int i = 0; i < lengths.length; i++) {
+                int length = lengths[i];
+                if (length == RecordSchema.Row.NIL) {
+                    // a null reference clears the relationship field itself
+                    generator.writeFieldName(schema.jsonNames[i]);
+                    generator.writeNull();
+                } else if (length != RecordSchema.Row.UNSET) {
+                    writeFieldName(schema, i);
+                    generator.writeString(row.buffer, row.start(i), length);
+                    writeFieldEnd(schema, i);
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to add row", AsyncExceptionCode.ClientInputError, e);
+        }
+    }
+
+    public BatchInfo completeRequest() throws AsyncApiException {
+        try {
+            generator.writeEndArray();
+            generator.close();
+            InputStream in = transport.getContent();
+
+            if (transport.isSuccessful()) {
+                return BulkConnection.deserializeJsonToObject(in, BatchInfo.class);
+            } else {
+                BulkConnection.parseAndThrowException(in, ContentType.JSON);
+            }
+        } catch (IOException e) {
+            throw new AsyncApiException("Failed to complete request", AsyncExceptionCode.ClientInputError, e);
+        }
+        return null;
+    }
+
+    private void writeFieldName(RecordSchema schema, int index) throws IOException {
+        generator.writeFieldName(schema.jsonNames[index]);
+        if (schema.jsonReferenceFields[index] != null) {
+            generator.writeStartObject();
+            generator.writeFieldName(schema.jsonReferenceFields[index]);
+        }
+    }
+
+    private void writeFieldEnd(RecordSchema schema, int index) throws IOException {
+        if (schema.jsonReferenceFields[index] != null) {
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeSObject(SObject object, int depth) throws IOException {
+        if (depth > object.getMaxDepth()) throw new IllegalStateException(
+                "foreign key reference exceeded the maximum allowed depth of " + object.getMaxDepth());
+
+        generator.writeStartObject();
+        for (String name : object.getFieldNames()) {
+            generator.writeStringField(name, object.getField(name));
+        }
+        for (Map.Entry<String, SObject> entry : object.getFieldReferences().entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            writeSObject(entry.getValue(), depth + 1);
+        }
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streams the records of a JSON batch result or query result, one at a time, into a reused
+ * {@link Record}. Nested objects are flattened into dotted names the way CSV results name them,
+ * such as Owner.Name, array elements get their index as a name segment (errors.0.message) and
+ * attributes objects are skipped. Memory use only depends on the size of one record.
+ *
+ * @see BulkConnection#getBatchResultReader(String, String)
+ * @see BulkConnection#getQueryResultReader(String, String, String)
+ */
+public class JsonRecordReader implements Closeable {
+
+    private static final String ATTRIBUTES = "attributes";
+
+    private final JsonParser parser;
+    private final NameTable names = new NameTable();
+    private final Record record = new Record();
+    private boolean started;
+    private int recordNumber;
+
+    public JsonRecordReader(InputStream in) throws IOException {
+        parser = BulkConnection.getJsonFactory().createParser(in);
+    }
+
+    /**
+     * @return the next record, or null at the end of the results. The same view is returned for
+     *         every record and changes when the next one is read.
+     */
+    public Record next() throws IOException {
+        return next(record) ? record : null;
+    }
+
+    /**
+     * @return false at the end of the results
+     */
+    public boolean next(Record into) throws IOException {
+        if (!started) {
+            started = true;
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return false;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of records, got " + token);
+            }
+        }
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a record object, got " + token + " at record " + (recordNumber + 1));
+        }
+        into.clear();
+        readObject(into, -1);
+        recordNumber++;
+        return true;
+    }
+
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * reads the members of the current object; prefix is the name id of the enclosing path or -1
+     */
+    private void readObject(Record into, int prefix) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && ATTRIBUTES.equals(name)) {
+                parser.skipChildren();
+            } else {
+                readValue(into, value, names.child(prefix, name));
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected " + token + " in record " + (recordNumber + 1));
+        }
+    }
+
+    private void readValue(Record into, JsonToken value, int name) throws IOException {
+        switch (value) {
+        case START_OBJECT:
+            readObject(into, name);
+            break;
+        case START_ARRAY:
+            int index = 0;
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (element == null) {
+                    throw new IOException("Unexpected end of input in record " + (recordNumber + 1));
+                }
+                readValue(into, element, names.child(name, index++));
+            }
+            break;
+        case VALUE_NULL:
+            into.add(names.get(name), null, 0, 0);
+            break;
+        default:
+            into.add(names.get(name), parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            break;
+        }
+    }
+
+    /**
+     * One record of the results. Names are shared between records and values are views over a
+     * buffer that is refilled by the next read.
+     */
+    public static final class Record {
+        private char[] chars = new char[1024];
+        private int length;
+        private String[] names = new String[16];
+        private int[] ends = new int[16];
+        // false for a JSON null
+        private boolean[] present = new boolean[16];
+        private Value[] values = new Value[16];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public String getName(int index) {
+            checkIndex(index);
+            return names[index];
+        }
+
+        /**
+         * @return index of the value with the given flattened name, or -1 if the record has none
+         */
+        public int indexOf(String name) {
+            for (int i = 0; i < size; i++) {
+                if (names[i] == name || names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return a view of the value, or null for a JSON null; the view changes when the record is read into again
+         */
+        public CharSequence get(int index) {
+            checkIndex(index);
+            if (!present[index]) {
+                return null;
+            }
+            Value value = values[index];
+            if (value == null) {
+                value = values[index] = new Value();
+            }
+            value.start = start(index);
+            value.end = ends[index];
+            return value;
+        }
+
+        /**
+         * @return the value, or null if it is missing or a JSON null
+         */
+        public CharSequence get(String name) {
+            int index = indexOf(name);
+            return index < 0 ? null : get(index);
+        }
+
+        public String getString(int index) {
+            checkIndex(index);
+            return present[index] ? new String(chars, start(index), ends[index] - start(index)) : null;
+        }
+
+        public String getString(String name) {
+            int index = indexOf(name);
+            return index < 0 ? null : getString(index);
+        }
+
+        /**
+         * @return true if the value is the JSON literal true
+         */
+        public boolean getBoolean(String name) {
+            int index = indexOf(name);
+            if (index < 0 || !present[index] || ends[index] - start(index) != 4) {
+                return false;
+            }
+            int start = start(index);
+            return chars[start] == 't' && chars[start + 1] == 'r' && chars[start + 2] == 'u' && chars[start + 3] == 'e';
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(names[i]).append('=').append(getString(i));
+            }
+            return sb.append('}').toString();
+        }
+
+        void clear() {
+            length = 0;
+            size = 0;
+        }
+
+        void add(String name, char[] src, int offset, int count) {
+            if (size == ends.length) {
+                names = Arrays.copyOf(names, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                present = Arrays.copyOf(present, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (length + count > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+            }
+            if (src != null) {
+                System.arraycopy(src, offset, chars, length, count);
+                length += count;
+            }
+            names[size] = name;
+            present[size] = src != null;
+            ends[size++] = length;
+        }
+
+        private int start(int index) {
+            return index == 0 ? 0 : ends[index - 1];
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+        private final class Value implements CharSequence {
+            int start;
+            int end;
+
+            @Override
+            public int length() {
+                return end - start;
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (index < 0 || index >= end - start) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + (end - start));
+                }
+                return chars[start + index];
+            }
+
+            @Override
+            public CharSequence subSequence(int from, int to) {
+                if (from < 0 || to > end - start || from > to) {
+                    throw new IndexOutOfBoundsException("Range: " + from + "-" + to + ", Length: " + (end - start));
+                }
+                return new String(chars, start + from, to - from);
+            }
+
+            @Override
+            public String toString() {
+                return new String(chars, start, end - start);
+            }
+        }
+    }
+
+    /**
+     * Flattened names by parent id and member, built once and found again without allocating.
+     * Member names usually come canonicalized from the parser, so identity is checked first.
+     */
+    private static final class NameTable {
+        private String[] fullNames = new String[64];
+        private int[] parents = new int[64];
+        private String[] members = new String[64];
+        private int[] indexes = new int[64];
+        private int size;
+        // open addressing over ids + 1, 0 is empty
+        private int[] slots = new int[128];
+
+        String get(int id) {
+            return fullNames[id];
+        }
+
+        int child(int parent, String member) {
+            return find(parent, member, -1);
+        }
+
+        int child(int parent, int index) {
+            return find(parent, null, index);
+        }
+
+        private int find(int parent, String member, int index) {
+            int mask = slots.length - 1;
+            for (int slot = hash(parent, member, index) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots[slot] - 1;
+                if (id < 0) {
+                    return add(slot, parent, member, index);
+                }
+                if (parents[id] == parent && indexes[id] == index
+                        && (members[id] == member || (member != null && member.equals(members[id])))) {
+                    return id;
+                }
+            }
+        }
+
+        private static int hash(int parent, String member, int index) {
+            int h = (parent * 31 + (member == null ? index : member.hashCode())) * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int add(int slot, int parent, String member, int index) {
+            if (size == fullNames.length) {
+                fullNames = Arrays.copyOf(fullNames, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+                members = Arrays.copyOf(members, size * 2);
+                indexes = Arrays.copyOf(indexes, size * 2);
+            }
+            String leaf = member != null ? member : Integer.toString(index);
+            fullNames[size] = parent < 0 ? leaf : fullNames[parent] + "." + leaf;
+            parents[size] = parent;
+            members[size] = member;
+            indexes[size] = index;
+            slots[slot] = size + 1;
+            int id = size++;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = hash(parents[id], members[id], indexes[id]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * The fields of the records in a batch, declared once so that rows can be written without an
+ * SObject per record. A field name of the form Relationship.Field, as used in CSV headers, is a
+ * foreign key reference by the external id field of the related record. The XML tags and JSON
+ * property names of every field are rendered when the schema is created.
+ *
+ * @see BatchRequest#addRow(RecordSchema, String...)
+ * @see JsonBatchRequest#addRow(RecordSchema, String...)
+ * @see AsyncXmlOutputStream#writeRow(RecordSchema, String...)
+ */
+public final class RecordSchema {
+
+    private final String[] fieldNames;
+    // name of the element holding the value; for a reference, the element holding the sObject
+    final String[] elementNames;
+    final char[][] startTags;
+    final char[][] endTags;
+    // JSON property of each field, and of the field inside the related object for a reference
+    final SerializedString[] jsonNames;
+    final SerializedString[] jsonReferenceFields;
+
+    public RecordSchema(String... fieldNames) {
+        if (fieldNames == null || fieldNames.length == 0) {
+            throw new IllegalArgumentException("field names can not be null/empty");
+        }
+        this.fieldNames = fieldNames.clone();
+        elementNames = new String[fieldNames.length];
+        startTags = new char[fieldNames.length][];
+        endTags = new char[fieldNames.length][];
+        jsonNames = new SerializedString[fieldNames.length];
+        jsonReferenceFields = new SerializedString[fieldNames.length];
+
+        for (int i = 0; i < fieldNames.length; i++) {
+            String name = fieldNames[i];
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("field name " + i + " can not be null/empty");
+            }
+            int dot = name.indexOf('.');
+            if (dot < 0) {
+                elementNames[i] = name;
+                startTags[i] = ("<" + name + ">").toCharArray();
+                endTags[i] = ("</" + name + ">").toCharArray();
+                jsonNames[i] = new SerializedString(name);
+            } else {
+                String relationship = name.substring(0, dot);
+                String field = name.substring(dot + 1);
+                if (relationship.isEmpty() || field.isEmpty() || field.indexOf('.') >= 0) {
+                    throw new IllegalArgumentException("Invalid foreign key reference: " + name);
+                }
+                elementNames[i] = relationship;
+                startTags[i] = ("<" + relationship + "><sObject><" + field + ">").toCharArray();
+                endTags[i] = ("</" + field + "></sObject></" + relationship + ">").toCharArray();
+                jsonNames[i] = new SerializedString(relationship);
+                jsonReferenceFields[i] = new SerializedString(field);
+            }
+        }
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+
+    /**
+     * @return index of the field, or -1 if it is not part of the schema
+     */
+    public int indexOf(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return an empty row of this schema, meant to be filled and written over and over
+     */
+    public Row newRow() {
+        return new Row(this);
+    }
+
+    /**
+     * Values of one record, copied into a buffer that is kept across rows. A field that has not
+     * been set since the last clear() is left out of the record; a field set to null is sent
+     * as nil, which clears it on the server.
+     */
+    public static final class Row {
+        static final int UNSET = -1;
+        static final int NIL = -2;
+
+        private final RecordSchema schema;
+        private final int[] starts;
+        // length of each value, or UNSET / NIL
+        final int[] lengths;
+        char[] buffer = new char[256];
+        private int size;
+
+        Row(RecordSchema schema) {
+            this.schema = schema;
+            starts = new int[schema.getFieldCount()];
+            lengths = new int[schema.getFieldCount()];
+            clear();
+        }
+
+        public RecordSchema getSchema() {
+            return schema;
+        }
+
+        /**
+         * leaves every field unset, keeping the buffer
+         */
+        public Row clear() {
+            Arrays.fill(lengths, UNSET);
+            size = 0;
+            return this;
+        }
+
+        public Row set(int index, CharSequence value) {
+            if (value == null) {
+                return setNull(index);
+            }
+            int length = value.length();
+            int start = reserve(index, length);
+            if (value instanceof String) {
+                ((String) value).getChars(0, length, buffer, start);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    buffer[start + i] = value.charAt(i);
+                }
+            }
+            return this;
+        }
+
+        public Row set(int index, char[] value, int offset, int length) {
+            int start = reserve(index, length);
+            System.arraycopy(value, offset, buffer, start, length);
+            return this;
+        }
+
+        public Row set(String fieldName, CharSequence value) {
+            return set(fieldIndex(fieldName), value);
+        }
+
+        public Row setNull(int index) {
+            lengths[index] = NIL;
+            return this;
+        }
+
+        int start(int index) {
+            return starts[index];
+        }
+
+        private int reserve(int index, int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+            int start = size;
+            starts[index] = start;
+            lengths[index] = length;
+            size += length;
+            return start;
+        }
+
+        private int fieldIndex(String fieldName) {
+            int index = schema.indexOf(fieldName);
+            if (index < 0) {
+                throw new IllegalArgumentException("Field " + fieldName + " is not part of the schema");
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.sforce.bulk;
+
+import com.sforce.async.CSVReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A UTF-8 CSV file read row by row, where each row is known by the byte offset it starts at.
+ * Passing that offset to {@link UpdateStream#write(long, String...)} lets a {@link RowIndex}
+ * lead a failed result straight back to its row, which {@link #read(long)} then reads again
+ * without going over the rest of the file.
+ */
+public class CsvRowSource implements RowSource, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+    // file position of the first byte in window
+    private long windowStart;
+    private byte[] record = new byte[1024];
+    private int recordLength;
+
+    // each row is decoded into chars and parsed with the same decoder, buffer and parser
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(1024);
+    private final CharsReader charsReader = new CharsReader();
+    private final CSVReader parser = new CSVReader(charsReader);
+    private final CSVReader.Record values = new CSVReader.Record();
+    // offset of the row last found by readAt(), after any blank lines it skipped
+    private long readOffset;
+
+    private final String[] header;
+    private long rowOffset = -1;
+    private long nextOffset;
+
+    public CsvRowSource(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        window.limit(0);
+        try {
+            header = next();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (header == null) {
+            channel.close();
+            throw new IOException("No header row in " + file);
+        }
+    }
+
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * @return values of the next row, or null at the end of the file
+     */
+    public String[] next() throws IOException {
+        String[] row = readAt(nextOffset);
+        if (row != null) {
+            rowOffset = readOffset;
+        }
+        return row;
+    }
+
+    /**
+     * @return byte offset of the row last returned by next()
+     */
+    public long getRowOffset() {
+        return rowOffset;
+    }
+
+    @Override
+    public String[] read(long sourceOffset) throws IOException {
+        long saved = nextOffset;
+        try {
+            return readAt(sourceOffset);
+        } finally {
+            nextOffset = saved;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return values of the first row at or after offset, skipping blank lines, or null at the end of the file
+     */
+    private String[] readAt(long offset) throws IOException {
+        while (readRecord(offset)) {
+            nextOffset = offset + recordLength;
+            decode();
+            charsReader.set(chars.array(), chars.position());
+            parser.reset(charsReader);
+            // the parser skips a blank line by reporting the end of its input
+            if (parser.nextRecord(values)) {
+                readOffset = offset;
+                String[] row = new String[values.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = values.getString(i);
+                }
+                return row;
+            }
+            offset = nextOffset;
+        }
+        return null;
+    }
+
+    private void decode() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(record, 0, recordLength);
+        // UTF-8 never needs more chars than bytes
+        if (chars.capacity() < recordLength) {
+            chars = CharBuffer.allocate(Math.max(chars.capacity() * 2, recordLength));
+        }
+        chars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        decoder.flush(chars);
+    }
+
+    /**
+     * copies the bytes from offset up to and including the next line break outside quotes
+     */
+    private boolean readRecord(long offset) throws IOException {
+        recordLength = 0;
+        boolean inQuotes = false;
+        long position = offset;
+        while (true) {
+            if (position < windowStart || position >= windowStart + window.limit()) {
+                if (!fill(position)) {
+                    return recordLength > 0;
+                }
+            }
+            int from = (int) (position - windowStart);
+            byte[] bytes = window.array();
+            int limit = window.limit();
+            int i = from;
+            boolean found = false;
+            for (; i < limit; i++) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    i++;
+                    found = true;
+                    break;
+                }
+            }
+            append(from, i - from);
+            position += i - from;
+            if (found) {
+                return true;
+            }
+        }
+    }
+
+    private boolean fill(long position) throws IOException {
+        window.clear();
+        windowStart = position;
+        while (window.hasRemaining()) {
+            if (channel.read(window, position + window.position()) < 0) {
+                break;
+            }
+        }
+        window.flip();
+        return window.hasRemaining();
+    }
+
+    private void append(int from, int length) {
+        if (recordLength + length > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+        }
+        System.arraycopy(window.array(), from, record, recordLength, length);
+        recordLength += length;
+    }
+
+    /**
+     * a reader over a reusable char array
+     */
+    private static final class CharsReader extends Reader {
+        private char[] chars;
+        private int position;
+        private int length;
+
+        void set(char[] chars, int length) {
+            this.chars = chars;
+            this.length = length;
+            position = 0;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int count) {
+            if (position == length) {
+                return -1;
+            }
+            int n = Math.min(count, length - position);
+            System.arraycopy(chars, position, buffer, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
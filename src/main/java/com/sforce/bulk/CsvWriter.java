@@ -78,7 +78,9 @@ public class CsvWriter {
         }
 
         writer.print("\"");
-        value = value.replaceAll("\"", "\"\"");
+        if (value.indexOf('"') != -1) {
+            value = value.replace("\"", "\"\"");
+        }
         writer.print(value);
         writer.print("\"");
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.bulk;
+
+import com.sforce.async.ConcurrencyMode;
+import com.sforce.async.JobInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Results of an {@link UpdateStream} job, where rows that failed with a retriable status code are
+ * sent again in new jobs until they succeed or {@link StreamHandler#getMaxRetryRounds()} is used
+ * up. Successes and final failures are returned as they arrive; retriable failures are held back
+ * and written to the next job once the current one has returned all its results, after waiting
+ * {@link StreamHandler#getRetryWaitTime(int)}. Retry jobs run in
+ * {@link StreamHandler#getRetryConcurrencyMode()}.
+ * <p/>
+ * Failed rows are found through the stream's {@link RowIndex} and read again from a
+ * {@link RowSource}, so the stream must have been given an index before it was written. Results
+ * of a retried row keep the row's original source offset, while their batch id and row are those
+ * of the retry job.
+ */
+public class RetryingResultStream {
+
+    private final StreamHandler handler;
+    private final JobInfo job;
+    private final String[] fieldNames;
+    private final RowSource source;
+
+    private UpdateResultStream results;
+    private int round;
+    // source offsets of the retriable rows that failed in the current round
+    private long[] failedRows = new long[64];
+    private int failedCount;
+    // index of the current retry job, which belongs to this stream
+    private RowIndex retryIndex;
+    private Path retryIndexFile;
+
+    /**
+     * closes the update stream and starts reading its results
+     */
+    public RetryingResultStream(StreamHandler handler, UpdateStream stream, RowSource source)
+            throws StreamException {
+        this(handler, checkIndexed(stream).close(), stream.getJob(), stream.getFieldNames(), source);
+    }
+
+    RetryingResultStream(StreamHandler handler, UpdateResultStream results, JobInfo job, String[] fieldNames,
+                         RowSource source) {
+        this.handler = handler;
+        this.results = results;
+        this.job = job;
+        this.fieldNames = fieldNames;
+        this.source = source;
+    }
+
+    private static UpdateStream checkIndexed(UpdateStream stream) throws StreamException {
+        if (stream.getRowIndex() == null) {
+            throw new StreamException("UpdateStream has no RowIndex to find failed rows with");
+        }
+        return stream;
+    }
+
+    /**
+     * @return the next successful or finally failed result, or null once every round is read
+     */
+    public UpdateResult next() throws StreamException {
+        while (true) {
+            UpdateResult result = results.next();
+            if (result == null) {
+                if (failedCount == 0) {
+                    closeRetryIndex();
+                    return null;
+                }
+                results = retry();
+            } else if (isRetriable(result)) {
+                addFailedRow(result.getSourceOffset());
+            } else {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * @return number of retry rounds started so far
+     */
+    public int getRound() {
+        return round;
+    }
+
+    public void close() {
+        results.close();
+        closeRetryIndex();
+    }
+
+    private boolean isRetriable(UpdateResult result) {
+        return !result.isSuccess() && round < handler.getMaxRetryRounds() && result.getSourceOffset() >= 0
+                && result.getStatusCode() != null && handler.isRetriable(result.getStatusCode());
+    }
+
+    private void addFailedRow(long sourceOffset) {
+        if (failedCount == failedRows.length) {
+            failedRows = Arrays.copyOf(failedRows, failedCount * 2);
+        }
+        failedRows[failedCount++] = sourceOffset;
+    }
+
+    private UpdateResultStream retry() throws StreamException {
+        long[] rows = Arrays.copyOf(failedRows, failedCount);
+        failedCount = 0;
+        round++;
+        // rows are read back in source order
+        Arrays.sort(rows);
+
+        long waitTime = handler.getRetryWaitTime(round);
+        handler.info("Retrying " + rows.length + " failed rows after " + waitTime + " ms, round " + round);
+        try {
+            Thread.sleep(waitTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamException("Interrupted while waiting to retry failed rows", e);
+        }
+
+        closeRetryIndex();
+        return resubmit(rows);
+    }
+
+    /**
+     * writes the rows at the given source offsets to a new job
+     */
+    UpdateResultStream resubmit(long[] rows) throws StreamException {
+        try {
+            retryIndexFile = Files.createTempFile("bulk-retry", ".idx");
+            retryIndex = RowIndex.create(retryIndexFile);
+        } catch (IOException e) {
+            throw new StreamException("Failed to create row index for retry", e);
+        }
+
+        ConcurrencyMode concurrencyMode = handler.getRetryConcurrencyMode();
+        if (concurrencyMode == null) {
+            concurrencyMode = job.getConcurrencyMode();
+        }
+        UpdateStream stream = UpdateStream.createInSession(handler);
+        stream.setRowIndex(retryIndex);
+        stream.start(job.getObject(), job.getOperation(), concurrencyMode, job.getExternalIdFieldName(), fieldNames);
+
+        for (long row : rows) {
+            String[] values;
+            try {
+                values = source.read(row);
+            } catch (IOException e) {
+                throw new StreamException("Failed to read row at " + row + " again", e);
+            }
+            if (values == null) {
+                throw new StreamException("No row at " + row + " to retry");
+            }
+            stream.write(row, values);
+        }
+        return stream.close();
+    }
+
+    private void closeRetryIndex() {
+        if (retryIndex == null) {
+            return;
+        }
+        try {
+            retryIndex.close();
+            Files.deleteIfExists(retryIndexFile);
+        } catch (IOException e) {
+            handler.info("Failed to delete row index " + retryIndexFile + ": " + e);
+        }
+        retryIndex = null;
+        retryIndexFile = null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ties bulk results back to the rows they are for. While {@link UpdateStream} writes, the index
+ * appends the source offset of every row to a file, batch after batch, and remembers where each
+ * batch starts once its id is known. A result's batch id and row then lead to the source offset
+ * with a single read, so failed rows can be read again from the source without another pass.
+ * <p/>
+ * The source offset is whatever the writer passes to {@link UpdateStream#write(long, String...)},
+ * such as a byte offset from {@link CsvRowSource}, or the row's number in the stream otherwise.
+ */
+public class RowIndex implements Closeable {
+
+    private static final int ENTRY_SIZE = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    // rows written to the file, and the part of them that pending still holds
+    private long rowCount;
+    private long flushedRows;
+
+    // first row and row count of each batch, in the order the batches were written
+    private long[] batchStarts = new long[64];
+    private int[] batchSizes = new int[64];
+    private int batchCount;
+    private long currentBatchStart;
+    private final Map<String, Integer> batches = new HashMap<String, Integer>();
+
+    private RowIndex(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * creates an empty index in the given file, replacing it if it exists
+     */
+    public static RowIndex create(Path file) throws IOException {
+        return new RowIndex(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * @return source offset of the given row of a batch, or -1 if the index does not know it
+     */
+    public synchronized long getSourceOffset(String batchId, int batchRow) throws IOException {
+        Integer batch = batches.get(batchId);
+        if (batch == null || batchRow < 0 || batchRow >= batchSizes[batch]) {
+            return -1;
+        }
+        flush();
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        read(entry, batchStarts[batch] + batchRow);
+        return entry.getLong(0);
+    }
+
+    /**
+     * @return source offsets of every row of a batch, in row order, or null if the batch is unknown
+     */
+    public synchronized long[] getSourceOffsets(String batchId) throws IOException {
+        Integer batch = batches.get(batchId);
+        if (batch == null) {
+            return null;
+        }
+        flush();
+        ByteBuffer entries = ByteBuffer.allocate(batchSizes[batch] * ENTRY_SIZE);
+        read(entries, batchStarts[batch]);
+        long[] offsets = new long[batchSizes[batch]];
+        entries.flip();
+        entries.asLongBuffer().get(offsets);
+        return offsets;
+    }
+
+    /**
+     * @return number of rows of the batch, or -1 if it is unknown
+     */
+    public synchronized int getRowCount(String batchId) {
+        Integer batch = batches.get(batchId);
+        return batch == null ? -1 : batchSizes[batch];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    synchronized void add(long sourceOffset) throws IOException {
+        if (!pending.hasRemaining()) {
+            flush();
+        }
+        pending.putLong(sourceOffset);
+        rowCount++;
+    }
+
+    /**
+     * ends the batch holding the rows added since the last call
+     *
+     * @return number of the batch, to give it its id once it is created
+     */
+    synchronized int endBatch() {
+        if (batchCount == batchStarts.length) {
+            batchStarts = Arrays.copyOf(batchStarts, batchCount * 2);
+            batchSizes = Arrays.copyOf(batchSizes, batchCount * 2);
+        }
+        batchStarts[batchCount] = currentBatchStart;
+        batchSizes[batchCount] = (int) (rowCount - currentBatchStart);
+        currentBatchStart = rowCount;
+        return batchCount++;
+    }
+
+    synchronized void setBatchId(int batch, String batchId) {
+        batches.put(batchId, batch);
+    }
+
+    private void flush() throws IOException {
+        pending.flip();
+        long position = flushedRows * ENTRY_SIZE;
+        while (pending.hasRemaining()) {
+            position += channel.write(pending, position);
+        }
+        flushedRows = rowCount;
+        pending.clear();
+    }
+
+    private void read(ByteBuffer into, long row) throws IOException {
+        long position = row * ENTRY_SIZE;
+        while (into.hasRemaining()) {
+            if (channel.read(into, position + into.position()) < 0) {
+                throw new IOException("Row index is shorter than expected at row " + row);
+            }
+        }
+    }
+}
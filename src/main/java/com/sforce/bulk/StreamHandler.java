@@ -26,9 +26,12 @@
 
 package com.sforce.bulk;
 
+import com.sforce.async.ConcurrencyMode;
+import com.sforce.async.StatusCode;
 import com.sforce.ws.ConnectorConfig;
 
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a Handler for Stream status
@@ -43,8 +46,9 @@ public class StreamHandler {
 
     private final ConnectorConfig config;
 
-    private boolean shutdown = false;
-    private int errorCount;
+    // batches may upload on several threads, so error state is shared between them
+    private volatile boolean shutdown = false;
+    private final AtomicInteger errorCount = new AtomicInteger();
 
     public StreamHandler() {
         config = new ConnectorConfig();
@@ -63,18 +67,18 @@ public class StreamHandler {
     }
 
     public void error(String message, Throwable e) throws StreamException {
-        errorCount++;
+        int count = errorCount.incrementAndGet();
 
         getLogStream().println(BULK_TAG + "ERROR:" + message);
         e.printStackTrace(getLogStream());
 
-        if (errorCount > getMaxErrorCount()) {
+        if (count > getMaxErrorCount()) {
             String str = "Tried more than " + getMaxErrorCount() + "... gaving up ...";
             info(str);
             shutdown = true;
         } else {
             long waitTime = getWaitTime();
-            info("Error count " + errorCount + ". Trying again after " + waitTime);
+            info("Error count " + count + ". Trying again after " + waitTime);
 
             try {
                 Thread.sleep(waitTime);
@@ -84,7 +88,43 @@ public class StreamHandler {
         }
     }
 
+    /**
+     * Reports a failed attempt of an operation that keeps its own error count, such as one batch
+     * upload among several running in parallel, so that failures of the others neither add to its
+     * wait time nor make it give up early.
+     *
+     * @param attempts failed attempts of the operation so far, including this one
+     * @return true to try the operation again, false to give up on it
+     */
+    public boolean error(String message, Throwable e, int attempts) {
+        getLogStream().println(BULK_TAG + "ERROR:" + message);
+        e.printStackTrace(getLogStream());
+
+        if (attempts > getMaxErrorCount()) {
+            info("Tried more than " + getMaxErrorCount() + "... gaving up ...");
+            return false;
+        }
+
+        long waitTime = getWaitTime(attempts);
+        info("Error count " + attempts + ". Trying again after " + waitTime);
+        try {
+            Thread.sleep(waitTime);
+        } catch (InterruptedException e1) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
     public long getWaitTime() {
+        return getWaitTime(errorCount.get());
+    }
+
+    /**
+     * @param errorCount number of errors so far
+     * @return milliseconds to wait before trying again
+     */
+    public long getWaitTime(int errorCount) {
         return (long) (Math.pow(2, errorCount) * 1000);
     }
 
@@ -104,6 +144,81 @@ public class StreamHandler {
         return 5000;
     }
 
+    /**
+     * Number of batches UpdateStream may upload in parallel while it writes the next one, on the
+     * config's async executor. 0 uploads each batch on the writing thread.
+     */
+    public int getMaxParallelUploads() {
+        return 0;
+    }
+
+    /**
+     * Number of batch results UpdateResultStream may download in parallel. Batches are then read in
+     * the order they finish rather than the order they were created. 0 reads them one by one.
+     */
+    public int getMaxParallelDownloads() {
+        return 0;
+    }
+
+    /**
+     * @return milliseconds between polls of the job's batch list when downloading in parallel
+     */
+    public long getResultPollInterval() {
+        return 5000;
+    }
+
+    /**
+     * @return milliseconds parallel downloads wait for UpdateResultStream.next() to take a result
+     * before they stop and fail the stream, so a stream that is dropped without close() does not
+     * keep its downloads running
+     */
+    public long getResultReadTimeout() {
+        return getMaxWaitTime();
+    }
+
+    /**
+     * @param attempt number of times the batch was already found unfinished
+     * @return milliseconds to wait before checking an unfinished batch again
+     */
+    public long getBatchPollWaitTime(int attempt) {
+        long waitTime = (long) (Math.pow(attempt, 2) * 1000);
+        return Math.min(waitTime, getMaxWaitTime());
+    }
+
+    /**
+     * @return true if rows that failed with the given code may succeed when sent again, as rows
+     * that could not be locked while other batches held them
+     * @see RetryingResultStream
+     */
+    public boolean isRetriable(StatusCode statusCode) {
+        return statusCode == StatusCode.UNABLE_TO_LOCK_ROW || statusCode == StatusCode.UNABLE_TO_LOCK_RECORD;
+    }
+
+    /**
+     * @return number of times RetryingResultStream sends retriable rows again before it gives up on them
+     */
+    public int getMaxRetryRounds() {
+        return 3;
+    }
+
+    /**
+     * @param round number of the retry round about to start, from 1
+     * @return milliseconds to wait before sending the failed rows again
+     */
+    public long getRetryWaitTime(int round) {
+        long waitTime = (long) (Math.pow(2, round - 1) * 5000);
+        return Math.min(waitTime, getMaxWaitTime());
+    }
+
+    /**
+     * @return concurrency mode of the jobs that send failed rows again, or null to use the mode of
+     * the original job. Serial by default, since rows that failed to lock tend to fail again when
+     * their batches run side by side.
+     */
+    public ConcurrencyMode getRetryConcurrencyMode() {
+        return ConcurrencyMode.Serial;
+    }
+
     public long getMaxWaitTime() {
         return 1000 * 60 * 10; //10 min
     }
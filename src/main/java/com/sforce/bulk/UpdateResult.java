@@ -26,6 +26,8 @@
 
 package com.sforce.bulk;
 
+import com.sforce.async.StatusCode;
+
 /**
  * This class represents
  * <p/>
@@ -37,6 +39,9 @@ public class UpdateResult {
     private boolean success;
     private boolean created;
     private String error;
+    private String batchId;
+    private int batchRow = -1;
+    private long sourceOffset = -1;
 
     public UpdateResult(String id, boolean success, boolean created, String error) {
         this.id = id;
@@ -45,6 +50,18 @@ public class UpdateResult {
         this.error = error;
     }
 
+    public UpdateResult(String id, boolean success, boolean created, String error, String batchId, int batchRow) {
+        this(id, success, created, error);
+        this.batchId = batchId;
+        this.batchRow = batchRow;
+    }
+
+    public UpdateResult(String id, boolean success, boolean created, String error, String batchId, int batchRow,
+                        long sourceOffset) {
+        this(id, success, created, error, batchId, batchRow);
+        this.sourceOffset = sourceOffset;
+    }
+
     public String getId() {
         return id;
     }
@@ -61,6 +78,44 @@ public class UpdateResult {
         return error;
     }
 
+    /**
+     * @return status code at the start of the error, such as UNABLE_TO_LOCK_ROW, or null if there
+     * is no error or its code is not known
+     */
+    public StatusCode getStatusCode() {
+        if (error == null || error.isEmpty()) {
+            return null;
+        }
+        int colon = error.indexOf(':');
+        try {
+            return StatusCode.valueOf(colon < 0 ? error : error.substring(0, colon));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return id of the batch this result belongs to
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * @return zero based index of the row within its batch that this result is for, or -1 if unknown
+     */
+    public int getBatchRow() {
+        return batchRow;
+    }
+
+    /**
+     * @return offset of the row in its source, as given to {@link UpdateStream#write(long, String...)},
+     * or -1 if the stream had no {@link RowIndex}
+     */
+    public long getSourceOffset() {
+        return sourceOffset;
+    }
+
     @Override
     public String toString() {
         return "UpdateResult{" +
@@ -68,6 +123,9 @@ public class UpdateResult {
                 ", success=" + success +
                 ", created=" + created +
                 ", error='" + error + '\'' +
+                ", batchId='" + batchId + '\'' +
+                ", batchRow=" + batchRow +
+                ", sourceOffset=" + sourceOffset +
                 '}';
     }
 }
@@ -27,10 +27,18 @@
 package com.sforce.bulk;
 
 import com.sforce.async.*;
+import com.sforce.ws.util.VirtualThreads;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class represents
@@ -39,21 +47,48 @@ import java.util.ArrayList;
  * Date: Dec 15, 2010
  */
 public class UpdateResultStream {
+    // marks the end of the results in the concurrent mode queue
+    private static final UpdateResult END = new UpdateResult(null, false, false, null);
+
     private JobInfo job;
     private BulkConnection bulkConnection;
     private StreamHandler handler;
     private BatchInfo[] batchList;
     private int batchIndex = -1;
+    private int batchRow;
     private CSVReader resultReader;
+    private RowIndex rowIndex;
+    // source offsets of the rows of the batch being read, when there is a row index
+    private long[] sourceOffsets;
+
+    // set when StreamHandler.getMaxParallelDownloads() allows batches to be collected concurrently
+    private BlockingQueue<UpdateResult> results;
+    private volatile Throwable collectFailure;
+    private volatile boolean closed;
+    private boolean finished;
 
     public UpdateResultStream(StreamHandler handler, BulkConnection bulkConnection, JobInfo job)
             throws StreamException {
+        this(handler, bulkConnection, job, null);
+    }
+
+    /**
+     * @param rowIndex index the job's rows were written to, which gives each result its source offset
+     */
+    public UpdateResultStream(StreamHandler handler, BulkConnection bulkConnection, JobInfo job, RowIndex rowIndex)
+            throws StreamException {
 
         this.job = job;
         this.bulkConnection = bulkConnection;
         this.handler = handler;
+        this.rowIndex = rowIndex;
 
-        loadBatchInfoList(handler, bulkConnection, job);
+        int maxParallelDownloads = handler.getMaxParallelDownloads();
+        if (maxParallelDownloads > 0) {
+            startCollecting(maxParallelDownloads);
+        } else {
+            loadBatchInfoList(handler, bulkConnection, job);
+        }
     }
 
     private void loadBatchInfoList(StreamHandler handler, BulkConnection bulkConnection, JobInfo job)
@@ -70,7 +105,17 @@ public class UpdateResultStream {
         }
     }
 
+    /**
+     * Returns the next result, or null once all batches are read. Without parallel downloads
+     * results come batch by batch in the order the batches were created; with them, batches
+     * come in the order they finish and {@link UpdateResult#getBatchId()} and
+     * {@link UpdateResult#getBatchRow()} tie each result back to the row it is for.
+     */
     public UpdateResult next() throws StreamException {
+        if (results != null) {
+            return nextCollected();
+        }
+
         try {
             ArrayList<String> record;
 
@@ -83,6 +128,7 @@ public class UpdateResultStream {
                 }
 
                 loadNextBatch();
+                batchRow = 0;
                 record = resultReader.nextRecord();
             }
 
@@ -90,12 +136,41 @@ public class UpdateResultStream {
                 return null;
             }
 
-            return new UpdateResult(valueAt(record,0), booleanAt(record, 1), booleanAt(record, 2), valueAt(record, 3));
+            return toResult(record, batchList[batchIndex].getId(), batchRow++, sourceOffsets);
         } catch (IOException e) {
             throw new StreamException("Failed to read next record", e);
         }
     }
 
+    /**
+     * stops concurrent collection, if any, and drops results that were not read yet. Call it when
+     * results are not read to the end: until then, or until no result has been read for
+     * {@link StreamHandler#getResultReadTimeout()}, parallel downloads keep running.
+     */
+    public void close() {
+        closed = true;
+        if (results != null) {
+            results.clear();
+        }
+    }
+
+    private UpdateResult toResult(ArrayList<String> record, String batchId, int row, long[] offsets) {
+        long offset = offsets != null && row < offsets.length ? offsets[row] : -1;
+        return new UpdateResult(valueAt(record,0), booleanAt(record, 1), booleanAt(record, 2), valueAt(record, 3),
+                batchId, row, offset);
+    }
+
+    private long[] loadSourceOffsets(String batchId) throws StreamException {
+        if (rowIndex == null) {
+            return null;
+        }
+        try {
+            return rowIndex.getSourceOffsets(batchId);
+        } catch (IOException e) {
+            throw new StreamException("Failed to read row index for batch " + batchId, e);
+        }
+    }
+
     private String valueAt(ArrayList<String> record, int index) {
         if (index < record.size()) {
             return record.get(index);
@@ -117,14 +192,11 @@ public class UpdateResultStream {
                 BatchInfo bInfo = bulkConnection.getBatchInfo(job.getId(), batchList[batchIndex].getId());
                 handler.info("Batch " + bInfo.getId() + " -- state -- " + bInfo.getState() + " -- try: " + count);
 
-                if (bInfo.getState() == BatchStateEnum.Completed || bInfo.getState() == BatchStateEnum.Failed) {
+                if (isDone(bInfo)) {
                     break;
                 }
 
-                long waitTime = (long) (Math.pow(count, 2) * 1000);
-                waitTime = waitTime > handler.getMaxWaitTime() ? handler.getMaxWaitTime() : waitTime;
-
-                Thread.sleep(waitTime);
+                Thread.sleep(handler.getBatchPollWaitTime(count));
                 count++;
             } catch(Throwable e) {
                 handler.error("Failed to read result for batch " + batchList[batchIndex].getId(), e);
@@ -132,23 +204,170 @@ public class UpdateResultStream {
         }
     }
 
-
-
+    private static boolean isDone(BatchInfo bInfo) {
+        return bInfo.getState() == BatchStateEnum.Completed || bInfo.getState() == BatchStateEnum.Failed;
+    }
 
     private void loadNextBatch() throws StreamException {
         waitForNextBatch();
+        resultReader = openResults(batchList[batchIndex].getId());
+        sourceOffsets = loadSourceOffsets(batchList[batchIndex].getId());
+    }
 
+    private CSVReader openResults(String batchId) throws StreamException {
+        // counted per batch, so failures of batches downloading in parallel do not add up
+        int errors = 0;
         while(handler.shouldContinue()) {
             try {
-                InputStream resultStream =
-                        bulkConnection.getBatchResultStream(job.getId(), batchList[batchIndex].getId());
+                InputStream resultStream = bulkConnection.getBatchResultStream(job.getId(), batchId);
 
-                resultReader = new CSVReader(resultStream);
-                resultReader.nextRecord(); //comsume header
-                break;
+                CSVReader reader = new CSVReader(resultStream);
+                reader.nextRecord(); //comsume header
+                return reader;
             } catch(Throwable e) {
-                handler.error("Failed to read result for batch " + batchList[batchIndex].getId(), e);
+                if (!handler.error("Failed to read result for batch " + batchId, e, ++errors)) {
+                    break;
+                }
             }
         }
+        throw new StreamException("Gave up reading result for batch " + batchId);
+    }
+
+    private UpdateResult nextCollected() throws StreamException {
+        if (finished) {
+            return null;
+        }
+        UpdateResult result;
+        try {
+            result = results.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamException("Interrupted while waiting for results", e);
+        }
+        if (result != END) {
+            return result;
+        }
+
+        finished = true;
+        Throwable failure = collectFailure;
+        if (failure != null) {
+            throw failure instanceof StreamException ? (StreamException) failure
+                    : new StreamException("Failed to read batch results", failure);
+        }
+        return null;
+    }
+
+    private void startCollecting(final int maxParallelDownloads) {
+        results = new ArrayBlockingQueue<UpdateResult>(Math.max(1, handler.getMaxRecordsInBatch()));
+        final Executor executor = handler.getConfig().getAsyncExecutor();
+        // the collector waits for downloads it queues on the executor, so it must not hold one of the
+        // executor's threads itself: with a bounded executor the downloads would never run
+        Runnable collector = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    collect(executor, maxParallelDownloads);
+                    put(END);
+                } catch (Throwable e) {
+                    if (collectFailure == null) {
+                        collectFailure = e;
+                    }
+                    // every download has stopped, so there is room once the reader catches up
+                    try {
+                        put(END);
+                    } catch (InterruptedException e1) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        String name = "wsc-bulk-results-" + job.getId();
+        Thread thread;
+        if (handler.getConfig().isUseVirtualThreads()) {
+            thread = VirtualThreads.newThreadFactory(name + "-").newThread(collector);
+        } else {
+            thread = new Thread(collector, name);
+            thread.setDaemon(true);
+        }
+        thread.start();
+    }
+
+    /**
+     * polls the job's batch list and downloads each batch as soon as it finishes, at most
+     * maxParallelDownloads at a time
+     */
+    private void collect(Executor executor, int maxParallelDownloads) throws Exception {
+        final Semaphore downloads = new Semaphore(maxParallelDownloads);
+        Set<String> scheduled = new HashSet<String>();
+        try {
+            while (!closed && collectFailure == null) {
+                loadBatchInfoList(handler, bulkConnection, job);
+                if (!handler.shouldContinue()) {
+                    throw new StreamException("Gave up waiting for batches of job " + job.getId());
+                }
+                for (final BatchInfo batch : batchList) {
+                    if (isDone(batch) && scheduled.add(batch.getId())) {
+                        downloads.acquire();
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    download(batch.getId());
+                                } catch (Throwable e) {
+                                    collectFailure = e;
+                                } finally {
+                                    downloads.release();
+                                }
+                            }
+                        });
+                    }
+                }
+                if (scheduled.size() == batchList.length) {
+                    break;
+                }
+                handler.info("Batches finished: " + scheduled.size() + " of " + batchList.length);
+                Thread.sleep(handler.getResultPollInterval());
+            }
+        } finally {
+            downloads.acquire(maxParallelDownloads);
+        }
+    }
+
+    private void download(String batchId) throws Exception {
+        CSVReader reader = openResults(batchId);
+        long[] offsets = loadSourceOffsets(batchId);
+        int row = 0;
+        ArrayList<String> record;
+        while (!closed && collectFailure == null && (record = reader.nextRecord()) != null) {
+            put(toResult(record, batchId, row++, offsets));
+        }
+    }
+
+    // blocks while the queue is full, until the reader makes room, closes the stream or goes away
+    private void put(UpdateResult result) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(handler.getResultReadTimeout());
+        while (!closed && !results.offer(result, 100, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() - deadline > 0) {
+                abandon();
+                return;
+            }
+        }
+    }
+
+    /**
+     * stops collecting for a reader that has not read for the read timeout. The queue is left
+     * holding END only, so a reader that comes back gets the failure instead of blocking.
+     */
+    private synchronized void abandon() {
+        if (closed) {
+            return;
+        }
+        collectFailure = new StreamException("Results of job " + job.getId() + " were not read for " +
+                handler.getResultReadTimeout() + " ms");
+        closed = true;
+        results.clear();
+        while (!results.offer(END)) {
+            results.poll();
+        }
     }
 }
@@ -29,7 +29,15 @@ package com.sforce.bulk;
 import com.sforce.async.*;
 
 import java.io.ByteArrayInputStream;
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * This class represents
@@ -43,16 +51,35 @@ public class UpdateStream {
     private JobInfo job;
     private BulkConnection bulkConnection;
     private String[] fieldNames;
-    private StringWriter writer;
+    private BatchBuffer buffer;
     private CsvWriter csvWriter;
+    // buffers of uploaded batches, reused so their capacity is only grown once
+    private final Queue<BatchBuffer> freeBuffers = new ConcurrentLinkedQueue<BatchBuffer>();
     private int recordCount;
+    // set when StreamHandler.getMaxParallelUploads() allows batches to upload while the next one is written
+    private Semaphore uploadSlots;
+    private int maxParallelUploads;
+    private volatile Throwable uploadFailure;
+    private RowIndex rowIndex;
+    // number of rows written, the source offset of rows written without one
+    private long rowCount;
 
     public static UpdateStream create(StreamHandler handler) throws StreamException {
-        return new UpdateStream(handler);
+        return new UpdateStream(handler, true);
     }
 
-    private UpdateStream(StreamHandler handler) throws StreamException {
+    /**
+     * creates a stream that uses the session of an earlier stream of the same handler
+     */
+    static UpdateStream createInSession(StreamHandler handler) throws StreamException {
+        return new UpdateStream(handler, false);
+    }
+
+    private UpdateStream(StreamHandler handler, boolean login) throws StreamException {
         this.handler = handler;
+        if (!login) {
+            return;
+        }
 
         if (handler.getConfig().getAuthEndpoint() == null) {
             throw new StreamException("AuthEndpoint not set in config");
@@ -80,6 +107,14 @@ public class UpdateStream {
 
     public void start(String object, OperationEnum operation, ConcurrencyMode concurrencyMode, String[] fieldNames)
             throws StreamException {
+        start(object, operation, concurrencyMode, null, fieldNames);
+    }
+
+    /**
+     * @param externalIdFieldName field that matches rows to records for an upsert
+     */
+    public void start(String object, OperationEnum operation, ConcurrencyMode concurrencyMode,
+                      String externalIdFieldName, String[] fieldNames) throws StreamException {
 
         if (fieldNames == null || fieldNames.length == 0) {
             throw new StreamException("field names can not be null/empty");
@@ -87,6 +122,11 @@ public class UpdateStream {
 
         this.fieldNames = fieldNames;
 
+        maxParallelUploads = handler.getMaxParallelUploads();
+        if (maxParallelUploads > 0) {
+            uploadSlots = new Semaphore(maxParallelUploads);
+        }
+
         while(handler.shouldContinue()) {
             try {
                 bulkConnection = new BulkConnection(handler.getConfig());
@@ -96,6 +136,9 @@ public class UpdateStream {
 
                 job.setOperation(operation);
                 job.setConcurrencyMode(concurrencyMode);
+                if (externalIdFieldName != null) {
+                    job.setExternalIdFieldName(externalIdFieldName);
+                }
                 job.setContentType(ContentType.CSV);
 
                 handler.info("Creating bulk api job");
@@ -109,10 +152,31 @@ public class UpdateStream {
         }
     }
 
+    /**
+     * Records the source offset of every row written from now on, so that each
+     * {@link UpdateResult} can tell where its row came from. Set it before the first write.
+     */
+    public void setRowIndex(RowIndex rowIndex) {
+        this.rowIndex = rowIndex;
+    }
+
+    public RowIndex getRowIndex() {
+        return rowIndex;
+    }
+
+    JobInfo getJob() {
+        return job;
+    }
+
+    String[] getFieldNames() {
+        return fieldNames;
+    }
+
     public UpdateResultStream close() throws StreamException {
-        if (writer != null) {
+        if (buffer != null) {
             createBatch();
         }
+        awaitUploads();
 
         while(handler.shouldContinue()) {
             try {
@@ -125,45 +189,154 @@ public class UpdateStream {
             }
         }
 
-        return new UpdateResultStream(handler, bulkConnection, job);
+        return new UpdateResultStream(handler, bulkConnection, job, rowIndex);
     }
 
     public void write(String ... values) throws StreamException {
+        write(rowCount, values);
+    }
+
+    /**
+     * writes a row, giving the {@link RowIndex} the offset of the row in its source
+     */
+    public void write(long sourceOffset, String ... values) throws StreamException {
         if (job == null) {
             throw new StreamException("start() not called");
         }
+        checkUploads();
 
-        if (writer == null) {
-            writer = new StringWriter();
-            csvWriter = new CsvWriter(fieldNames, writer);
+        if (buffer == null) {
+            buffer = freeBuffers.poll();
+            if (buffer == null) {
+                buffer = new BatchBuffer();
+            }
+            csvWriter = new CsvWriter(fieldNames, new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
         }
 
         csvWriter.writeRecord(values);
         recordCount++;
+        rowCount++;
+        if (rowIndex != null) {
+            try {
+                rowIndex.add(sourceOffset);
+            } catch (IOException e) {
+                throw new StreamException("Failed to write row index", e);
+            }
+        }
 
         if (recordCount > handler.getMaxRecordsInBatch()) {
-            csvWriter.endDocument();
             createBatch();
         }
     }
 
     private void createBatch() throws StreamException {
+        csvWriter.endDocument();
+        final BatchBuffer batch = buffer;
+        buffer = null;
+        csvWriter = null;
+        recordCount = 0;
+        final int batchNumber = rowIndex == null ? -1 : rowIndex.endBatch();
+
+        if (uploadSlots == null) {
+            try {
+                if (!uploadBatch(batch, batchNumber)) {
+                    throw new StreamException("Gave up creating batch");
+                }
+            } finally {
+                recycle(batch);
+            }
+            return;
+        }
+
+        // blocks the producer while every upload slot is busy
+        try {
+            uploadSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamException("Interrupted while waiting for a batch upload", e);
+        }
+        try {
+            handler.getConfig().getAsyncExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!uploadBatch(batch, batchNumber)) {
+                            uploadFailure = new StreamException("Gave up creating batch");
+                        }
+                    } catch (Throwable e) {
+                        uploadFailure = e;
+                    } finally {
+                        recycle(batch);
+                        uploadSlots.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            uploadSlots.release();
+            throw new StreamException("Failed to schedule batch upload", e);
+        }
+    }
+
+    private boolean uploadBatch(BatchBuffer batch, int batchNumber) {
+        // counted per batch, so failures of batches uploading in parallel do not add up
+        int errors = 0;
         while(handler.shouldContinue()) {
             try {
                 handler.info("Creating Batch");
 
-                BatchInfo batch = bulkConnection.createBatchFromStream(job,
-                        new ByteArrayInputStream(writer.getBuffer().toString().getBytes()));
+                BatchInfo batchInfo = bulkConnection.createBatchFromStream(job, batch.newInputStream());
 
-                handler.info("Batch created with ID: " + batch.getId());
-                writer = null;
-                csvWriter = null;
-                recordCount = 0;
-
-                break;
+                handler.info("Batch created with ID: " + batchInfo.getId());
+                if (rowIndex != null) {
+                    rowIndex.setBatchId(batchNumber, batchInfo.getId());
+                }
+                return true;
             } catch (Throwable e) {
-                handler.error("Failed to close job ", e);
+                if (!handler.error("Failed to create batch ", e, ++errors)) {
+                    break;
+                }
             }
         }
+        return false;
+    }
+
+    private void recycle(BatchBuffer batch) {
+        batch.reset();
+        freeBuffers.offer(batch);
+    }
+
+    private void awaitUploads() throws StreamException {
+        if (uploadSlots == null) {
+            return;
+        }
+        try {
+            uploadSlots.acquire(maxParallelUploads);
+            uploadSlots.release(maxParallelUploads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamException("Interrupted while waiting for batch uploads", e);
+        }
+        checkUploads();
+    }
+
+    private void checkUploads() throws StreamException {
+        Throwable failure = uploadFailure;
+        if (failure != null) {
+            throw failure instanceof StreamException ? (StreamException) failure
+                    : new StreamException("Failed to create batch", failure);
+        }
+    }
+
+    /**
+     * UTF-8 bytes of one batch, uploaded straight from the backing array
+     */
+    private static final class BatchBuffer extends ByteArrayOutputStream {
+        BatchBuffer() {
+            super(64 * 1024);
+        }
+
+        InputStream newInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
     }
 }
@@ -27,12 +27,14 @@
 package com.sforce.ws;
 
 import com.sforce.ws.tools.VersionInfo;
+import com.sforce.ws.transport.ConnectionPool;
 import com.sforce.ws.transport.JdkHttpTransport;
 import com.sforce.ws.transport.MessageCaptureHandler;
 import com.sforce.ws.transport.Transport;
 import com.sforce.ws.transport.TransportFactory;
 import com.sforce.ws.util.Base64;
 import com.sforce.ws.util.Verbose;
+import com.sforce.ws.util.VirtualThreads;
 
 import javax.net.ssl.SSLContext;
 import java.io.*;
@@ -42,6 +44,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class contains a set of configuration properties
@@ -55,47 +62,144 @@ public class ConnectorConfig {
     private MessageCaptureHandler captureHtmlHandler;
 
     public class TeeInputStream {
-        private int level = 0;
-
         private TeeInputStream(byte[] bytes) {
             getTraceStream().println("------------ Response start ----------");
 
-            if (isPrettyPrintXml()) {
-                prettyPrint(bytes);
-            } else {
-                getTraceStream().print(new String(bytes));
-            }
+            TracePrinter printer = new TracePrinter();
+            printer.write(bytes, 0, bytes.length);
+            printer.finish();
 
             getTraceStream().println();
             getTraceStream().println("------------ Response end   ----------");
         }
+    }
 
-        private void prettyPrint(byte[] bytes) {
-            boolean newLine = true;
-            for (int i = 0; i < bytes.length; i++) {
-                if (bytes[i] == '<') {
-                    if (i + 1 < bytes.length) {
-                        if (bytes[i + 1] == '/') {
-                            level--;
-                        } else {
-                            level++;
-                        }
-                    }
-                    for (int j = 0; newLine && j < level; j++) {
-                        getTraceStream().print("  ");
-                    }
-                }
+    /**
+     * traces a response as it is read, so that tracing does not need the whole response in memory
+     */
+    private class TraceInputStream extends FilterInputStream {
+        private final TracePrinter printer = new TracePrinter();
+        private boolean ended;
+
+        private TraceInputStream(InputStream in) {
+            super(in);
+            getTraceStream().println("------------ Response start ----------");
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                end();
+            } else {
+                printer.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count == -1) {
+                end();
+            } else {
+                printer.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buf = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+            int count = read(buf, 0, buf.length);
+            return count == -1 ? 0 : count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                end();
+            }
+        }
+
+        private void end() {
+            if (!ended) {
+                ended = true;
+                printer.finish();
+                getTraceStream().println();
+                getTraceStream().println("------------ Response end   ----------");
+            }
+        }
+    }
+
+    /**
+     * writes response bytes to the trace stream, indenting xml elements when pretty printing is on.
+     * A byte is held back until the next one is seen, so chunk boundaries do not change the output.
+     */
+    private class TracePrinter {
+        private final boolean pretty = isPrettyPrintXml();
+        private int level = 0;
+        private boolean newLine = true;
+        private int pending = -1;
 
-                getTraceStream().write(bytes[i]);
+        void write(byte[] bytes, int off, int len) {
+            if (!pretty) {
+                getTraceStream().write(bytes, off, len);
+                return;
+            }
+            for (int i = off; i < off + len; i++) {
+                write(bytes[i]);
+            }
+        }
+
+        void write(int b) {
+            if (!pretty) {
+                getTraceStream().write(b);
+                return;
+            }
+            if (pending != -1) {
+                print(pending, b & 0xFF);
+            }
+            pending = b & 0xFF;
+        }
 
-                if (bytes[i] == '>') {
-                    if (i + 1 < bytes.length && bytes[i + 1] == '<') {
-                        getTraceStream().println();
-                        newLine = true;
+        void finish() {
+            if (pending != -1) {
+                print(pending, -1);
+                pending = -1;
+            }
+        }
+
+        private void print(int b, int next) {
+            if (b == '<') {
+                if (next != -1) {
+                    if (next == '/') {
+                        level--;
                     } else {
-                        newLine = false;
+                        level++;
                     }
                 }
+                for (int j = 0; newLine && j < level; j++) {
+                    getTraceStream().print("  ");
+                }
+            }
+
+            getTraceStream().write(b);
+
+            if (b == '>') {
+                if (next == '<') {
+                    getTraceStream().println();
+                    newLine = true;
+                } else {
+                    newLine = false;
+                }
             }
         }
     }
@@ -164,6 +268,15 @@ public class ConnectorConfig {
     private String ntlmDomain;
 	private TransportFactory transportFactory;
 	  private SSLContext sslContext;
+    private ConnectionPool connectionPool;
+    private Executor asyncExecutor;
+    private int maxAsyncRequests = DEFAULT_MAX_ASYNC_REQUESTS;
+    private int maxQueuedAsyncRequests = DEFAULT_MAX_QUEUED_ASYNC_REQUESTS;
+    private boolean useVirtualThreads;
+    private int queryPrefetchDepth = DEFAULT_QUERY_PREFETCH_DEPTH;
+    public static final int DEFAULT_QUERY_PREFETCH_DEPTH = 1;
+    public static final int DEFAULT_MAX_ASYNC_REQUESTS = 64;
+    public static final int DEFAULT_MAX_QUEUED_ASYNC_REQUESTS = 10000;
     public static final ConnectorConfig DEFAULT = new ConnectorConfig();
 
     static {
@@ -180,6 +293,107 @@ public class ConnectorConfig {
         return sslContext;
     }
 
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * sets the connection pool shared by pooling transports created from this config.
+     * The same pool may be set on several configs.
+     * @param connectionPool pool to use, or null to let the transport create one
+     */
+    public void setConnectionPool(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * @return executor for asynchronous calls that can not be made without blocking
+     */
+    public Executor getAsyncExecutor() {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        return useVirtualThreads ? VirtualAsyncExecutor.INSTANCE : DefaultAsyncExecutor.INSTANCE;
+    }
+
+    /**
+     * sets the executor used to run asynchronous calls over transports that block,
+     * to complete them, and to start calls that were queued by the connection's limit
+     * @param asyncExecutor executor, or null to use a shared pool of daemon threads
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * runs asynchronous calls, bulk polling and batch uploads on virtual threads when no
+     * executor has been set. Requires Java 21; on older runtimes platform threads are used.
+     * With virtual threads it is usually worth raising {@link #setMaxAsyncRequests(int)}.
+     * @param useVirtualThreads true to use virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        if (useVirtualThreads && !VirtualThreads.isSupported()) {
+            Verbose.log("Virtual threads are not supported by this JVM, using platform threads");
+            useVirtualThreads = false;
+        }
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public int getMaxAsyncRequests() {
+        return maxAsyncRequests;
+    }
+
+    /**
+     * sets the number of asynchronous calls a connection may have in flight. Further
+     * calls are queued, up to {@link #getMaxQueuedAsyncRequests()}, and started as earlier ones complete.
+     * Only HttpClientTransport waits for responses without a thread; with the default JdkHttpTransport
+     * every call in flight holds a thread of {@link #getAsyncExecutor()}.
+     * @param maxAsyncRequests limit per connection
+     */
+    public void setMaxAsyncRequests(int maxAsyncRequests) {
+        if (maxAsyncRequests <= 0) {
+            throw new IllegalArgumentException("maxAsyncRequests must be positive: " + maxAsyncRequests);
+        }
+        this.maxAsyncRequests = maxAsyncRequests;
+    }
+
+    public int getMaxQueuedAsyncRequests() {
+        return maxQueuedAsyncRequests;
+    }
+
+    /**
+     * sets the number of asynchronous calls a connection queues once {@link #getMaxAsyncRequests()}
+     * are in flight. Calls beyond that fail at once with a RejectedExecutionException instead of
+     * being queued.
+     * @param maxQueuedAsyncRequests limit per connection, 0 to never queue
+     */
+    public void setMaxQueuedAsyncRequests(int maxQueuedAsyncRequests) {
+        if (maxQueuedAsyncRequests < 0) {
+            throw new IllegalArgumentException("maxQueuedAsyncRequests must not be negative: " + maxQueuedAsyncRequests);
+        }
+        this.maxQueuedAsyncRequests = maxQueuedAsyncRequests;
+    }
+
+    public int getQueryPrefetchDepth() {
+        return queryPrefetchDepth;
+    }
+
+    /**
+     * sets how many queryMore pages the generated query iterators request ahead of the page
+     * being read. Each prefetched page is held in memory until it is read.
+     * @param queryPrefetchDepth pages to prefetch, 0 to fetch each page when it is needed
+     */
+    public void setQueryPrefetchDepth(int queryPrefetchDepth) {
+        if (queryPrefetchDepth < 0) {
+            throw new IllegalArgumentException("queryPrefetchDepth must not be negative: " + queryPrefetchDepth);
+        }
+        this.queryPrefetchDepth = queryPrefetchDepth;
+    }
+
     public Class getTransport() {
         return transport;
     }
@@ -496,6 +710,15 @@ public class ConnectorConfig {
     public void teeInputStream(byte[] bytes) {
         new TeeInputStream(bytes);
     }
+
+    /**
+     * traces the response read from the given stream as it is read
+     * @param in response stream
+     * @return stream to read the response from
+     */
+    public InputStream teeInputStream(InputStream in) {
+        return new TraceInputStream(in);
+    }
     
     public OutputStream teeOutputStream(OutputStream os) {
         return new TeeOutputStream(os);
@@ -564,4 +787,21 @@ public class ConnectorConfig {
     private static boolean javaVersionHasABug() {
         return JavaVersion.javaVersionHasABug(System.getProperty(JavaVersion.JAVA_VERSION_PROPERTY));
     }
+
+    private static class DefaultAsyncExecutor {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "wsc-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private static class VirtualAsyncExecutor {
+        private static final ExecutorService INSTANCE = VirtualThreads.newExecutor("wsc-virtual-");
+    }
 }
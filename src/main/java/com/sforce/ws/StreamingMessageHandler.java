@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A MessageHandler that receives responses incrementally, as the bytes are read by the
+ * parser, instead of as a single array. Responses are not buffered for these handlers,
+ * so capturing a large response costs no more memory than the handler itself keeps.
+ * handleResponse(URL, byte[]) is not called for a streaming handler.
+ */
+public interface StreamingMessageHandler extends MessageHandler {
+
+    /**
+     * called before the first chunk of a response
+     * @param endpoint endpoint url
+     * @param headers response headers, may be null
+     */
+    void handleResponseStart(URL endpoint, Map<String, List<String>> headers);
+
+    /**
+     * called for each block of response bytes read. The array is reused once this
+     * method returns.
+     * @param endpoint endpoint url
+     * @param chunk buffer holding the bytes
+     * @param offset start of the bytes in chunk
+     * @param length number of bytes
+     */
+    void handleResponseChunk(URL endpoint, byte[] chunk, int offset, int length);
+
+    /**
+     * called once the response has been read to the end, or closed
+     * @param endpoint endpoint url
+     */
+    void handleResponseEnd(URL endpoint);
+}
@@ -45,6 +45,8 @@ package com.sforce.ws.bind;
 
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -64,6 +66,7 @@ public class CalendarCodec {
   public static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
   private static final SimpleDateFormat zulu =
       new SimpleDateFormat(DATE_FORMAT);
+  private static final Lock zuluLock = new ReentrantLock();
   //  0123456789 0 123456789
 
   public static final String GMT = "GMT";
@@ -83,9 +86,12 @@ public class CalendarCodec {
         ((Calendar) value).getTime();
 
     // Serialize including convert to GMT
-    synchronized (zulu) {
+    zuluLock.lock();
+    try {
       // Sun JDK bug http://developer.java.sun.com/developer/bugParade/bugs/4229798.html
       return zulu.format(date);
+    } finally {
+      zuluLock.unlock();
     }
   }
 
@@ -123,8 +129,11 @@ public class CalendarCodec {
     }
     // convert what we have validated so far
     try {
-      synchronized (zulu) {
+      zuluLock.lock();
+      try {
         date = zulu.parse(source.substring(0, 19) + ".000Z");
+      } finally {
+        zuluLock.unlock();
       }
     } catch (Exception e) {
       throw new NumberFormatException(e.toString());
@@ -44,6 +44,8 @@ package com.sforce.ws.bind;
 
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -61,6 +63,7 @@ public class DateCodec {
 
     private static final SimpleDateFormat zulu =
             new SimpleDateFormat("yyyy-MM-dd");
+    private static final Lock zuluLock = new ReentrantLock();
     //  0123456789 0 123456789
 
     static {
@@ -71,9 +74,12 @@ public class DateCodec {
         Date date = value instanceof Date ? (Date) value : ((Calendar) value).getTime();
 
         // Serialize including convert to GMT
-        synchronized (zulu) {
+        zuluLock.lock();
+        try {
           // Sun JDK bug http://developer.java.sun.com/developer/bugParade/bugs/4229798.html
           return zulu.format(date);
+        } finally {
+          zuluLock.unlock();
         }
     }
 
@@ -112,8 +118,11 @@ public class DateCodec {
 
         // convert what we have validated so far
         try {
-            synchronized (zulu) {
+            zuluLock.lock();
+            try {
                 result = zulu.parse(source.substring(0, 10));
+            } finally {
+                zuluLock.unlock();
             }
         } catch (Exception e) {
             throw new NumberFormatException(e.toString());
@@ -34,13 +34,13 @@ package com.sforce.ws.bind;
  * @since 1.0  Dec 1, 2005
  */
 public final class TypeInfo {
-    private String namespace;
-    private String name;
-    private String typeNS;
-    private String type;
-    private int minOcc = 1;
-    private int maxOcc = 1;
-    private boolean elementFormQualified = false;
+    private final String namespace;
+    private final String name;
+    private final String typeNS;
+    private final String type;
+    private final int minOcc;
+    private final int maxOcc;
+    private final boolean elementFormQualified;
 
     public TypeInfo(String namespace, String name, String typeNS, String type, int minOcc, int maxOcc, boolean elementForm) {
         this.namespace = namespace;
@@ -29,6 +29,7 @@ package com.sforce.ws.bind;
 import com.sforce.ws.ConnectionException;
 import com.sforce.ws.ConnectorConfig;
 import com.sforce.ws.codegen.Generator;
+import com.sforce.ws.parser.SymbolTable;
 import com.sforce.ws.parser.XmlInputStream;
 import com.sforce.ws.parser.XmlOutputStream;
 import com.sforce.ws.types.Time;
@@ -51,6 +52,9 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalQueries;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * This class is used at runtime to bind xml document to java object and java objects
@@ -66,6 +70,31 @@ public class TypeMapper {
     private static final HashSet<String> keywords = getKeyWords();
     private static HashMap<String, Class<?>> primitiveClassCache = getPrimitiveClassCache();
 
+    /**
+     * valuesToEnums of generated enum stubs, resolved once per enum class. ClassValue keeps
+     * the lookup lock free and does not pin the stub's class loader.
+     */
+    private static final ClassValue<Map<?, ?>> enumValues = new ClassValue<Map<?, ?>>() {
+        @Override
+        protected Map<?, ?> computeValue(Class<?> type) {
+            try {
+                Field valuesToEnumsField = type.getDeclaredField("valuesToEnums");
+                // The use of wildcards is due to not being able to specify Map<String, String>
+                // without also having to suppress a warning for an unchecked typecast.
+                // Suppressing a warning seemed to be worse than using wildcards.
+                Map<?, ?> valuesToEnums = (Map<?, ?>) valuesToEnumsField.get(null);
+                return valuesToEnums == null ? Collections.emptyMap() : valuesToEnums;
+            } catch (NoSuchFieldException e) {
+                // It's possible that this type mapper is being used with stubs that were not
+                // generated from templates that add the valuesToEnums field. So, default back
+                // to the old behavior in which enums with hyphens are not supported.
+                return Collections.emptyMap();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     // True if interfaces are generated for the WSDL
     private boolean generateInterfaces;
     private boolean generateExtendedErrorCodes;
@@ -167,8 +196,9 @@ public class TypeMapper {
 
     private CalendarCodec calendarCodec = new CalendarCodec();
     private DateCodec dateCodec = new DateCodec();
-    private HashMap<QName, Class<?>> typeCache = new HashMap<QName, Class<?>>();
+    private final ConcurrentMap<QName, Class<?>> typeCache = new ConcurrentHashMap<QName, Class<?>>();
     private ConnectorConfig config;
+    private final ThreadLocal<ArrayStream> arrayStream = new ThreadLocal<ArrayStream>();
 
     public boolean writeFieldXsiType = false;
 
@@ -476,6 +506,10 @@ public class TypeMapper {
     }
 
     private boolean sameTag(String namespace1, String name1, String namespace2, String name2) {
+        // parsed names are interned, so matching tags are usually the same instances
+        if (name1 == name2 && namespace1 == namespace2) {
+            return true;
+        }
         if (namespace1 == null) {
             return ((namespace2 == null || "".equals(namespace2)) && name1.equals(name2));
         } else {
@@ -513,11 +547,11 @@ public class TypeMapper {
     }
 
     public int readInt(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
-        return Integer.parseInt(readString(in, info, type));
+        return (int) parseLong(readTextView(in), Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     public long readLong(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
-        return Long.parseLong(readString(in, info, type));
+        return parseLong(readTextView(in), Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     public float readFloat(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
@@ -525,17 +559,127 @@ public class TypeMapper {
     }
 
     public boolean readBoolean(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
-        return Boolean.parseBoolean(readString(in, info, type));
+        // same as Boolean.parseBoolean()
+        CharSequence text = readTextView(in);
+        if (text == null || text.length() != 4) {
+            return false;
+        }
+        return Character.toLowerCase(text.charAt(0)) == 't' && Character.toLowerCase(text.charAt(1)) == 'r'
+                && Character.toLowerCase(text.charAt(2)) == 'u' && Character.toLowerCase(text.charAt(3)) == 'e';
     }
 
     public double readDouble(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
-        String strValue = readString(in, info, type);
-        return parseDouble(strValue);
+        XmlInputStream.TextView text = readTextView(in);
+        if (text == null) {
+            return parseDouble((String) null);
+        }
+        double value = parseSimpleDouble(text);
+        return Double.isNaN(value) ? parseDouble(text.toString()) : value;
     }
 
     public BigDecimal readDecimal(XmlInputStream in, TypeInfo info, Class<?> type) throws IOException, ConnectionException {
-        String strValue = readString(in, info, type);
-        return parseBigDecimal(strValue);
+        XmlInputStream.TextView text = readTextView(in);
+        if (text == null) {
+            return parseBigDecimal(null);
+        }
+        return new BigDecimal(text.array(), 0, text.length());
+    }
+
+    /**
+     * like readString(), but leaves the text in the stream's reusable view rather than a new String
+     */
+    private XmlInputStream.TextView readTextView(XmlInputStream in) throws IOException, ConnectionException {
+        boolean isNull = isXsiNilTrue(in);
+        consumeStartTag(in);
+        XmlInputStream.TextView text = in.nextTextView();
+        return isNull ? null : text;
+    }
+
+    /**
+     * Integer.parseInt()/Long.parseLong() of a CharSequence, without making a String of it
+     */
+    private static long parseLong(CharSequence s, long min, long max) {
+        if (s == null) {
+            throw new NumberFormatException("null");
+        }
+        final int len = s.length();
+        int i = 0;
+        boolean negative = false;
+        long limit = -max;
+        if (len > 0) {
+            char first = s.charAt(0);
+            if (first == '-') {
+                negative = true;
+                limit = min;
+                i++;
+            } else if (first == '+') {
+                i++;
+            }
+        }
+        if (i == len) {
+            throw new NumberFormatException("For input string: \"" + s + "\"");
+        }
+        // accumulates negatively, as the negative range is the larger one
+        final long multmin = limit / 10;
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0 || result < multmin) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + s + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Parses plain decimals such as -123.45 with at most 15 digits. Such a mantissa and a power
+     * of ten up to 1e22 are exact doubles, so one division or multiplication rounds the same way
+     * Double.parseDouble() does.
+     *
+     * @return the value, or NaN if the text needs Double.parseDouble()
+     */
+    private static double parseSimpleDouble(CharSequence s) {
+        final int len = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        for (; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                if (++digits > 15) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (ch - '0');
+                if (seenDot) {
+                    scale++;
+                }
+            } else if (ch == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
     }
 
     public double parseDouble(String strValue) {
@@ -602,11 +746,36 @@ public class TypeMapper {
         return readArray(in, result__typeInfo, type, true);
     }
 
+    /**
+     * Streams arrays read on the current thread. Elements of the outermost array whose component
+     * type is assignable to componentType are passed to the consumer as soon as each one is bound,
+     * and the array itself is read as empty. Arrays nested inside a streamed element are bound as
+     * usual. Must be followed by {@link #stopStreamingArrays()}.
+     *
+     * @param componentType type of the elements to stream, e.g. SObject for QueryResult.records
+     * @param consumer receives each element
+     */
+    public <T> void streamArrays(Class<T> componentType, Consumer<? super T> consumer) {
+        arrayStream.set(new ArrayStream(componentType, consumer));
+    }
+
+    /**
+     * ends streaming started by {@link #streamArrays(Class, Consumer)} on the current thread
+     */
+    public void stopStreamingArrays() {
+        arrayStream.remove();
+    }
+
     private Object readArray(XmlInputStream in, TypeInfo result__typeInfo, Class<?> type, boolean partialArray)
             throws IOException, ConnectionException {
 
-        ArrayList<Object> results = new ArrayList<>();
         Class<?> component = type.getComponentType();
+        ArrayStream stream = arrayStream.get();
+        if (stream != null && !stream.active && stream.componentType.isAssignableFrom(component)) {
+            return streamArray(in, result__typeInfo, component, stream, partialArray);
+        }
+
+        ArrayList<Object> results = new ArrayList<>();
         boolean failed = true;
         Exception exception = null;
 
@@ -628,9 +797,14 @@ public class TypeMapper {
             exception = e;
         }
 
-        Object array = Array.newInstance(component, results.size());
-        for (int i = 0; i < results.size(); i++) {
-            Array.set(array, i, results.get(i));
+        Object array;
+        if (component.isPrimitive()) {
+            array = Array.newInstance(component, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                Array.set(array, i, results.get(i));
+            }
+        } else {
+            array = results.toArray((Object[]) Array.newInstance(component, results.size()));
         }
 
         if (failed) {
@@ -640,6 +814,35 @@ public class TypeMapper {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private Object streamArray(XmlInputStream in, TypeInfo result__typeInfo, Class<?> component,
+                               ArrayStream stream, boolean partialArray) throws IOException, ConnectionException {
+
+        Object empty = Array.newInstance(component, 0);
+        Consumer<Object> consumer = (Consumer<Object>) stream.consumer;
+        stream.active = true;
+
+        try {
+            while (true) {
+                in.peekTag();
+                if (isElement(in, result__typeInfo)) {
+                    consumer.accept(readSingle(in, result__typeInfo, component));
+                } else {
+                    break;
+                }
+            }
+        } catch (IOException | ConnectionException e) {
+            if (!partialArray) {
+                throw e;
+            }
+            throw new PartialArrayException(e.getMessage(), e, empty);
+        } finally {
+            stream.active = false;
+        }
+
+        return empty;
+    }
+
     boolean isXsiNilTrue(XmlInputStream in) {
         String nil = in.getAttributeValue(Constants.SCHEMA_INSTANCE_NS, "nil");
         return "true".equals(nil);
@@ -732,10 +935,14 @@ public class TypeMapper {
         QName xsiTypeQName = null;
         String xsiType = in.getAttributeValue(Constants.SCHEMA_INSTANCE_NS, "type");
         if (xsiType != null && !"".equals(xsiType)) {
-            String prefix = getPrefix(xsiType);
-            String name = getType(xsiType);
+            // looks the parts up in place, so a type seen before needs no new strings or QName
+            SymbolTable symbols = SymbolTable.getShared();
+            int index = xsiType.indexOf(':');
+            String prefix = index == -1 ? null : symbols.symbol(xsiType, 0, index);
+            String name = index == -1 ? symbols.symbol(xsiType)
+                    : symbols.symbol(xsiType, index + 1, xsiType.length() - index - 1);
             String namespace = in.getNamespace(prefix);
-            xsiTypeQName = new QName(namespace, name);
+            xsiTypeQName = symbols.qname(namespace, name);
         }
         return xsiTypeQName;
     }
@@ -746,26 +953,15 @@ public class TypeMapper {
         // This block of code has been added to enable stubs to deserialize enum values
         // that contain hyphens (e.g. UTF-8). The mdapi schema contains such enums
         // (e.g. the Encoding enumeration).
-    	try {
-            Field valuesToEnumsField = type.getDeclaredField("valuesToEnums");
-            // The use of wildcards is due to not being able to specify Map<String, String>
-            // without also having to suppress a warning for an unchecked typecast.
-            // Suppressing a warning seemed to be worse than using wildcards.
-            Map<?, ?> valuesToEnums = (Map<?, ?>)valuesToEnumsField.get(null);
-            String enumStrValue = (String)valuesToEnums.get(s);
-            if(enumStrValue != null) {
-                s = enumStrValue;
-            }
+        Map<?, ?> valuesToEnums;
+        try {
+            valuesToEnums = enumValues.get(type);
+        } catch (IllegalStateException e) {
+            throw new ConnectionException("Failed to read enum", e.getCause());
         }
-    	catch(NoSuchFieldException e) {
-    		// Do nothing.
-    		// It's possible that this type mapper is being used with stubs that were not
-    		// generated from templates that add the valuesToEnums field. So, catching
-    		// this exception and then doing nothing is a way to default back to the old
-    		// behavior in which enums with hyphens are not supported.
-    	}
-        catch(Exception e) {
-        	throw new ConnectionException("Failed to read enum", e);
+        String enumStrValue = (String) valuesToEnums.get(s);
+        if (enumStrValue != null) {
+            s = enumStrValue;
         }
 
         int index = s.indexOf(":");
@@ -786,24 +982,27 @@ public class TypeMapper {
                        NameMapper.getClassName(qName.getLocalPart());
             }
             c = load(type);
-            typeCache.put(qName, c);
+            Class<?> existing = typeCache.putIfAbsent(qName, c);
+            if (existing != null) {
+                c = existing;
+            }
         }
 
         return c;
     }
 
     private Class<?> load(String type) throws ConnectionException {
+        Class<?> clazz = primitiveClassCache.get(type);
+        if (clazz != null) {
+            return clazz;
+        }
+
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
 
         if (cl == null) {
             cl = getClass().getClassLoader();
         }
 
-        Class<?> clazz = primitiveClassCache.get(type);
-        if (clazz != null) {
-            return clazz;
-        }
-
         try {
             return cl.loadClass(type);
         } catch (ClassNotFoundException e) {
@@ -854,6 +1053,17 @@ public class TypeMapper {
     	return generateExtendedErrorCodes;
     }
 
+    private static class ArrayStream {
+        private final Class<?> componentType;
+        private final Consumer<?> consumer;
+        private boolean active;
+
+        private ArrayStream(Class<?> componentType, Consumer<?> consumer) {
+            this.componentType = componentType;
+            this.consumer = consumer;
+        }
+    }
+
     public static class PartialArrayException extends ConnectionException {
         private Object arrayResult;
 
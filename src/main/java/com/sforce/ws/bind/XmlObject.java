@@ -28,11 +28,13 @@ package com.sforce.ws.bind;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 import javax.xml.namespace.QName;
 
 import com.sforce.ws.ConnectionException;
+import com.sforce.ws.parser.SymbolTable;
 import com.sforce.ws.parser.XmlInputStream;
 import com.sforce.ws.parser.XmlOutputStream;
 import com.sforce.ws.wsdl.Constants;
@@ -51,7 +53,13 @@ public class XmlObject implements XMLizable {
     private QName xmlType;
     private Object value;
     private String defaultNamespace;
-    private ArrayList<XmlObject> children = new ArrayList<XmlObject>();
+    private ChildList children = new ChildList();
+
+    // first child for each local name, built once there are enough children to make scanning slow
+    private static final int INDEX_THRESHOLD = 8;
+    private HashMap<String, XmlObject> childIndex;
+    // modification count of children the index was built or last updated for
+    private int indexedModCount;
 
     public XmlObject() {
         this(null, null);
@@ -151,14 +159,14 @@ public class XmlObject implements XMLizable {
         if (value instanceof XmlObject) {
             child = (XmlObject) value;
             child.name = getQNameFor(n);
-            children.add(child);
+            addChild(child);
         } else {
             if (set) {
                 child = findField(n);
             }
             if (child == null) {
                 child = new XmlObject(getQNameFor(n), value);
-                children.add(child);
+                addChild(child);
             } else {
                 child.setValue(value);
             }
@@ -168,16 +176,29 @@ public class XmlObject implements XMLizable {
 
     private QName getQNameFor(String n) {
         String namespace = defaultNamespace == null ? Constants.PARTNER_SOBJECT_NS : defaultNamespace;
-        return name == null ? new QName(namespace, n) :  new QName(name.getNamespaceURI(), n);
+        return SymbolTable.getShared().qname(name == null ? namespace : name.getNamespaceURI(), n);
     }
 
     public boolean removeField(String name) {
         XmlObject item = findField(name);
-        return item != null && children.remove(item);
+        int modCount = children.modCount();
+        if (item == null || !children.remove(item)) {
+            return false;
+        }
+        if (childIndex != null && indexedModCount == modCount) {
+            childIndex.remove(name);
+            for (XmlObject child : children) {
+                if (child.getName().getLocalPart().equals(name)) {
+                    childIndex.put(name, child);
+                    break;
+                }
+            }
+            indexedModCount = children.modCount();
+        }
+        return true;
     }
 
     public Object getField(String name) {
-        //TODO: optimize
         XmlObject item = findField(name);
         Object result = null;
         if (item != null) {
@@ -195,16 +216,51 @@ public class XmlObject implements XMLizable {
     }
 
     private XmlObject findField(String name) {
-        XmlObject item = null;
+        if (children.size() >= INDEX_THRESHOLD) {
+            // children can also change through getChildren().remove(), or through an object sharing them
+            // after cloneFrom(), so any change the index has not seen means rebuild
+            if (childIndex == null || indexedModCount != children.modCount()) {
+                buildIndex();
+            }
+            XmlObject item = childIndex.get(name);
+            // a child renamed after it was added leaves a stale entry behind
+            if (item == null || item.getName().getLocalPart().equals(name)) {
+                return item;
+            }
+            buildIndex();
+            return childIndex.get(name);
+        }
 
         for (XmlObject child : children) {
             if (child.getName().getLocalPart().equals(name)) {
-                item = child;
-                break;
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private void addChild(XmlObject child) {
+        int modCount = children.modCount();
+        children.add(child);
+        if (childIndex != null && indexedModCount == modCount) {
+            String n = child.getName().getLocalPart();
+            if (!childIndex.containsKey(n)) {
+                childIndex.put(n, child);
             }
+            indexedModCount = children.modCount();
         }
+    }
 
-        return item;
+    private void buildIndex() {
+        HashMap<String, XmlObject> index = new HashMap<String, XmlObject>(children.size() * 2);
+        for (XmlObject child : children) {
+            String n = child.getName().getLocalPart();
+            if (!index.containsKey(n)) {
+                index.put(n, child);
+            }
+        }
+        childIndex = index;
+        indexedModCount = children.modCount();
     }
 
     public Iterator<XmlObject> getChildren() {
@@ -296,7 +352,7 @@ public class XmlObject implements XMLizable {
 
     protected void loadStartTag(XmlInputStream in, TypeMapper typeMapper) {
         in.consumePeeked();
-        name = new QName(in.getNamespace(), in.getName());
+        name = SymbolTable.getShared().qname(in.getNamespace(), in.getName());
         xmlType = typeMapper.getXsiType(in);
     }
 
@@ -310,7 +366,7 @@ public class XmlObject implements XMLizable {
             if (type == XmlInputStream.START_TAG) {
                 XmlObject child = extractChildElement(in, typeMapper);
                 child.load(in, typeMapper);
-                children.add(child);
+                addChild(child);
             } else if (type == XmlInputStream.TEXT) {
                 in.consumePeeked();
                 text.append(in.getText());
@@ -370,5 +426,16 @@ public class XmlObject implements XMLizable {
         this.value = source.value;
         this.defaultNamespace = source.defaultNamespace;
         this.children = source.children;
+        this.childIndex = null;
+    }
+
+    /**
+     * exposes the list's modification count, which every structural change bumps, including
+     * removal through an iterator
+     */
+    private static final class ChildList extends ArrayList<XmlObject> {
+        int modCount() {
+            return modCount;
+        }
     }
 }
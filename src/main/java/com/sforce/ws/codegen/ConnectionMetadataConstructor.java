@@ -113,9 +113,14 @@ public class ConnectionMetadataConstructor {
                         operationHeaders, isReturnTypeComplexType(operation), returnTypeInterface(operation)));
             }
 
+            Element queryRecords = queryRecordsElement();
+            Operation queryAll = getOperation("queryAll");
             ConnectionClassMetadata connectionClassMetadata = new ConnectionClassMetadata(getPackagePrefix(),
                     packageName, className, hasLoginCall(), verifyEndpoint(), hasLoginCall() == true ? loginResult() : null, hasSessionHeader(), sobjectNamespace(), dumpQNames(), dumpKnownHeaders(),
-                    headers, operations, addDeprecatedAnnotation);
+                    headers, operations, addDeprecatedAnnotation,
+                    queryRecords == null ? null : returnType(getOperation("query")),
+                    queryRecords == null ? null : getJavaClassName(queryRecords, false),
+                    queryRecords != null && queryAll != null && isQueryCall(queryAll, getOperation("query")));
             return connectionClassMetadata;
         } catch (ConnectionException e) {
             throw new IllegalStateException(e);
@@ -270,6 +275,58 @@ public class ConnectionMetadataConstructor {
         }
     }
 
+    private Operation getOperation(String name) {
+        return definitions.getPortType().getOperation(new QName(definitions.getTargetNamespace(), name));
+    }
+
+    /**
+     * @return the records element of the query result, if the service has query and queryMore calls
+     * returning a paged result with done, queryLocator and records
+     */
+    private Element queryRecordsElement() throws ConnectionException {
+        Operation query = getOperation("query");
+        Operation queryMore = getOperation("queryMore");
+        if (query == null || queryMore == null || !isQueryCall(query, query) || !isQueryCall(queryMore, query)) {
+            return null;
+        }
+
+        ComplexType result = definitions.getTypes().getComplexTypeAllowNull(getResponseElement(query).getType());
+        if (result == null || result.getContent() == null) {
+            return null;
+        }
+
+        Element records = null;
+        boolean hasDone = false;
+        boolean hasLocator = false;
+        for (Iterator<Element> it = result.getContent().getElements(); it.hasNext();) {
+            Element el = it.next();
+            if ("records".equals(el.getName()) && isArray(el)) {
+                records = el;
+            } else if ("done".equals(el.getName()) && "boolean".equals(el.getType().getLocalPart())) {
+                hasDone = true;
+            } else if ("queryLocator".equals(el.getName())) {
+                hasLocator = true;
+            }
+        }
+        return hasDone && hasLocator ? records : null;
+    }
+
+    /**
+     * @return true if the operation takes a single string and returns a single result of the same type as query
+     */
+    private boolean isQueryCall(Operation operation, Operation query) throws ConnectionException {
+        Element result = getResponseElement(operation);
+        if (result == null || isArray(result) || !returnType(operation).equals(returnType(query))) {
+            return false;
+        }
+        Iterator<Element> args = argElements(operation);
+        if (!args.hasNext()) {
+            return false;
+        }
+        Element arg = args.next();
+        return !args.hasNext() && !isArray(arg) && "java.lang.String".equals(getJavaClassName(arg, false));
+    }
+
     public String getResultCall(Operation operation) throws ConnectionException {
         // return "void".equals(returnType(operation)) ? "" : "return __response.getResult();";
         Element el = getResponseElement(operation);
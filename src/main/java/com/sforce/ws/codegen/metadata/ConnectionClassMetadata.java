@@ -43,6 +43,9 @@ public class ConnectionClassMetadata extends ClassMetadata {
     private final String knownHeaders;
     private final List<HeaderMetadata> headersMetadata;
     private final List<OperationMetadata> operations;
+    private final String queryResultType;
+    private final String queryRecordType;
+    private final boolean hasQueryAllCall;
 
     public static ConnectionClassMetadata newInstance(final String packagePrefix, final String packageName,
                                                       final String className, final boolean hasLoginCall, final String loginResult, final String verifyEndpoint,
@@ -55,7 +58,23 @@ public class ConnectionClassMetadata extends ClassMetadata {
     public ConnectionClassMetadata(final String packagePrefix, final String packageName, final String className,
             final boolean hasLoginCall, final String verifyEndpoint, final String loginResult, final boolean hasSessionHeader,
             final String sobjectNamespace, final String qNames, final String knownHeaders, final List<HeaderMetadata> headersMetadata, final List<OperationMetadata> operations, boolean addDeprecatedAnnotation) {
+        this(packagePrefix, packageName, className, hasLoginCall, verifyEndpoint, loginResult, hasSessionHeader,
+                sobjectNamespace, qNames, knownHeaders, headersMetadata, operations, addDeprecatedAnnotation, null, null, false);
+    }
+
+    /**
+     * @param queryResultType result type of query and queryMore, or null if the service has no paged query
+     * @param queryRecordType component type of the records of queryResultType
+     * @param hasQueryAllCall true if queryAll returns queryResultType as well
+     */
+    public ConnectionClassMetadata(final String packagePrefix, final String packageName, final String className,
+            final boolean hasLoginCall, final String verifyEndpoint, final String loginResult, final boolean hasSessionHeader,
+            final String sobjectNamespace, final String qNames, final String knownHeaders, final List<HeaderMetadata> headersMetadata, final List<OperationMetadata> operations, boolean addDeprecatedAnnotation,
+            final String queryResultType, final String queryRecordType, final boolean hasQueryAllCall) {
         super(packageName, className, null, addDeprecatedAnnotation);
+        this.queryResultType = queryResultType;
+        this.queryRecordType = queryRecordType;
+        this.hasQueryAllCall = hasQueryAllCall;
         this.packagePrefix = packagePrefix;
         this.hasLoginCall = hasLoginCall;
         this.verifyEndpoint = verifyEndpoint;
@@ -107,4 +126,16 @@ public class ConnectionClassMetadata extends ClassMetadata {
     public String getKnownHeaders() {
         return knownHeaders;
     }
+
+    public String getQueryResultType() {
+        return queryResultType;
+    }
+
+    public String getQueryRecordType() {
+        return queryRecordType;
+    }
+
+    public boolean getHasQueryAllCall() {
+        return hasQueryAllCall;
+    }
 }
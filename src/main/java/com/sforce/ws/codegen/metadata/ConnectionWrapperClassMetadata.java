@@ -49,4 +49,16 @@ public class ConnectionWrapperClassMetadata extends ClassMetadata {
         return this.connectionMetadata.getOperations();
     }
 
+    public String getQueryResultType() {
+        return this.connectionMetadata.getQueryResultType();
+    }
+
+    public String getQueryRecordType() {
+        return this.connectionMetadata.getQueryRecordType();
+    }
+
+    public boolean getHasQueryAllCall() {
+        return this.connectionMetadata.getHasQueryAllCall();
+    }
+
 }
@@ -142,6 +142,19 @@ public class OperationMetadata {
         return !getReturnType().equals("void");
     }
 
+    // the return type as a type argument, e.g. for CompletableFuture<Integer>
+    public String getAsyncReturnType() {
+        switch (returnType) {
+            case "void": return "java.lang.Void";
+            case "boolean": return "java.lang.Boolean";
+            case "int": return "java.lang.Integer";
+            case "long": return "java.lang.Long";
+            case "float": return "java.lang.Float";
+            case "double": return "java.lang.Double";
+            default: return returnType;
+        }
+    }
+
     public String getReturnTypeInterface() {
         return returnTypeInterface;
     }
@@ -37,6 +37,7 @@ package com.sforce.ws.parser;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
@@ -84,6 +85,9 @@ public class MXParser
    */
   protected boolean allStringsInterned;
 
+  // names and namespace URIs come from here, so equal names are the same String
+  protected SymbolTable symbols = SymbolTable.getShared();
+
   protected void resetStringCache() {
     //System.out.println("resetStringCache() minimum called");
   }
@@ -93,7 +97,14 @@ public class MXParser
   }
 
   protected String newStringIntern(char[] cbuf, int off, int len) {
-    return (new String(cbuf, off, len)).intern();
+    return symbols.symbol(cbuf, off, len);
+  }
+
+  /**
+   * @return the canonical instance of an element, attribute or prefix name
+   */
+  protected String newSymbol(char[] cbuf, int off, int len) {
+    return symbols.symbol(cbuf, off, len);
   }
 
   private static final boolean TRACE_SIZING = false;
@@ -355,6 +366,14 @@ public class MXParser
   protected Reader reader;
   protected String inputEncoding;
 
+  // UTF-8 input is decoded straight from bytes, see readUtf8()
+  protected InputStream utf8Input;
+  protected byte utf8Buf[];
+  protected int utf8Start;
+  protected int utf8End;
+  // second half of a surrogate pair that did not fit in the last read
+  protected char utf8Pending;
+
 
   protected int bufLoadFactor = 95;  // 99%
   //protected int bufHardLimit;  // only matters when expanding
@@ -399,7 +418,14 @@ public class MXParser
   protected Boolean xmlDeclStandalone;
   protected String xmlDeclContent;
 
-  protected void reset() {
+  // larger buffers are dropped on reset() so a parser kept for reuse does not hold on to them
+  protected static final int MAX_RETAINED_BUF_SIZE = 64 * 1024;
+
+  /**
+   * Forgets the input and all parsing state, keeping features and buffers, so the parser can be
+   * given new input. Buffers that grew past MAX_RETAINED_BUF_SIZE are replaced by small ones.
+   */
+  public void reset() {
     //System.out.println("reset() called");
     location = null;
     lineNumber = 1;
@@ -419,6 +445,20 @@ public class MXParser
 
     reader = null;
     inputEncoding = null;
+    text = null;
+    entityRefName = null;
+
+    if (buf.length > MAX_RETAINED_BUF_SIZE) {
+      buf = new char[READ_CHUNK_SIZE];
+      bufSoftLimit = (bufLoadFactor * buf.length) / 100;
+    }
+    if (pc.length > MAX_RETAINED_BUF_SIZE) {
+      pc = new char[READ_CHUNK_SIZE];
+    }
+
+    utf8Input = null;
+    utf8Start = utf8End = 0;
+    utf8Pending = 0;
 
     preventBufferCompaction = false;
     bufAbsoluteStart = 0;
@@ -553,6 +593,15 @@ public void setInput(java.io.InputStream inputStream, String inputEncoding)
     if (inputStream == null) {
       throw new IllegalArgumentException("input stream can not be null");
     }
+    if (inputEncoding != null && isUtf8(inputEncoding)) {
+      reset();
+      utf8Input = inputStream;
+      if (utf8Buf == null) {
+        utf8Buf = new byte[READ_CHUNK_SIZE];
+      }
+      this.inputEncoding = inputEncoding;
+      return;
+    }
     Reader reader;
     if (inputEncoding != null) {
       try {
@@ -573,6 +622,10 @@ public void setInput(java.io.InputStream inputStream, String inputEncoding)
     this.inputEncoding = inputEncoding;
   }
 
+  private static boolean isUtf8(String encoding) {
+    return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding);
+  }
+
   @Override
 public String getInputEncoding() {
     return inputEncoding;
@@ -1773,18 +1826,18 @@ public int nextToken()
     String prefix = null;
     if (processNamespaces) {
       if (colonPos != -1) {
-        prefix = elPrefix[depth] = newString(buf, nameStart - bufAbsoluteStart,
+        prefix = elPrefix[depth] = newSymbol(buf, nameStart - bufAbsoluteStart,
             colonPos - nameStart);
-        elName[depth] = newString(buf, colonPos + 1 - bufAbsoluteStart,
+        elName[depth] = newSymbol(buf, colonPos + 1 - bufAbsoluteStart,
             //(pos -1) - (colonPos + 1));
             pos - 2 - (colonPos - bufAbsoluteStart));
       } else {
         prefix = elPrefix[depth] = null;
-        elName[depth] = newString(buf, nameStart - bufAbsoluteStart, elLen);
+        elName[depth] = newSymbol(buf, nameStart - bufAbsoluteStart, elLen);
       }
     } else {
 
-      elName[depth] = newString(buf, nameStart - bufAbsoluteStart, elLen);
+      elName[depth] = newSymbol(buf, nameStart - bufAbsoluteStart, elLen);
 
     }
 
@@ -1968,25 +2021,25 @@ public int nextToken()
                     + " when namespaces are enabled", this, null);
           }
           name = //attributeName[ attributeCount ] =
-              newString(buf, colonPos - bufAbsoluteStart + 1, nameLen);
+              newSymbol(buf, colonPos - bufAbsoluteStart + 1, nameLen);
           //pos - 1 - (colonPos + 1 - bufAbsoluteStart)
         }
       } else {
         if (colonPos != -1) {
           int prefixLen = colonPos - nameStart;
           attributePrefix[attributeCount] =
-              newString(buf, nameStart - bufAbsoluteStart, prefixLen);
+              newSymbol(buf, nameStart - bufAbsoluteStart, prefixLen);
           //colonPos - (nameStart - bufAbsoluteStart));
           int nameLen = pos - 2 - (colonPos - bufAbsoluteStart);
           name = attributeName[attributeCount] =
-              newString(buf, colonPos - bufAbsoluteStart + 1, nameLen);
+              newSymbol(buf, colonPos - bufAbsoluteStart + 1, nameLen);
           //pos - 1 - (colonPos + 1 - bufAbsoluteStart));
 
           //name.substring(0, colonPos-nameStart);
         } else {
           attributePrefix[attributeCount] = null;
           name = attributeName[attributeCount] =
-              newString(buf, nameStart - bufAbsoluteStart,
+              newSymbol(buf, nameStart - bufAbsoluteStart,
                   pos - 1 - (nameStart - bufAbsoluteStart));
         }
         if (!allStringsInterned) {
@@ -1997,7 +2050,7 @@ public int nextToken()
     } else {
       // retrieve name
       name = attributeName[attributeCount] =
-          newString(buf, nameStart - bufAbsoluteStart,
+          newSymbol(buf, nameStart - bufAbsoluteStart,
               pos - 1 - (nameStart - bufAbsoluteStart));
       ////assert name != null;
       if (!allStringsInterned) {
@@ -2897,7 +2950,7 @@ public int nextToken()
   }
 
   protected void fillBuf() throws IOException, XmlPullParserException {
-    if (reader == null) throw new XmlPullParserException(
+    if (reader == null && utf8Input == null) throw new XmlPullParserException(
         "reader must be set before parsing is started");
 
     // see if we are in compaction area
@@ -2959,7 +3012,7 @@ public int nextToken()
     }
     // at least one charcter must be read or error
     final int len = buf.length - bufEnd > READ_CHUNK_SIZE ? READ_CHUNK_SIZE : buf.length - bufEnd;
-    final int ret = reader.read(buf, bufEnd, len);
+    final int ret = utf8Input != null ? readUtf8(buf, bufEnd, len) : reader.read(buf, bufEnd, len);
     if (ret > 0) {
       bufEnd += ret;
       if (TRACE_SIZING) System.out.println(
@@ -3009,6 +3062,110 @@ public int nextToken()
     }
   }
 
+  /**
+   * Decodes UTF-8 from utf8Input like InputStreamReader.read(char[], int, int) would, replacing
+   * malformed bytes with U+FFFD. Runs of ASCII are copied byte to char; only multi-byte
+   * sequences are decoded one by one. Reads the stream again only when nothing was decoded yet.
+   */
+  protected int readUtf8(char[] cbuf, int off, int len) throws IOException {
+    int out = off;
+    final int end = off + len;
+    if (utf8Pending != 0 && out < end) {
+      cbuf[out++] = utf8Pending;
+      utf8Pending = 0;
+    }
+    final byte[] b = utf8Buf;
+    while (out < end) {
+      if (utf8Start == utf8End) {
+        if (out > off || !fillUtf8(1)) {
+          break;
+        }
+      }
+
+      // ASCII fast path
+      int p = utf8Start;
+      final int limit = p + Math.min(end - out, utf8End - p);
+      while (p < limit && b[p] >= 0) {
+        cbuf[out++] = (char) b[p++];
+      }
+      utf8Start = p;
+      if (p == limit) {
+        continue;
+      }
+
+      final int lead = b[p] & 0xff;
+      final int need = lead < 0xc2 ? 1 : lead < 0xe0 ? 2 : lead < 0xf0 ? 3 : lead < 0xf5 ? 4 : 1;
+      if (utf8End - p < need) {
+        if (out > off) {
+          break;
+        }
+        if (!fillUtf8(need)) {
+          // truncated sequence at the end of input
+          cbuf[out++] = '\uFFFD';
+          utf8Start = utf8End;
+          break;
+        }
+        p = utf8Start;
+      }
+      if (need == 1) {
+        cbuf[out++] = '\uFFFD';
+        utf8Start = p + 1;
+        continue;
+      }
+
+      int c = lead & (0xff >> (need + 1));
+      int i = 1;
+      for (; i < need; i++) {
+        final int next = b[p + i];
+        if ((next & 0xc0) != 0x80) {
+          break;
+        }
+        c = (c << 6) | (next & 0x3f);
+      }
+      if (i < need
+          || (need == 3 && (c < 0x800 || (c >= 0xd800 && c <= 0xdfff)))
+          || (need == 4 && (c < 0x10000 || c > 0x10ffff))) {
+        cbuf[out++] = '\uFFFD';
+        utf8Start = p + i;
+        continue;
+      }
+      utf8Start = p + need;
+      if (need < 4) {
+        cbuf[out++] = (char) c;
+      } else {
+        cbuf[out++] = Character.highSurrogate(c);
+        if (out < end) {
+          cbuf[out++] = Character.lowSurrogate(c);
+        } else {
+          utf8Pending = Character.lowSurrogate(c);
+        }
+      }
+    }
+    return out > off ? out - off : -1;
+  }
+
+  /**
+   * moves undecoded bytes to the front of utf8Buf and reads until at least min bytes are there
+   *
+   * @return false if the input ended first
+   */
+  private boolean fillUtf8(int min) throws IOException {
+    int remaining = utf8End - utf8Start;
+    if (utf8Start > 0) {
+      System.arraycopy(utf8Buf, utf8Start, utf8Buf, 0, remaining);
+      utf8Start = 0;
+      utf8End = remaining;
+    }
+    while (utf8End < min) {
+      final int ret = utf8Input.read(utf8Buf, utf8End, utf8Buf.length - utf8End);
+      if (ret < 0) {
+        return false;
+      }
+      utf8End += ret;
+    }
+    return true;
+  }
+
   protected char more() throws IOException, XmlPullParserException {
     if (pos >= bufEnd) {
       fillBuf();
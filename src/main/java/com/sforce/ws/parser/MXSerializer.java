@@ -73,6 +73,8 @@ public class MXSerializer {
 
     protected String location;
     protected Writer out;
+    // kept across setOutput() calls so its buffer is allocated once
+    private Utf8Writer utf8Writer;
 
     protected int autoDeclaredPrefixes;
 
@@ -124,9 +126,16 @@ public class MXSerializer {
         }
     }
 
-    protected void reset() {
+    /**
+     * Forgets the output and the element and namespace stacks, keeping features, properties and
+     * buffers, so the serializer can be given new output. Anything not flushed yet is dropped.
+     */
+    public void reset() {
         location = null;
         out = null;
+        if(utf8Writer != null) {
+            utf8Writer.setOutput(null);
+        }
         autoDeclaredPrefixes = 0;
         depth = 0;
 
@@ -381,7 +390,13 @@ public class MXSerializer {
     {
         if(os == null) throw new IllegalArgumentException("output stream can not be null");
         reset();
-        if(encoding != null) {
+        if("UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding)) {
+            if(utf8Writer == null) {
+                utf8Writer = new Utf8Writer();
+            }
+            utf8Writer.setOutput(os);
+            out = utf8Writer;
+        } else if(encoding != null) {
             out = new OutputStreamWriter(os, encoding);
         } else {
             out = new OutputStreamWriter(os);
@@ -886,22 +901,22 @@ public class MXSerializer {
         {
             char ch = value.charAt(i);
             if(ch == '&') {
-                if(i > pos) out.write(value.substring(pos, i));
+                if(i > pos) out.write(value, pos, i - pos);
                 out.write("&amp;");
                 pos = i + 1;
             } if(ch == '<') {
-                if(i > pos) out.write(value.substring(pos, i));
+                if(i > pos) out.write(value, pos, i - pos);
                 out.write("&lt;");
                 pos = i + 1;
             }else if(ch == quot) {
-                if(i > pos) out.write(value.substring(pos, i));
+                if(i > pos) out.write(value, pos, i - pos);
                 out.write(quotEntity);
                 pos = i + 1;
             } else if(ch < 32) {
                 //in XML 1.0 only legal character are #x9 | #xA | #xD
                 // and they must be escaped otherwise in attribute value they are normalized to spaces
                 if(ch == 13 || ch == 10 || ch == 9) {
-                    if(i > pos) out.write(value.substring(pos, i));
+                    if(i > pos) out.write(value, pos, i - pos);
                     out.write("&#");
                     out.write(Integer.toString(ch));
                     out.write(';');
@@ -928,85 +943,56 @@ public class MXSerializer {
             }
         }
         if(pos > 0) {
-            out.write(value.substring(pos));
+            out.write(value, pos, value.length() - pos);
         } else {
             out.write(value);  // this is shortcut to the most common case
         }
 
     }
 
+    // chars that writeElementContent() has to look at: '&', '<', '>', ']' and controls other than tab, LF and CR
+    private static final boolean[] CONTENT_SPECIAL = new boolean[128];
+    static {
+        for (int ch = 0; ch < 32; ch++) {
+            CONTENT_SPECIAL[ch] = ch != 9 && ch != 10 && ch != 13;
+        }
+        CONTENT_SPECIAL['&'] = CONTENT_SPECIAL['<'] = CONTENT_SPECIAL['>'] = CONTENT_SPECIAL[']'] = true;
+    }
+
     protected void writeElementContent(String text, Writer out) throws IOException
     {
         // esccape '<', '&', ']]>', <32 if necessary
+        final int len = text.length();
         int pos = 0;
-        for (int i = 0; i < text.length(); i++)
+        int i = 0;
+        while (i < len)
         {
-            //TODO: check if doing char[] text.getChars() would be faster than getCharAt(i) ...
-            char ch = text.charAt(i);
-            if(ch == ']') {
-                if(seenBracket) {
-                    seenBracketBracket = true;
-                } else {
-                    seenBracket = true;
-                }
-            } else {
-                if(ch == '&') {
-                    if(i > pos) out.write(text.substring(pos, i));
-                    out.write("&amp;");
-                    pos = i + 1;
-                } else if(ch == '<') {
-                    if(i > pos) out.write(text.substring(pos, i));
-                    out.write("&lt;");
-                    pos = i + 1;
-                } else if(seenBracketBracket && ch == '>') {
-                    if(i > pos) out.write(text.substring(pos, i));
-                    out.write("&gt;");
-                    pos = i + 1;
-                } else if(ch < 32) {
-                    //in XML 1.0 only legal character are #x9 | #xA | #xD
-                    if( ch == 9 || ch == 10 || ch == 13) {
-                        // pass through
-                        //                    } else if(ch == 13) { //escape
-                        //                        if(i > pos) out.write(text.substring(pos, i));
-                        //                        out.write("&#");
-                        //                        out.write(Integer.toString(ch));
-                        //                        out.write(';');
-                        //                        pos = i + 1;
-                    } else {
-                        // since XmlWriter.writeTextImpl ignores invalid XML chars let's do the same here. commenting below.
-                        if (i > pos) out.write(text.substring(pos, i));
-                        pos = i + 1;
-//                        if(TRACE_ESCAPING) System.err.println(getClass().getName()+" DEBUG TEXT value.len="+text.length()+" "+printable(text));
-//                        throw new IllegalStateException(
-//                            "character "+Integer.toString(ch)+" is not allowed in output"+getLocation()
-//                                +" (text value="+printable(text)+")");
-                        // in XML 1.1 legal are [#x1-#xD7FF]
-                        //              if(ch > 0) {
-                        //                  if(i > pos) out.write(text.substring(pos, i));
-                        //                  out.write("&#");
-                        //                  out.write(Integer.toString(ch));
-                        //                  out.write(';');
-                        //                  pos = i + 1;
-                        //              } else {
-                        //              throw new IllegalStateException(
-                        //                  "character zero is not allowed in XML 1.1 output"+getLocation());
-                        //              }
-                    }
-                }
-                if(seenBracket) {
-                    seenBracketBracket = seenBracket = false;
-                }
-
+            // runs of chars that need no escaping are written in one go
+            final int runStart = i;
+            char ch = 0;
+            while (i < len && ((ch = text.charAt(i)) >= 128 || !CONTENT_SPECIAL[ch])) {
+                i++;
+            }
+            if (i > runStart) {
+                seenBracketBracket = seenBracket = false;
+            }
+            if (i == len) {
+                break;
+            }
+            final String entity = escapeContent(ch);
+            if (entity != null) {
+                if (i > pos) out.write(text, pos, i - pos);
+                // an empty entity drops a char that is not allowed in XML 1.0
+                if (!entity.isEmpty()) out.write(entity);
+                pos = i + 1;
             }
+            i++;
         }
         if(pos > 0) {
-            out.write(text.substring(pos));
+            out.write(text, pos, len - pos);
         } else {
             out.write(text);  // this is shortcut to the most common case
         }
-
-
-
     }
 
     protected void writeElementContent(char[] buf, int off, int len, Writer out) throws IOException
@@ -1014,82 +1000,62 @@ public class MXSerializer {
         // esccape '<', '&', ']]>'
         final int end = off + len;
         int pos = off;
-        for (int i = off; i < end; i++)
+        int i = off;
+        while (i < end)
         {
-            final char ch = buf[i];
-            if(ch == ']') {
-                if(seenBracket) {
-                    seenBracketBracket = true;
-                } else {
-                    seenBracket = true;
-                }
-            } else {
-                if(ch == '&') {
-                    if(i > pos) {
-                        out.write(buf, pos, i - pos);
-                    }
-                    out.write("&amp;");
-                    pos = i + 1;
-                } else if(ch == '<') {
-                    if(i > pos) {
-                        out.write(buf, pos, i - pos);
-                    }
-                    out.write("&lt;");
-                    pos = i + 1;
-
-                } else if(seenBracketBracket && ch == '>') {
-                    if(i > pos) {
-                        out.write(buf, pos, i - pos);
-                    }
-                    out.write("&gt;");
-                    pos = i + 1;
-                } else if(ch < 32) {
-                    //in XML 1.0 only legal character are #x9 | #xA | #xD
-                    if( ch == 9 || ch == 10 || ch == 13) {
-                        // pass through
-
-
-                        //                    } else if(ch == 13 ) { //if(ch == '\r') {
-                        //                        if(i > pos) {
-                        //                            out.write(buf, pos, i - pos);
-                        //                        }
-                        //                        out.write("&#");
-                        //                        out.write(Integer.toString(ch));
-                        //                        out.write(';');
-                        //                        pos = i + 1;
-                    } else {
-                        // since XmlWriter.writeTextImpl ignores invalid XML chars let's do the same here. commenting below.
-                        if(i > pos) out.write(buf, pos, i - pos);
-                        pos = i + 1;
-//                        if(TRACE_ESCAPING) System.err.println(
-//                                getClass().getName()+" DEBUG TEXT value.len="
-//                                    +len+" "+printable(new String(buf,off,len)));
-//                        throw new IllegalStateException(
-//                            "character "+printable(ch)+" ("+Integer.toString(ch)+") is not allowed in output"+getLocation());
-                        // in XML 1.1 legal are [#x1-#xD7FF]
-                        //              if(ch > 0) {
-                        //                  if(i > pos) out.write(text.substring(pos, i));
-                        //                  out.write("&#");
-                        //                  out.write(Integer.toString(ch));
-                        //                  out.write(';');
-                        //                  pos = i + 1;
-                        //              } else {
-                        //              throw new IllegalStateException(
-                        //                  "character zero is not allowed in XML 1.1 output"+getLocation());
-                        //              }
-                    }
-                }
-                if(seenBracket) {
-                    seenBracketBracket = seenBracket = false;
-                }
-                // assert seenBracketBracket == seenBracket == false;
+            final int runStart = i;
+            char ch = 0;
+            while (i < end && ((ch = buf[i]) >= 128 || !CONTENT_SPECIAL[ch])) {
+                i++;
+            }
+            if (i > runStart) {
+                seenBracketBracket = seenBracket = false;
             }
+            if (i == end) {
+                break;
+            }
+            final String entity = escapeContent(ch);
+            if (entity != null) {
+                if (i > pos) out.write(buf, pos, i - pos);
+                if (!entity.isEmpty()) out.write(entity);
+                pos = i + 1;
+            }
+            i++;
         }
         if(end > pos) {
             out.write(buf, pos, end - pos);
         }
     }
 
+    /**
+     * Tracks ']]' and works out what to write for one of the CONTENT_SPECIAL chars.
+     *
+     * @return the entity to write in place of ch, "" to drop it, or null to write it as it is
+     */
+    private String escapeContent(char ch)
+    {
+        if(ch == ']') {
+            if(seenBracket) {
+                seenBracketBracket = true;
+            } else {
+                seenBracket = true;
+            }
+            return null;
+        }
+        final boolean afterBrackets = seenBracketBracket;
+        seenBracketBracket = seenBracket = false;
+        if(ch == '&') {
+            return "&amp;";
+        } else if(ch == '<') {
+            return "&lt;";
+        } else if(ch == '>') {
+            return afterBrackets ? "&gt;" : null;
+        }
+        // in XML 1.0 only legal character are #x9 | #xA | #xD; since XmlWriter.writeTextImpl
+        // ignores invalid XML chars let's do the same here
+        return "";
+    }
+
     /** simple utility method -- good for debugging */
     protected static String printable(String s) {
         if(s == null) return "null";
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Canonical instances of the element, attribute and namespace names seen while parsing, shared
+ * by every MXParser and by the binding layer. A name is looked up straight from the parser's
+ * char buffer, so a name seen before costs no allocation, and all lookups of the same name
+ * return the same String, which is also the String.intern() one, so names compare by identity
+ * with each other and with string literals. QNames made of such names are kept the same way.
+ * <p/>
+ * Lookups do not lock; adding a name does. The table stops adding once it holds maxSize names or
+ * QNames; unknown names are then interned but not kept, and unknown QNames are new instances.
+ */
+public final class SymbolTable {
+
+    private static final SymbolTable SHARED = new SymbolTable(64 * 1024);
+
+    private static final class Symbol {
+        final String value;
+        final int hash;
+        final Symbol next;
+
+        Symbol(String value, int hash, Symbol next) {
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private static final class QNameEntry {
+        final QName value;
+        final int hash;
+        final QNameEntry next;
+
+        QNameEntry(QName value, int hash, QNameEntry next) {
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    private final int maxSize;
+    private volatile Symbol[] symbols = new Symbol[1024];
+    private int symbolCount;
+    private volatile QNameEntry[] qnames = new QNameEntry[1024];
+    private int qnameCount;
+    private final Object qnameLock = new Object();
+
+    public SymbolTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the table used by parsers and the binding layer
+     */
+    public static SymbolTable getShared() {
+        return SHARED;
+    }
+
+    public String symbol(char[] buf, int off, int len) {
+        int hash = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        final Symbol[] table = symbols;
+        for (Symbol s = table[hash & (table.length - 1)]; s != null; s = s.next) {
+            if (s.hash == hash && matches(s.value, buf, off, len)) {
+                return s.value;
+            }
+        }
+        return add(new String(buf, off, len), hash);
+    }
+
+    /**
+     * @return the canonical instance of the given part of str
+     */
+    public String symbol(String str, int off, int len) {
+        int hash = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            hash = 31 * hash + str.charAt(i);
+        }
+        final Symbol[] table = symbols;
+        for (Symbol s = table[hash & (table.length - 1)]; s != null; s = s.next) {
+            if (s.hash == hash && s.value.length() == len && s.value.regionMatches(0, str, off, len)) {
+                return s.value;
+            }
+        }
+        return add(str.substring(off, off + len), hash);
+    }
+
+    /**
+     * @return the canonical instance of str, or null if str is null
+     */
+    public String symbol(String str) {
+        if (str == null) {
+            return null;
+        }
+        final int hash = str.hashCode();
+        final Symbol[] table = symbols;
+        for (Symbol s = table[hash & (table.length - 1)]; s != null; s = s.next) {
+            if (s.value == str || (s.hash == hash && s.value.equals(str))) {
+                return s.value;
+            }
+        }
+        return add(str, hash);
+    }
+
+    /**
+     * @return the canonical QName for the given names; a null namespace is the empty one
+     */
+    public QName qname(String namespaceURI, String localPart) {
+        if (localPart == null) {
+            // let QName report it
+            return new QName(namespaceURI, localPart);
+        }
+        if (namespaceURI == null) {
+            namespaceURI = "";
+        }
+        final int hash = 31 * namespaceURI.hashCode() + localPart.hashCode();
+        final QNameEntry[] table = qnames;
+        for (QNameEntry q = table[hash & (table.length - 1)]; q != null; q = q.next) {
+            if (q.hash == hash && sameName(q.value, namespaceURI, localPart)) {
+                return q.value;
+            }
+        }
+        return addQName(namespaceURI, localPart, hash);
+    }
+
+    private static boolean matches(String value, char[] buf, int off, int len) {
+        if (value.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) != buf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameName(QName qname, String namespaceURI, String localPart) {
+        final String ns = qname.getNamespaceURI();
+        final String local = qname.getLocalPart();
+        return (ns == namespaceURI || ns.equals(namespaceURI)) && (local == localPart || local.equals(localPart));
+    }
+
+    private synchronized String add(String str, int hash) {
+        Symbol[] table = symbols;
+        int index = hash & (table.length - 1);
+        for (Symbol s = table[index]; s != null; s = s.next) {
+            if (s.hash == hash && s.value.equals(str)) {
+                return s.value;
+            }
+        }
+        if (symbolCount >= maxSize) {
+            return str.intern();
+        }
+        str = str.intern();
+        if (++symbolCount > table.length * 3 / 4) {
+            table = new Symbol[table.length * 2];
+            for (Symbol head : symbols) {
+                for (Symbol s = head; s != null; s = s.next) {
+                    int i = s.hash & (table.length - 1);
+                    table[i] = new Symbol(s.value, s.hash, table[i]);
+                }
+            }
+            index = hash & (table.length - 1);
+            table[index] = new Symbol(str, hash, table[index]);
+            symbols = table;
+        } else {
+            table[index] = new Symbol(str, hash, table[index]);
+        }
+        return str;
+    }
+
+    private QName addQName(String namespaceURI, String localPart, int hash) {
+        synchronized (qnameLock) {
+            QNameEntry[] table = qnames;
+            int index = hash & (table.length - 1);
+            for (QNameEntry q = table[index]; q != null; q = q.next) {
+                if (q.hash == hash && sameName(q.value, namespaceURI, localPart)) {
+                    return q.value;
+                }
+            }
+            if (qnameCount >= maxSize) {
+                return new QName(namespaceURI, localPart);
+            }
+            QName qname = new QName(symbol(namespaceURI), symbol(localPart));
+            if (++qnameCount > table.length * 3 / 4) {
+                table = new QNameEntry[table.length * 2];
+                for (QNameEntry head : qnames) {
+                    for (QNameEntry q = head; q != null; q = q.next) {
+                        int i = q.hash & (table.length - 1);
+                        table[i] = new QNameEntry(q.value, q.hash, table[i]);
+                    }
+                }
+                index = hash & (table.length - 1);
+                table[index] = new QNameEntry(qname, hash, table[index]);
+                qnames = table;
+            } else {
+                table[index] = new QNameEntry(qname, hash, table[index]);
+            }
+            return qname;
+        }
+    }
+}
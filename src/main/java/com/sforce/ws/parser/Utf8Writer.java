@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Encodes chars as UTF-8 straight into a byte buffer that is written to the stream when full or
+ * flushed, in place of an OutputStreamWriter. Runs of ASCII are copied char to byte; unpaired
+ * surrogates become '?' as they do through OutputStreamWriter. The buffer is kept when the
+ * writer is pointed at another stream.
+ */
+final class Utf8Writer extends Writer {
+
+    private final byte[] buf = new byte[8 * 1024];
+    private int count;
+    private OutputStream out;
+    // high surrogate waiting for the low surrogate in the next char
+    private char highSurrogate;
+
+    void setOutput(OutputStream out) {
+        this.out = out;
+        count = 0;
+        highSurrogate = 0;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        final int end = off + len;
+        while (off < end) {
+            if (highSurrogate != 0 || count == buf.length) {
+                writeChar(cbuf[off++]);
+                continue;
+            }
+            final byte[] b = buf;
+            int p = count;
+            final int limit = off + Math.min(end - off, b.length - p);
+            char c;
+            while (off < limit && (c = cbuf[off]) < 0x80) {
+                b[p++] = (byte) c;
+                off++;
+            }
+            count = p;
+            if (off < limit) {
+                writeChar(cbuf[off++]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        final int end = off + len;
+        while (off < end) {
+            if (highSurrogate != 0 || count == buf.length) {
+                writeChar(str.charAt(off++));
+                continue;
+            }
+            final byte[] b = buf;
+            int p = count;
+            final int limit = off + Math.min(end - off, b.length - p);
+            char c;
+            while (off < limit && (c = str.charAt(off)) < 0x80) {
+                b[p++] = (byte) c;
+                off++;
+            }
+            count = p;
+            if (off < limit) {
+                writeChar(str.charAt(off++));
+            }
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                writeChar('?');
+            }
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (buf.length - count < 4) {
+            flushBuffer();
+        }
+        final byte[] b = buf;
+        if (highSurrogate != 0) {
+            final char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int cp = Character.toCodePoint(high, c);
+                b[count++] = (byte) (0xf0 | (cp >> 18));
+                b[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[count++] = (byte) (0x80 | (cp & 0x3f));
+                return;
+            }
+            b[count++] = '?';
+            writeChar(c);
+            return;
+        }
+        if (c < 0x80) {
+            b[count++] = (byte) c;
+        } else if (c < 0x800) {
+            b[count++] = (byte) (0xc0 | (c >> 6));
+            b[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            b[count++] = '?';
+        } else {
+            b[count++] = (byte) (0xe0 | (c >> 12));
+            b[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            b[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+}
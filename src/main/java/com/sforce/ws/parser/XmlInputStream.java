@@ -41,7 +41,7 @@ import com.sforce.ws.ConnectionException;
  */
 public final class XmlInputStream {
 
-  private MXParser parser = new MXParser();
+  private MXParser parser;
 
   public static final int END_DOCUMENT = XmlPullParser.END_DOCUMENT;
   public static final int START_DOCUMENT = XmlPullParser.START_DOCUMENT;
@@ -53,7 +53,19 @@ public final class XmlInputStream {
 
   private int peekTag = EMPTY;
 
+  private final TextView textView = new TextView();
+  private final int[] textRange = new int[2];
+
+  /**
+   * Uses a parser from the pool shared by all threads when there is one, which may have been given back by
+   * another thread; call release() when done to give it back, and do not use the stream afterwards.
+   */
   public XmlInputStream() {
+    parser = XmlPool.takeParser();
+    if (parser != null) {
+      return;
+    }
+    parser = new MXParser();
     try {
       parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
     } catch (XmlPullParserException e) {
@@ -61,6 +73,24 @@ public final class XmlInputStream {
     }
   }
 
+  /**
+   * Forgets the current input so the stream can be given new input with setInput().
+   */
+  public void reset() {
+    parser.reset();
+    peekTag = EMPTY;
+  }
+
+  /**
+   * Gives the parser back to the pool of the calling thread. The stream can not be used after this.
+   */
+  public void release() {
+    if (parser != null) {
+      XmlPool.giveBack(parser);
+      parser = null;
+    }
+  }
+
   public void setInput(InputStream inputStream, String inputEncoding) throws PullParserException {
     parser.setInput(inputStream, inputEncoding);
   }
@@ -156,6 +186,35 @@ public final class XmlInputStream {
       return parser.getText();
   }
 
+  /**
+   * Reads the text of the current element like nextText(), but copies it into a buffer kept by
+   * this stream instead of creating a String.
+   *
+   * @return the text, valid until the next call of this method
+   */
+  public TextView nextTextView() throws IOException, ConnectionException {
+    try {
+      if (parser.getEventType() != START_TAG) {
+        throw new XmlPullParserException("parser must be on START_TAG to read next text", parser, null);
+      }
+      int eventType = parser.next();
+      if (eventType == TEXT) {
+        char[] chars = parser.getTextCharacters(textRange);
+        textView.set(chars, textRange[0], textRange[1]);
+        if (parser.next() != END_TAG) {
+          throw new XmlPullParserException("TEXT must be immediately followed by END_TAG", parser, null);
+        }
+      } else if (eventType == END_TAG) {
+        textView.set(null, 0, 0);
+      } else {
+        throw new XmlPullParserException("parser must be on START_TAG or TEXT to read text", parser, null);
+      }
+      return textView;
+    } catch (XmlPullParserException e) {
+      throw new ConnectionException("Failed to get text", e);
+    }
+  }
+
   public int nextTag() throws IOException, ConnectionException {
     if (peekTag != EMPTY) {
       int t = peekTag;
@@ -192,4 +251,52 @@ public final class XmlInputStream {
         }
         return peek;
     }
+
+  /**
+   * Text of an element held in a reusable char array, see nextTextView().
+   */
+  public static final class TextView implements CharSequence {
+    private char[] chars = new char[64];
+    private int length;
+
+    void set(char[] source, int start, int len) {
+      if (len > chars.length) {
+        chars = new char[Math.max(len, chars.length * 2)];
+      }
+      if (len > 0) {
+        System.arraycopy(source, start, chars, 0, len);
+      }
+      length = len;
+    }
+
+    /**
+     * @return the array holding the text from index 0 to length()
+     */
+    public char[] array() {
+      return chars;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, 0, length);
+    }
+  }
 }
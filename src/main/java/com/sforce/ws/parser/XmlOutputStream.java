@@ -40,24 +40,34 @@ import com.sforce.ws.wsdl.Constants;
  * @since 1.0  Nov 30, 2005
  */
 public class XmlOutputStream implements AutoCloseable {
-    private MXSerializer serializer = new MXSerializer();
+    private MXSerializer serializer;
     private OutputStream out;
 
     public XmlOutputStream(OutputStream out, boolean prettyPrint) throws IOException {
-        this.out = out;
-        serializer.setOutput(out, "UTF-8");
-
-        if (prettyPrint) {
-            serializer.setProperty(serializer.PROPERTY_SERIALIZER_INDENTATION, " ");
-        }
+        this(out, prettyPrint ? " " : null);
     }
     
+    /**
+     * Uses a serializer from the pool shared by all threads when there is one, which may have been given back
+     * by another thread; close() gives it back, so do not write to the stream afterwards.
+     */
     public XmlOutputStream(OutputStream out, String prettyPrintIndentation) throws IOException {
         this.out = out;
+        serializer = XmlPool.takeSerializer();
+        if (serializer == null) {
+            serializer = new MXSerializer();
+        }
         serializer.setOutput(out, "UTF-8");
         serializer.setProperty(serializer.PROPERTY_SERIALIZER_INDENTATION, prettyPrintIndentation);
     }    
 
+    /**
+     * Drops what was written but not flushed yet and starts a new document on the same stream.
+     */
+    public void reset() throws IOException {
+        serializer.setOutput(out, "UTF-8");
+    }
+
     public String getPrefix(String namespace) {
         return serializer.getPrefix(namespace, false);
     }
@@ -103,6 +113,10 @@ public class XmlOutputStream implements AutoCloseable {
         serializer.text(text);
     }
 
+    public void writeText(char[] buf, int start, int len) throws IOException {
+        serializer.text(buf, start, len);
+    }
+
     public void writeComment(String text) throws IOException {
         serializer.comment(text);
     }
@@ -118,7 +132,15 @@ public class XmlOutputStream implements AutoCloseable {
 
     @Override
     public void close() throws IOException {
-        flush();
-        out.close();
+        if (serializer == null) {
+            return;
+        }
+        try {
+            flush();
+            out.close();
+        } finally {
+            XmlPool.giveBack(serializer);
+            serializer = null;
+        }
     }
 }
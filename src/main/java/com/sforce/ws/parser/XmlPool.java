@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parsers and serializers shared by all threads for XmlInputStream and XmlOutputStream, so that
+ * frequent small calls such as bulk status polls reuse their buffers instead of allocating new
+ * ones. The pool is not tied to a thread, so virtual threads, which are never reused, still
+ * benefit from it. At most MAX_POOLED of each are kept; instances are reset when they are given
+ * back.
+ */
+final class XmlPool {
+
+    static final int MAX_POOLED = 16;
+
+    private static final Queue<MXParser> PARSERS = new ConcurrentLinkedQueue<MXParser>();
+    private static final AtomicInteger PARSER_COUNT = new AtomicInteger();
+    private static final Queue<MXSerializer> SERIALIZERS = new ConcurrentLinkedQueue<MXSerializer>();
+    private static final AtomicInteger SERIALIZER_COUNT = new AtomicInteger();
+
+    private XmlPool() {
+    }
+
+    /**
+     * @return a pooled parser, or null if the pool is empty
+     */
+    static MXParser takeParser() {
+        return take(PARSERS, PARSER_COUNT);
+    }
+
+    static void giveBack(MXParser parser) {
+        parser.reset();
+        offer(PARSERS, PARSER_COUNT, parser);
+    }
+
+    /**
+     * @return a pooled serializer, or null if the pool is empty
+     */
+    static MXSerializer takeSerializer() {
+        return take(SERIALIZERS, SERIALIZER_COUNT);
+    }
+
+    static void giveBack(MXSerializer serializer) {
+        serializer.reset();
+        offer(SERIALIZERS, SERIALIZER_COUNT, serializer);
+    }
+
+    private static <T> T take(Queue<T> pool, AtomicInteger count) {
+        T item = pool.poll();
+        if (item != null) {
+            count.decrementAndGet();
+        }
+        return item;
+    }
+
+    private static <T> void offer(Queue<T> pool, AtomicInteger count, T item) {
+        // reserve a slot first so that concurrent returns cannot grow the pool past its cap
+        if (count.incrementAndGet() > MAX_POOLED) {
+            count.decrementAndGet();
+            return;
+        }
+        pool.offer(item);
+    }
+}
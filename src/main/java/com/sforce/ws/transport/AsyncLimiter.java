@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.sforce.ws.ConnectorConfig;
+
+/**
+ * Limits the number of asynchronous calls a connection has in flight. When the
+ * limit is reached new calls are queued and started, in order, as earlier calls
+ * complete, so the thread submitting a call never blocks. A call that finds a free
+ * slot starts on the submitting thread. A queued call starts on the executor given
+ * to the limiter; without an executor it starts on the thread that completes an
+ * earlier call, which may be an I/O thread of the transport.
+ * <p>
+ * At most maxQueuedRequests calls wait for a slot. Further calls are not queued:
+ * their future fails at once with a RejectedExecutionException, and the caller is
+ * expected to back off until earlier calls have completed.
+ */
+public class AsyncLimiter {
+    private final int maxConcurrentRequests;
+    private final int maxQueuedRequests;
+    private final Semaphore permits;
+    private final Executor executor;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // number of drain() requests; only the caller that raises it from 0 starts queued calls
+    private final AtomicInteger drains = new AtomicInteger();
+
+    /**
+     * creates a limiter that queues any number of calls
+     */
+    public AsyncLimiter(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, Integer.MAX_VALUE);
+    }
+
+    public AsyncLimiter(int maxConcurrentRequests, int maxQueuedRequests) {
+        this(maxConcurrentRequests, maxQueuedRequests, null);
+    }
+
+    /**
+     * @param executor starts queued calls, or null to start them on the thread that completes an earlier call
+     */
+    public AsyncLimiter(int maxConcurrentRequests, int maxQueuedRequests, Executor executor) {
+        this(maxConcurrentRequests, maxQueuedRequests, new Semaphore(maxConcurrentRequests, true), executor);
+    }
+
+    /**
+     * creates a limiter with the limits of {@link ConnectorConfig#getMaxAsyncRequests()} and
+     * {@link ConnectorConfig#getMaxQueuedAsyncRequests()}, which starts queued calls on
+     * {@link ConnectorConfig#getAsyncExecutor()}
+     */
+    public AsyncLimiter(ConnectorConfig config) {
+        this(config.getMaxAsyncRequests(), config.getMaxQueuedAsyncRequests(), config.getAsyncExecutor());
+    }
+
+    /**
+     * @param permits permits shared with callers outside this limiter; they must give them back through
+     * {@link #release()} so that queued calls are started
+     */
+    AsyncLimiter(int maxConcurrentRequests, Semaphore permits) {
+        this(maxConcurrentRequests, Integer.MAX_VALUE, permits, null);
+    }
+
+    private AsyncLimiter(int maxConcurrentRequests, int maxQueuedRequests, Semaphore permits, Executor executor) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive: " + maxConcurrentRequests);
+        }
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("maxQueuedRequests must not be negative: " + maxQueuedRequests);
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.permits = permits;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the call once a slot is free. The slot is given back when the returned future completes.
+     *
+     * @param call starts the asynchronous call
+     * @return future of the call; it fails with a RejectedExecutionException, without the call being
+     * started, if maxQueuedRequests calls are already waiting
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> call) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        boolean accepted = execute(() -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            });
+        });
+        if (!accepted) {
+            result.completeExceptionally(new RejectedExecutionException("Too many asynchronous calls waiting: " +
+                    "maxConcurrentRequests=" + maxConcurrentRequests + " maxQueuedRequests=" + maxQueuedRequests));
+        }
+        return result;
+    }
+
+    /**
+     * Runs the task once a slot is free, without blocking the caller. The task owns the slot and must
+     * give it back with {@link #release()}; it must not throw.
+     *
+     * @return false, without running the task, if maxQueuedRequests tasks are already waiting
+     */
+    boolean execute(Runnable task) {
+        if (waiting.isEmpty() && permits.tryAcquire()) {
+            task.run();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet();
+            return false;
+        }
+        waiting.add(task);
+        drain();
+        return true;
+    }
+
+    /**
+     * gives back a slot and starts the next queued call, if any
+     */
+    void release() {
+        permits.release();
+        drain();
+    }
+
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!waiting.isEmpty() && permits.tryAcquire()) {
+                Runnable task = waiting.poll();
+                if (task == null) {
+                    permits.release();
+                    break;
+                }
+                queued.decrementAndGet();
+                start(task);
+            }
+            missed = drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void start(Runnable task) {
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the task owns a slot, so it has to run even when the executor has been shut down
+            task.run();
+        }
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * @return number of calls currently in flight
+     */
+    public int getInFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    /**
+     * @return number of calls waiting for a free slot
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
@@ -37,7 +37,6 @@ import java.util.zip.GZIPOutputStream;
 import com.sforce.ws.*;
 import com.sforce.ws.tools.VersionInfo;
 import com.sforce.ws.util.Base64;
-import com.sforce.ws.util.FileUtil;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -228,32 +227,17 @@ public class JdkHttpTransport implements Transport {
             in = new GZIPInputStream(in);
         }
 
-        if (config.hasMessageHandlers() || config.isTraceMessage()) {
-            byte[] bytes = FileUtil.toBytes(in);
-            in = new ByteArrayInputStream(bytes);
-
-            if (config.hasMessageHandlers()) {
-                Iterator<MessageHandler> it = config.getMessagerHandlers();
-                while(it.hasNext()) {
-                    MessageHandler handler = it.next();
-                    if (handler instanceof MessageHandlerWithHeaders) {
-                        ((MessageHandlerWithHeaders) handler).handleResponse(url, bytes, connection.getHeaderFields());
-                    } else {
-                        handler.handleResponse(url, bytes);
-                    }
-                }
+        if (config.isTraceMessage()) {
+            Map<String, List<String>> headers = connection.getHeaderFields();
+            for (Map.Entry header : headers.entrySet()) {
+                config.getTraceStream().print(header.getKey());
+                config.getTraceStream().print("=");
+                config.getTraceStream().println(header.getValue());
             }
+        }
 
-            if (config.isTraceMessage()) {
-                Map<String, List<String>> headers = connection.getHeaderFields();
-                for (Map.Entry header : headers.entrySet()) {
-                    config.getTraceStream().print(header.getKey());
-                    config.getTraceStream().print("=");
-                    config.getTraceStream().println(header.getValue());
-                }
-                
-                config.teeInputStream(bytes);
-            }
+        if (config.hasMessageHandlers() || config.isTraceMessage()) {
+            in = MessageHandlerInputStream.wrap(config, url, in, connection.getHeaderFields());
         }
 
         return in;
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.MessageHandler;
+import com.sforce.ws.MessageHandlerWithHeaders;
+import com.sforce.ws.StreamingMessageHandler;
+import com.sforce.ws.util.FileUtil;
+
+/**
+ * Passes response bytes to StreamingMessageHandlers as they are read.
+ */
+public class MessageHandlerInputStream extends FilterInputStream {
+    private final URL url;
+    private final List<StreamingMessageHandler> handlers;
+    private boolean ended;
+
+    public MessageHandlerInputStream(URL url, InputStream in, Map<String, List<String>> headers,
+                                     List<StreamingMessageHandler> handlers) {
+        super(in);
+        this.url = url;
+        this.handlers = handlers;
+
+        for (StreamingMessageHandler handler : handlers) {
+            handler.handleResponseStart(url, headers);
+        }
+    }
+
+    /**
+     * wraps a response so that the message handlers and the trace stream of the config see
+     * it. Only handlers that take the whole response as an array force it to be read into
+     * memory first; streaming handlers and tracing see the bytes as the caller reads them.
+     * @param config config holding the handlers
+     * @param url endpoint url
+     * @param in response stream
+     * @param headers response headers, may be null
+     * @return stream to read the response from
+     * @throws IOException if the response had to be buffered and reading it failed
+     */
+    public static InputStream wrap(ConnectorConfig config, URL url, InputStream in,
+                                   Map<String, List<String>> headers) throws IOException {
+        if (config.hasMessageHandlers()) {
+            List<StreamingMessageHandler> streaming = new ArrayList<StreamingMessageHandler>();
+            List<MessageHandler> buffered = new ArrayList<MessageHandler>();
+
+            Iterator<MessageHandler> it = config.getMessagerHandlers();
+            while (it.hasNext()) {
+                MessageHandler handler = it.next();
+                if (handler instanceof StreamingMessageHandler) {
+                    streaming.add((StreamingMessageHandler) handler);
+                } else {
+                    buffered.add(handler);
+                }
+            }
+
+            if (!buffered.isEmpty()) {
+                byte[] bytes = FileUtil.toBytes(in);
+                in = new ByteArrayInputStream(bytes);
+
+                for (MessageHandler handler : buffered) {
+                    if (handler instanceof MessageHandlerWithHeaders) {
+                        ((MessageHandlerWithHeaders) handler).handleResponse(url, bytes, headers);
+                    } else {
+                        handler.handleResponse(url, bytes);
+                    }
+                }
+            }
+
+            if (!streaming.isEmpty()) {
+                in = new MessageHandlerInputStream(url, in, headers, streaming);
+            }
+        }
+
+        if (config.isTraceMessage()) {
+            in = config.teeInputStream(in);
+        }
+
+        return in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            end();
+        } else {
+            byte[] chunk = { (byte) b };
+            for (StreamingMessageHandler handler : handlers) {
+                handler.handleResponseChunk(url, chunk, 0, 1);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if (count == -1) {
+            end();
+        } else if (count > 0) {
+            for (StreamingMessageHandler handler : handlers) {
+                handler.handleResponseChunk(url, b, off, count);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes are still part of the message
+        byte[] buf = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        int count = read(buf, 0, buf.length);
+        return count == -1 ? 0 : count;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            end();
+        }
+    }
+
+    private void end() {
+        if (!ended) {
+            ended = true;
+            for (StreamingMessageHandler handler : handlers) {
+                handler.handleResponseEnd(url);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Iterates over the records of a paged result, such as a query followed by queryMore calls.
+ * Up to prefetchDepth pages are requested ahead in the background while the current page is
+ * consumed, so at most prefetchDepth + 1 pages are held in memory. Each page is requested with
+ * the locator of the previous one, so pages still arrive one round trip at a time; prefetching
+ * overlaps those round trips with the caller's processing.
+ *
+ * Iteration throws IllegalStateException, with the ConnectionException as its cause, if fetching
+ * a page fails.
+ */
+public class PagingIterator<P, T> implements Iterator<T>, Closeable {
+    private final Function<P, T[]> records;
+    private final Predicate<P> done;
+    private final Function<P, String> locator;
+    private final Function<String, CompletableFuture<P>> more;
+    private final int prefetchDepth;
+
+    private final Deque<CompletableFuture<P>> pending = new ArrayDeque<CompletableFuture<P>>();
+    private CompletableFuture<P> last;
+    private T[] current;
+    private int index;
+    private boolean closed;
+
+    /**
+     * @param firstPage page returned by the initial call
+     * @param records returns the records of a page
+     * @param done returns true for the last page
+     * @param locator returns the locator used to request the page after the given one
+     * @param more requests the page for a locator
+     * @param prefetchDepth number of pages to request ahead, 0 to request each page when it is needed
+     */
+    public PagingIterator(P firstPage, Function<P, T[]> records, Predicate<P> done, Function<P, String> locator,
+                          Function<String, CompletableFuture<P>> more, int prefetchDepth) {
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth must not be negative: " + prefetchDepth);
+        }
+        this.records = records;
+        this.done = done;
+        this.locator = locator;
+        this.more = more;
+        this.prefetchDepth = prefetchDepth;
+
+        last = CompletableFuture.completedFuture(firstPage);
+        setPage(firstPage);
+    }
+
+    private void setPage(P page) {
+        current = records.apply(page);
+        index = 0;
+        while (pending.size() < prefetchDepth) {
+            pending.add(requestNext());
+        }
+    }
+
+    private CompletableFuture<P> requestNext() {
+        last = last.thenCompose(page -> page == null || done.test(page) ?
+                CompletableFuture.<P>completedFuture(null) : more.apply(locator.apply(page)));
+        return last;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || index >= current.length) {
+            if (closed) {
+                return false;
+            }
+
+            CompletableFuture<P> next = pending.poll();
+            P page;
+            try {
+                page = (next == null ? requestNext() : next).join();
+            } catch (CompletionException e) {
+                close();
+                throw new IllegalStateException("Failed to fetch next page", e.getCause());
+            }
+
+            if (page == null) {
+                close();
+                return false;
+            }
+            setPage(page);
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T record = current[index];
+        // release the reference so consumed records can be collected before the page ends
+        current[index++] = null;
+        return record;
+    }
+
+    /**
+     * stops prefetching. Requests already sent are not aborted, their pages are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        current = null;
+        for (CompletableFuture<P> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+}
@@ -35,6 +35,7 @@ import com.sforce.ws.bind.TypeInfo;
 import com.sforce.ws.bind.TypeMapper;
 import com.sforce.ws.bind.XMLizable;
 import com.sforce.ws.parser.PullParserException;
+import com.sforce.ws.parser.SymbolTable;
 import com.sforce.ws.parser.XmlInputStream;
 import com.sforce.ws.parser.XmlOutputStream;
 import com.sforce.ws.util.Verbose;
@@ -49,6 +50,9 @@ import java.lang.reflect.Method;
 import java.net.SocketTimeoutException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * SoapConnection can be used to send and receive SOAP messages over the
@@ -93,6 +97,16 @@ public class SoapConnection {
 
     public XMLizable send(String soapAction, QName requestElement, XMLizable request, QName responseElement, Class responseType)
             throws ConnectionException {
+        return send(soapAction, requestElement, request, responseElement, responseType, null, null, null);
+    }
+
+    /**
+     * @param transport transport for the first attempt, or null to create one
+     * @param streamType type of the array elements to stream, or null to bind the whole response
+     */
+    private <T> XMLizable send(String soapAction, QName requestElement, XMLizable request, QName responseElement,
+                               Class responseType, Transport transport, Class<T> streamType,
+                               Consumer<? super T> streamConsumer) throws ConnectionException {
 
         long startTime = System.currentTimeMillis();
 
@@ -100,14 +114,17 @@ public class SoapConnection {
             boolean firstTime = true;
             while(true) {
                 try {
-                    Transport transport = newTransport(config);
+                    if (transport == null) {
+                        transport = newTransport(config);
+                    }
                     OutputStream out = transport.connect(url, soapAction);
                     sendRequest(out, request, requestElement);
                     InputStream in = transport.getContent();
                     XMLizable result;
-                    result = receive(transport, responseElement, responseType, in);
+                    result = receive(transport, responseElement, responseType, in, streamType, streamConsumer);
                     return result;
                 } catch (SessionTimedOutException se) {
+                    transport = null;
                     if (config.getSessionRenewer() == null || !firstTime) {
                         throw (ConnectionException) se.getCause();
                     } else {
@@ -119,14 +136,140 @@ public class SoapConnection {
                 }
                 firstTime = false;
             }
-        } catch (SocketTimeoutException e) {
+        } catch (IOException e) {
+            throw toConnectionException(e, startTime);
+        }
+    }
+
+    /**
+     * Sends a request and streams the elements of the array valued field of the response, e.g.
+     * QueryResult.records, to the consumer while the response is parsed. The returned response
+     * holds an empty array in place of the streamed elements.
+     *
+     * @param elementType type of the array elements to stream
+     * @param elementConsumer receives each element as it is bound, on the calling thread
+     * @return the response, without the streamed elements
+     * @see TypeMapper#streamArrays(Class, Consumer)
+     */
+    public <T> XMLizable send(String soapAction, QName requestElement, XMLizable request, QName responseElement,
+                              Class responseType, Class<T> elementType, Consumer<? super T> elementConsumer)
+            throws ConnectionException {
+        return send(soapAction, requestElement, request, responseElement, responseType, null, elementType,
+                elementConsumer);
+    }
+
+    /**
+     * Iterator version of {@link #send(String, QName, XMLizable, QName, Class, Class, Consumer)}. The call
+     * runs on {@link ConnectorConfig#getAsyncExecutor()} and hands each element over as the iterator
+     * asks for it, so at most one element is held in memory between the parser and the caller.
+     * <p>
+     * Read the iterator to the end or close it. The call waits for each element to be read for
+     * {@link ConnectorConfig#getReadTimeout()}, or {@link StreamingResponse#DEFAULT_CONSUMER_TIMEOUT}
+     * when no read timeout is set, and then fails, so an iterator that is dropped early holds the
+     * thread and the response until then.
+     *
+     * @param elementType type of the array elements to stream
+     * @return elements in document order; the rest of the response is available from
+     * {@link StreamingResponse#getResponse()}
+     */
+    public <T> StreamingResponse<T> sendStreaming(final String soapAction, final QName requestElement,
+            final XMLizable request, final QName responseElement, final Class responseType, final Class<T> elementType) {
+        final StreamingResponse<T> response = new StreamingResponse<T>(config.getReadTimeout() > 0 ?
+                config.getReadTimeout() : StreamingResponse.DEFAULT_CONSUMER_TIMEOUT);
+        config.getAsyncExecutor().execute(() -> response.produce(() -> send(soapAction, requestElement, request,
+                responseElement, responseType, elementType, response::put)));
+        return response;
+    }
+
+    /**
+     * Asynchronous version of {@link #send(String, QName, XMLizable, QName, Class)}. The request is
+     * written on the calling thread. If the configured transport is an {@link AsyncTransport} the
+     * response is awaited without holding a thread, otherwise the whole call runs on
+     * {@link ConnectorConfig#getAsyncExecutor()}. Of the bundled transports only HttpClientTransport
+     * is asynchronous; with the default JdkHttpTransport each call holds an executor thread until it
+     * completes.
+     *
+     * @return future that completes with the response, or exceptionally with a ConnectionException
+     */
+    public CompletableFuture<XMLizable> sendAsync(String soapAction, QName requestElement, XMLizable request,
+                                                  QName responseElement, Class responseType) {
+        return sendAsync(soapAction, requestElement, request, responseElement, responseType, true);
+    }
+
+    private CompletableFuture<XMLizable> sendAsync(final String soapAction, final QName requestElement,
+            final XMLizable request, final QName responseElement, final Class responseType, final boolean firstTime) {
+
+        final long startTime = System.currentTimeMillis();
+        final Transport transport;
+
+        try {
+            // a transport class can be checked up front, a factory has to be asked for an instance
+            if (config.getTransportFactory() != null) {
+                transport = newTransport(config);
+            } else if (AsyncTransport.class.isAssignableFrom(config.getTransport())) {
+                transport = newTransport(config);
+            } else {
+                transport = null;
+            }
+
+            if (!(transport instanceof AsyncTransport)) {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return send(soapAction, requestElement, request, responseElement, responseType, transport,
+                                null, null);
+                    } catch (ConnectionException e) {
+                        throw new CompletionException(e);
+                    }
+                }, config.getAsyncExecutor());
+            }
+
+            OutputStream out = transport.connect(url, soapAction);
+            sendRequest(out, request, requestElement);
+        } catch (IOException e) {
+            return AsyncLimiter.failed(toConnectionException(e, startTime));
+        } catch (ConnectionException e) {
+            return AsyncLimiter.failed(e);
+        }
+
+        return ((AsyncTransport) transport).getContentAsync().handle((in, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                return AsyncLimiter.<XMLizable>failed(cause instanceof IOException ?
+                        toConnectionException((IOException) cause, startTime) : cause);
+            }
+
+            try {
+                return CompletableFuture.completedFuture(receive(transport, responseElement, responseType, in,
+                        null, null));
+            } catch (SessionTimedOutException se) {
+                if (config.getSessionRenewer() == null || !firstTime) {
+                    return AsyncLimiter.<XMLizable>failed(se.getCause());
+                }
+                try {
+                    SessionRenewer.SessionRenewalHeader sessionHeader = config.getSessionRenewer().renewSession(config);
+                    if (sessionHeader != null) {
+                        addHeader(sessionHeader.name, sessionHeader.headerElement);
+                    }
+                } catch (ConnectionException e) {
+                    return AsyncLimiter.<XMLizable>failed(e);
+                }
+                return sendAsync(soapAction, requestElement, request, responseElement, responseType, false);
+            } catch (IOException e) {
+                return AsyncLimiter.<XMLizable>failed(toConnectionException(e, startTime));
+            } catch (ConnectionException e) {
+                return AsyncLimiter.<XMLizable>failed(e);
+            }
+        }).thenCompose(future -> future);
+    }
+
+    private ConnectionException toConnectionException(IOException e, long startTime) {
+        if (e instanceof SocketTimeoutException) {
             long timeTaken = System.currentTimeMillis() - startTime;
-            throw new ConnectionException("Request to " + url + " timed out. TimeTaken=" + timeTaken +
+            return new ConnectionException("Request to " + url + " timed out. TimeTaken=" + timeTaken +
                     " ConnectionTimeout=" + config.getConnectionTimeout() + " ReadTimeout=" +
                     config.getReadTimeout(), e);
-        } catch (IOException e) {
-            throw new ConnectionException("Failed to send request to " + url, e);
         }
+        return new ConnectionException("Failed to send request to " + url, e);
     }
 
     private Transport newTransport(ConnectorConfig config) throws ConnectionException {
@@ -147,14 +290,18 @@ public class SoapConnection {
         }
     }
 
-    private XMLizable receive(Transport transport, QName responseElement,
-                              Class responseType, InputStream in) throws IOException, ConnectionException {
+    private <T> XMLizable receive(Transport transport, QName responseElement, Class responseType, InputStream in,
+                                  Class<T> streamType, Consumer<? super T> streamConsumer)
+            throws IOException, ConnectionException {
 
         XMLizable result;
 
-        try {
+        if (streamConsumer != null) {
+            typeMapper.streamArrays(streamType, streamConsumer);
+        }
 
-            XmlInputStream xin = new XmlInputStream();
+        XmlInputStream xin = new XmlInputStream();
+        try {
             xin.setInput(in, "UTF-8");
 
             if (transport.isSuccessful()) {
@@ -172,6 +319,10 @@ public class SoapConnection {
                 throw e;
             }
         } finally {
+            if (streamConsumer != null) {
+                typeMapper.stopStreamingArrays();
+            }
+            xin.release();
             in.close();
         }
 
@@ -294,7 +445,7 @@ public class SoapConnection {
             xin.peekTag();
 
             if (xin.getEventType() == XmlInputStream.START_TAG) {
-                QName tag = new QName(xin.getNamespace(), xin.getName());
+                QName tag = SymbolTable.getShared().qname(xin.getNamespace(), xin.getName());
 
                 Class headerType = (knownHeaders != null) ? knownHeaders.get(tag) : null;
 
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.bind.XMLizable;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Elements of an array valued response, handed over one at a time from the thread parsing the
+ * response. Iteration throws IllegalStateException if the call fails; {@link #getResponse()} throws
+ * the ConnectionException itself.
+ * <p>
+ * Iterate to the end, call {@link #getResponse()} or {@link #close()}: until then the call holds a
+ * thread and its response. An iterator that is dropped early, for example by a break out of a loop,
+ * is given up once it has not been read for the consumer timeout; the call then fails and reading
+ * on afterwards throws IllegalStateException.
+ *
+ * @see SoapConnection#sendStreaming(String, javax.xml.namespace.QName, XMLizable,
+ * javax.xml.namespace.QName, Class, Class)
+ */
+public class StreamingResponse<T> implements Iterator<T>, Closeable {
+    private static final Object NULL = new Object();
+    private static final Object END = new Object();
+    private static final long POLL_MILLIS = 100;
+    public static final long DEFAULT_CONSUMER_TIMEOUT = 5 * 60 * 1000;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(1);
+    private final CompletableFuture<XMLizable> response = new CompletableFuture<XMLizable>();
+    private final long consumerTimeout;
+    private volatile boolean closed;
+    private volatile boolean abandoned;
+    private Object next;
+    private boolean ended;
+
+    interface Call {
+        XMLizable call() throws ConnectionException;
+    }
+
+    /**
+     * @param consumerTimeout time in ms the call waits for the next element to be read before it gives up
+     */
+    StreamingResponse(long consumerTimeout) {
+        this.consumerTimeout = consumerTimeout;
+    }
+
+    void produce(Call call) {
+        try {
+            response.complete(call.call());
+        } catch (CancellationException e) {
+            // a cancelled future would hide the cause from getResponse()
+            response.completeExceptionally(new ConnectionException(e.getMessage(), e));
+        } catch (Throwable t) {
+            response.completeExceptionally(t);
+        } finally {
+            try {
+                if (!abandoned) {
+                    offer(END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void put(T element) {
+        try {
+            offer(element == null ? NULL : element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while streaming response");
+        }
+        if (abandoned) {
+            throw new CancellationException(abandonedMessage());
+        }
+        if (closed) {
+            // unwinds the parser; the call then fails with this exception
+            throw new CancellationException("Streaming response closed");
+        }
+    }
+
+    private void offer(Object o) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(consumerTimeout);
+        while (!closed) {
+            if (queue.offer(o, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                // the consumer is gone; END lets it fail if it ever reads again
+                abandoned = true;
+                queue.clear();
+                queue.offer(END);
+                return;
+            }
+        }
+    }
+
+    private String abandonedMessage() {
+        return "Streaming response was not read for " + consumerTimeout + " ms";
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !ended) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for response", e);
+            }
+            if (next == END) {
+                next = null;
+                ended = true;
+                if (abandoned) {
+                    throw new IllegalStateException(abandonedMessage());
+                }
+                if (response.isCompletedExceptionally()) {
+                    throw new IllegalStateException("Failed to read response", cause());
+                }
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object o = next;
+        next = null;
+        return o == NULL ? null : (T) o;
+    }
+
+    /**
+     * waits for the call to complete, skipping elements that have not been iterated
+     * @return the response, without the streamed elements
+     * @throws ConnectionException if the call failed
+     */
+    public XMLizable getResponse() throws ConnectionException {
+        try {
+            while (hasNext()) {
+                next();
+            }
+        } catch (IllegalStateException e) {
+            // reported below
+        }
+
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = cause();
+            if (cause instanceof ConnectionException) {
+                throw (ConnectionException) cause;
+            }
+            throw new ConnectionException("Failed to read response", cause);
+        }
+    }
+
+    private Throwable cause() {
+        try {
+            response.getNow(null);
+            return null;
+        } catch (Exception e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    /**
+     * stops the call if it is still streaming
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        next = null;
+        ended = true;
+    }
+}
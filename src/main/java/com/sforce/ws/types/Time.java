@@ -45,6 +45,8 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Class that represents the xsd:time XML Schema type
@@ -67,6 +69,7 @@ public class Time implements java.io.Serializable {
      */
     private static final SimpleDateFormat zulu =
        new SimpleDateFormat("HH:mm:ss.SSS'Z'");
+    private static final Lock zuluLock = new ReentrantLock();
 
     // We should always format dates in the GMT timezone
     static {
@@ -220,9 +223,12 @@ public class Time implements java.io.Serializable {
             if (source == null) {
                 throw new NullPointerException("Source can not be null");
             }
-            synchronized (zulu) {
+            zuluLock.lock();
+            try {
                 String fulltime = source.substring(0,8)+".000Z";
                 date = zulu.parse(fulltime);
+            } finally {
+                zuluLock.unlock();
             }
         } catch (Exception e) {
             throw new NumberFormatException(e.toString());
@@ -256,8 +262,11 @@ public class Time implements java.io.Serializable {
         if(_value==null) {
             return "unassigned Time";
         }
-        synchronized (zulu) {
+        zuluLock.lock();
+        try {
             return zulu.format(_value.getTime());
+        } finally {
+            zuluLock.unlock();
         }
 
     }
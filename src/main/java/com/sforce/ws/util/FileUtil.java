@@ -57,9 +57,10 @@ public class FileUtil {
     public static byte[] toBytes(InputStream in) throws IOException {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
 
-        int ch;
-        while ((ch = in.read()) != -1) {
-            bout.write(ch);
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) != -1) {
+            bout.write(buf, 0, count);
         }
 
         in.close();
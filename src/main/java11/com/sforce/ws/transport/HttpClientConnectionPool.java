@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.util.Verbose;
+
+/**
+ * A ConnectionPool backed by a single shared java.net.http.HttpClient.
+ * <p>
+ * The HttpClient is created lazily from the first ConnectorConfig that uses the
+ * pool (proxy, SSLContext and connection timeout are taken from it), so limits
+ * must be set before the pool is first used. HTTP/2 is negotiated when the
+ * server supports it, which lets many calls share a single connection.
+ * <p>
+ * maxConnections limits the number of requests in flight through the pool, not
+ * the number of open connections: with HTTP/2 they may all share one connection.
+ * <p>
+ * HttpClient can not evict single connections on request, so once no request has
+ * been in flight for idleTimeout the pool closes its HttpClient, with all of its
+ * connections, and creates a new one for the next request. The JDK may close idle
+ * HTTP/1.1 connections earlier according to the process wide
+ * jdk.httpclient.keepalive.timeout system property, which the pool leaves alone;
+ * see {@link #setJvmConnectionCache(long, int)}.
+ */
+public class HttpClientConnectionPool implements ConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private static final String KEEPALIVE_TIMEOUT_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private boolean http2 = true;
+    private Executor executor;
+
+    private volatile HttpClient client;
+    // created on first use and kept when the client is closed, so responses of an old client give their slot back here
+    private volatile Semaphore permits;
+    // queues async requests on the same permits, so they never block a thread waiting for a slot
+    private volatile AsyncLimiter asyncPermits;
+    private volatile long lastUsed = System.nanoTime();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+    public HttpClientConnectionPool() {
+    }
+
+    public HttpClientConnectionPool(int maxConnections, long idleTimeout) {
+        setMaxConnections(maxConnections);
+        setIdleTimeout(idleTimeout);
+    }
+
+    /**
+     * @return maximum number of requests in flight through this pool; this is not a limit on connections
+     */
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * sets the maximum number of requests in flight through this pool. This does not
+     * limit the number of connections the HttpClient opens. Callers
+     * block (up to the connection timeout of their config) when the limit is reached.
+     * @param maxConnections limit, must be positive
+     */
+    public void setMaxConnections(int maxConnections) {
+        checkNotStarted();
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * sets how long the pool may go without a request in flight before its HttpClient, and
+     * every connection it holds, is closed. The next request then opens new connections.
+     * @param idleTimeout timeout in ms
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        checkNotStarted();
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout must be positive: " + idleTimeout);
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * @param http2 false to always use HTTP/1.1
+     */
+    public void setHttp2(boolean http2) {
+        checkNotStarted();
+        this.http2 = http2;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * sets the executor used by the HttpClient for asynchronous tasks.
+     * @param executor executor, or null for the HttpClient default (or the config's virtual thread executor
+     * when {@link ConnectorConfig#setUseVirtualThreads(boolean)} is on)
+     */
+    public void setExecutor(Executor executor) {
+        checkNotStarted();
+        this.executor = executor;
+    }
+
+    HttpClient getClient(ConnectorConfig config) {
+        HttpClient c = client;
+        if (c == null) {
+            synchronized (this) {
+                c = client;
+                if (c == null) {
+                    limiter();
+                    c = client = newClient(config);
+                }
+            }
+        }
+        return c;
+    }
+
+    private AsyncLimiter limiter() {
+        AsyncLimiter l = asyncPermits;
+        if (l == null) {
+            synchronized (this) {
+                l = asyncPermits;
+                if (l == null) {
+                    permits = new Semaphore(maxConnections, true);
+                    l = asyncPermits = new AsyncLimiter(maxConnections, permits);
+                }
+            }
+        }
+        return l;
+    }
+
+    private HttpClient newClient(ConnectorConfig config) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER);
+
+        Proxy proxy = config.getProxy();
+        if (proxy.type() == Proxy.Type.HTTP && proxy.address() instanceof InetSocketAddress) {
+            builder.proxy(ProxySelector.of((InetSocketAddress) proxy.address()));
+        } else {
+            builder.proxy(HttpClient.Builder.NO_PROXY);
+        }
+
+        if (config.getSslContext() != null) {
+            builder.sslContext(config.getSslContext());
+        }
+
+        if (config.getConnectionTimeout() != 0) {
+            builder.connectTimeout(Duration.ofMillis(config.getConnectionTimeout()));
+        }
+
+        if (executor != null) {
+            builder.executor(executor);
+        } else if (config.isUseVirtualThreads()) {
+            builder.executor(config.getAsyncExecutor());
+        }
+
+        if (config.isTraceMessage()) {
+            config.getTraceStream().println("WSC: Creating a new HttpClient pool. Proxy = " + proxy +
+                    " maxConnections = " + maxConnections + " idleTimeout = " + idleTimeout + " http2 = " + http2);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Sets how long the JDK keeps idle HTTP/1.1 connections open, and how many it keeps. These are
+     * the jdk.httpclient.keepalive.timeout and jdk.httpclient.connectionPoolSize system properties,
+     * which are process wide: they change every HttpClient in the JVM, not just the ones of this
+     * pool, and are only read when the first HttpClient of the JVM is created.
+     *
+     * @param idleTimeout timeout in ms, rounded down to whole seconds (at least one)
+     * @param poolSize maximum number of idle connections, or 0 for no limit
+     */
+    public static void setJvmConnectionCache(long idleTimeout, int poolSize) {
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout must be positive: " + idleTimeout);
+        }
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("poolSize must not be negative: " + poolSize);
+        }
+        System.setProperty(KEEPALIVE_TIMEOUT_PROPERTY, String.valueOf(Math.max(1, idleTimeout / 1000)));
+        System.setProperty(POOL_SIZE_PROPERTY, String.valueOf(poolSize));
+    }
+
+    /**
+     * Sends the request, waiting for a free slot if maxConnections requests are already in flight.
+     * The slot is given back when the response body is closed or fully read.
+     */
+    HttpResponse<InputStream> send(ConnectorConfig config, HttpRequest request) throws IOException {
+        // the slot is taken first, so the client can not be evicted while the request is sent
+        acquire(config);
+
+        boolean sent = false;
+        try {
+            HttpClient c = getClient(config);
+            HttpResponse<InputStream> response = c.send(request, info -> HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofInputStream(), PermitInputStream::new));
+            sent = true;
+            return response;
+        } catch (HttpTimeoutException e) {
+            throw (SocketTimeoutException) new SocketTimeoutException(e.getMessage()).initCause(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response from " + request.uri());
+        } finally {
+            if (!sent) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Sends the request without blocking the caller. If maxConnections requests are already in flight the
+     * request is queued and sent once a slot is given back. The future completes when the response
+     * headers have arrived; the body is streamed and the slot is given back when it is closed or fully read.
+     */
+    CompletableFuture<HttpResponse<InputStream>> sendAsync(final ConnectorConfig config, final HttpRequest request) {
+        final CompletableFuture<HttpResponse<InputStream>> result = new CompletableFuture<HttpResponse<InputStream>>();
+
+        limiter().execute(() -> {
+            CompletableFuture<HttpResponse<InputStream>> future;
+            try {
+                future = getClient(config).sendAsync(request, info -> HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofInputStream(), PermitInputStream::new));
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+
+            future.whenComplete((response, error) -> {
+                if (error == null) {
+                    result.complete(response);
+                    return;
+                }
+                release();
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof HttpTimeoutException) {
+                    cause = new SocketTimeoutException(cause.getMessage()).initCause(cause);
+                }
+                result.completeExceptionally(cause);
+            });
+        });
+        return result;
+    }
+
+    private void acquire(ConnectorConfig config) throws IOException {
+        limiter();
+        try {
+            if (config.getConnectionTimeout() != 0) {
+                if (!permits.tryAcquire(config.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+                    throw new SocketTimeoutException("Timed out waiting for a pooled connection. maxConnections=" +
+                            maxConnections + " ConnectionTimeout=" + config.getConnectionTimeout());
+                }
+            } else {
+                permits.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a pooled connection");
+        }
+    }
+
+    /**
+     * gives back a slot, starting the next queued async request if there is one
+     */
+    private void release() {
+        lastUsed = System.nanoTime();
+        asyncPermits.release();
+        scheduleEviction(TimeUnit.MILLISECONDS.toNanos(idleTimeout));
+    }
+
+    private void scheduleEviction(long delay) {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            Evictor.INSTANCE.schedule(this::evictIfIdle, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * closes the client once no request has been in flight for idleTimeout. A request that is still
+     * running schedules the next check when it gives its slot back.
+     */
+    private void evictIfIdle() {
+        evictionScheduled.set(false);
+        if (client == null) {
+            return;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(idleTimeout) - (System.nanoTime() - lastUsed);
+        if (remaining > 0) {
+            scheduleEviction(remaining);
+            return;
+        }
+        // holding every slot keeps new requests off the client while it is closed
+        if (!permits.tryAcquire(maxConnections)) {
+            return;
+        }
+        try {
+            close();
+        } finally {
+            for (int i = 0; i < maxConnections; i++) {
+                asyncPermits.release();
+            }
+        }
+    }
+
+    /**
+     * @return number of requests that can be started right now without waiting
+     */
+    public int getAvailableConnections() {
+        Semaphore p = permits;
+        return p == null ? maxConnections : p.availablePermits();
+    }
+
+    /**
+     * closes the HttpClient. The pool may still be used afterwards, the next request creates a new
+     * client; responses that are still open keep their slot until they are closed.
+     */
+    @Override
+    public void close() {
+        HttpClient c;
+        synchronized (this) {
+            c = client;
+            client = null;
+        }
+        // HttpClient is AutoCloseable from Java 21, before that idle connections are dropped when it is collected
+        if (c instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) c).close();
+            } catch (Exception e) {
+                Verbose.log("Failed to close HttpClient " + e);
+            }
+        }
+    }
+
+    private static class Evictor {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "wsc-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        static {
+            INSTANCE.setKeepAliveTime(60, TimeUnit.SECONDS);
+            INSTANCE.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    private void checkNotStarted() {
+        if (asyncPermits != null) {
+            throw new IllegalStateException("Connection pool is already in use");
+        }
+    }
+
+    private class PermitInputStream extends FilterInputStream {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                release();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                release();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                HttpClientConnectionPool.this.release();
+            }
+        }
+    }
+}
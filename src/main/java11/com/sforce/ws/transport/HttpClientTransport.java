@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.tools.VersionInfo;
+import com.sforce.ws.util.Base64;
+
+/**
+ * This class is an implementation of Transport using java.net.http.HttpClient.
+ * <p>
+ * Unlike JdkHttpTransport every instance created from the same ConnectorConfig
+ * shares one HttpClientConnectionPool, so connections are kept alive and
+ * reused (or multiplexed over HTTP/2) across SOAP and bulk calls. If no pool is
+ * set on the config a default one is created and attached to it. Requires Java 11.
+ * <pre>
+ * config.setConnectionPool(new HttpClientConnectionPool(50, 60000));
+ * config.setTransport(HttpClientTransport.class);
+ * </pre>
+ * The request body is buffered and sent when {@link #getContent()} is called.
+ * {@link #getContentAsync()} waits for the response headers without blocking a thread; the
+ * body is then streamed like that of {@link #getContent()}.
+ */
+public class HttpClientTransport implements AsyncTransport {
+    private ConnectorConfig config;
+    private URL url;
+    private HttpRequest.Builder request;
+    private ByteArrayOutputStream output;
+    private boolean successful;
+
+    public HttpClientTransport() {
+    }
+
+    public HttpClientTransport(ConnectorConfig config) {
+        setConfig(config);
+    }
+
+    @Override
+    public void setConfig(ConnectorConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public OutputStream connect(String uri, HashMap<String, String> httpHeaders) throws IOException {
+        return connect(uri, httpHeaders, true);
+    }
+
+    @Override
+    public OutputStream connect(String uri, HashMap<String, String> httpHeaders, boolean enableCompression)
+            throws IOException {
+        return wrapOutput(connectRaw(uri, httpHeaders, enableCompression), enableCompression);
+    }
+
+    @Override
+    public OutputStream connect(String uri, String soapAction) throws IOException {
+        if (soapAction == null) {
+            soapAction = "";
+        }
+
+        HashMap<String, String> header = new HashMap<String, String>();
+
+        header.put("SOAPAction", "\"" + soapAction + "\"");
+        header.put("Content-Type", "text/xml; charset=UTF-8");
+        header.put("Accept", "text/xml");
+
+        return connect(uri, header, true);
+    }
+
+    /**
+     * @return the pool used by this transport, attaching a default one to the config if it has none
+     */
+    public HttpClientConnectionPool getConnectionPool() {
+        synchronized (config) {
+            ConnectionPool pool = config.getConnectionPool();
+            if (pool == null) {
+                pool = new HttpClientConnectionPool();
+                config.setConnectionPool(pool);
+            }
+            if (!(pool instanceof HttpClientConnectionPool)) {
+                throw new IllegalStateException("HttpClientTransport requires a HttpClientConnectionPool, found " +
+                        pool.getClass().getName());
+            }
+            return (HttpClientConnectionPool) pool;
+        }
+    }
+
+    private OutputStream wrapOutput(OutputStream output, boolean enableCompression) throws IOException {
+        if (config.getMaxRequestSize() > 0) {
+            output = new LimitingOutputStream(config.getMaxRequestSize(), output);
+        }
+
+        // when we are writing a zip file we don't bother with compression
+        if (enableCompression && config.isCompression()) {
+            output = new GZIPOutputStream(output);
+        }
+
+        if (config.isTraceMessage()) {
+            output = config.teeOutputStream(output);
+        }
+
+        if (config.hasMessageHandlers()) {
+            output = new MessageHandlerOutputStream(config, url, output);
+        }
+
+        return output;
+    }
+
+    private OutputStream connectRaw(String uri, HashMap<String, String> httpHeaders, boolean enableCompression)
+            throws IOException {
+        url = new URL(uri);
+
+        try {
+            request = createRequest(config, url, httpHeaders, enableCompression);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid endpoint " + uri, e);
+        }
+
+        output = new ByteArrayOutputStream();
+        return output;
+    }
+
+    public static HttpRequest.Builder createRequest(ConnectorConfig config, URL url,
+            HashMap<String, String> httpHeaders, boolean enableCompression) throws URISyntaxException {
+
+        if (config.isTraceMessage()) {
+            config.getTraceStream().println("WSC: Sending request to " + url + " using pooled HttpClient. Proxy = " +
+                    config.getProxy() + " username " + config.getProxyUsername());
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI());
+        if (httpHeaders == null || (httpHeaders.get("User-Agent") == null && httpHeaders.get("user-agent") == null)) {
+            builder.header("User-Agent", VersionInfo.info());
+        }
+
+        /*
+         * Add all the client specific headers here
+         */
+        if (config.getHeaders() != null) {
+            for (Map.Entry<String, String> ent : config.getHeaders().entrySet()) {
+                builder.setHeader(ent.getKey(), ent.getValue());
+            }
+        }
+
+        if (enableCompression && config.isCompression()) {
+            builder.header("Content-Encoding", "gzip");
+            builder.header("Accept-Encoding", "gzip");
+        }
+
+        if (config.getProxyUsername() != null) {
+            String token = config.getProxyUsername() + ":" + config.getProxyPassword();
+            String auth = "Basic " + new String(Base64.encode(token.getBytes()));
+            builder.header("Proxy-Authorization", auth);
+            builder.header("Https-Proxy-Authorization", auth);
+        }
+
+        if (httpHeaders != null) {
+            for (Map.Entry<String, String> entry : httpHeaders.entrySet()) {
+                builder.header(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (config.getReadTimeout() != 0) {
+            builder.timeout(Duration.ofMillis(config.getReadTimeout()));
+        }
+
+        return builder;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        HttpResponse<InputStream> response = getConnectionPool().send(config, buildRequest());
+        return wrapInput(response.body(), response);
+    }
+
+    @Override
+    public CompletableFuture<InputStream> getContentAsync() {
+        try {
+            return getConnectionPool().sendAsync(config, buildRequest()).thenApply(response -> {
+                try {
+                    return wrapInput(response.body(), response);
+                } catch (IOException e) {
+                    closeQuietly(response.body());
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (IOException e) {
+            CompletableFuture<InputStream> future = new CompletableFuture<InputStream>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // the body is abandoned anyway
+        }
+    }
+
+    private HttpRequest buildRequest() throws IOException {
+        if (request == null) {
+            throw new IOException("connect() must be called before getContent()");
+        }
+
+        HttpRequest httpRequest = request.POST(HttpRequest.BodyPublishers.ofByteArray(output.toByteArray())).build();
+        request = null;
+        output = null;
+        return httpRequest;
+    }
+
+    private InputStream wrapInput(InputStream in, HttpResponse<?> response) throws IOException {
+        successful = response.statusCode() < 400;
+
+        String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+
+        if (config.getMaxResponseSize() > 0) {
+            in = new LimitingInputStream(config.getMaxResponseSize(), in);
+        }
+
+        if ("gzip".equals(encoding)) {
+            in = new GZIPInputStream(in);
+        }
+
+        if (config.isTraceMessage()) {
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                config.getTraceStream().print(header.getKey());
+                config.getTraceStream().print("=");
+                config.getTraceStream().println(header.getValue());
+            }
+        }
+
+        if (config.hasMessageHandlers() || config.isTraceMessage()) {
+            in = MessageHandlerInputStream.wrap(config, url, in, response.headers().map());
+        }
+
+        return in;
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return successful;
+    }
+}
@@ -94,6 +94,49 @@ public class CSVReaderTest extends TestCase {
                 "a,b,c,d\nsdf,\"sfd\" , sadfddf, \"sdsdfdf\"");
     }
 
+    public void testLineBreaksAndEmptyFields() throws IOException {
+        doTest("a,,\"\"\r\n\"x\r\ny\",b\rc,d", new String[][]{{"a", null, null}, {"x\ny", "b"}, {"c", "d"}});
+    }
+
+    public void testMultipleSeparators() throws IOException {
+        CSVReader reader = new CSVReader(new StringReader("a;b\tc,d"), new char[]{'\t', ';'});
+        assertEquals(Arrays.asList("a", "b", "c,d"), reader.nextRecord());
+        assertNull(reader.nextRecord());
+    }
+
+    public void testFieldsSpanningBuffer() throws IOException {
+        String value = buildCsvWithXCharacters(20000);
+        doTest(value + ",\"" + value + "\"\"\"\n", new String[][]{{value, value + "\""}});
+    }
+
+    public void testCellSizeLimit() throws IOException {
+        String csv = "\"" + buildCsvWithXCharacters(131073) + "\"";
+        doFailingTest(new String[][]{{csv}}, "Exceeded max field size: 131073", csv);
+    }
+
+    public void testRecordReuse() throws IOException {
+        CSVReader reader = new CSVReader(new StringReader("id,name\n001,\"a,b\"\n\n002,\n"));
+        CSVReader.Record record = new CSVReader.Record();
+
+        assertTrue(reader.nextRecord(record));
+        assertEquals(2, record.size());
+        assertEquals("id", record.getString(0));
+
+        assertTrue(reader.nextRecord(record));
+        CharSequence name = record.get(1);
+        assertEquals(3, name.length());
+        assertEquals(',', name.charAt(1));
+        assertEquals("a,b", name.toString());
+        assertEquals("b", name.subSequence(2, 3));
+
+        assertTrue(reader.nextRecord(record));
+        assertEquals("002", record.get(0).toString());
+        assertNull(record.get(1));
+        assertEquals(Arrays.asList("002", null), record.toList());
+
+        assertFalse(reader.nextRecord(record));
+    }
+
     private void doFailingTest(String[][] result, String message, String csv) {
         try {
             doTest(csv, result);
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvFileSplitterTest {
+
+    private File file;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("split", ".csv");
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void testQuotedLineBreaksAcrossChunks() throws Exception {
+        String header = "Name,\"Description\"\n";
+        List<String> records = Arrays.asList("a,\"one\ntwo\"\n", "b,\"say \"\"hi\"\"\n\"\n", "c,plain\r\n",
+                "d,\"x\ny\nz\"");
+        String rows = String.join("", records);
+        Assert.assertEquals(Arrays.asList(header + records.get(0) + records.get(1), header + records.get(2) + records.get(3)),
+                split(header + rows, 2, 1000, 0));
+
+        // every chunk boundary falls somewhere different in a record; batches never span chunks
+        for (int chunkSize = 1; chunkSize < rows.length(); chunkSize++) {
+            StringBuilder joined = new StringBuilder();
+            for (String batch : split(header + rows, 2, 1000, chunkSize)) {
+                Assert.assertTrue(batch.startsWith(header));
+                String body = batch.substring(header.length());
+                Assert.assertTrue("chunk size " + chunkSize + ": " + body, isWholeRecords(body, records));
+                joined.append(body);
+            }
+            Assert.assertEquals("chunk size " + chunkSize, rows, joined.toString());
+        }
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        List<String> batches = split("h\n111\n222\n333\n", 100, 8, 0);
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals("h\n111\n", batches.get(0));
+        Assert.assertEquals("h\n333\n", batches.get(2));
+
+        try {
+            split("h\n111\n2222222\n", 100, 8, 0);
+            Assert.fail("record larger than a batch");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("byte 6"));
+        }
+    }
+
+    @Test
+    public void testHeaderOnly() throws Exception {
+        Assert.assertTrue(split("a,b\n", 10, 100, 0).isEmpty());
+        Assert.assertTrue(split("a,b", 10, 100, 0).isEmpty());
+    }
+
+    private static boolean isWholeRecords(String body, List<String> records) {
+        for (int i = 0; i < records.size(); i++) {
+            if (body.equals(records.get(i)) || (i + 1 < records.size() && body.equals(records.get(i) + records.get(i + 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> split(String content, int maxRecords, long maxBytes, long chunkSize) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            CsvFileSplitter splitter = new CsvFileSplitter(channel, maxRecords, maxBytes, chunkSize);
+            String header = new String(splitter.getHeader(), StandardCharsets.UTF_8);
+            List<String> result = new ArrayList<String>();
+            for (CompletableFuture<List<CsvFileSplitter.Batch>> chunk : splitter.split(executor)) {
+                for (CsvFileSplitter.Batch batch : chunk.join()) {
+                    byte[] bytes = new byte[(int) (batch.end - batch.start)];
+                    splitter.map(batch.start, bytes.length).get(bytes);
+                    result.add(header + new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sforce.ws.ConnectorConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JobMonitorTest {
+
+    @Test
+    public void testPollsBatchListOnlyWhenCountsChange() throws Exception {
+        TestConnection connection = new TestConnection();
+        List<String> transitions = new ArrayList<String>();
+        JobMonitor monitor = new JobMonitor(connection, "job",
+                (batch, previous) -> transitions.add(batch.getId() + ":" + previous + "->" + batch.getState()));
+        monitor.setMinInterval(10);
+        monitor.setMaxInterval(1000);
+
+        Assert.assertTrue(monitor.poll() >= 10);
+        Assert.assertEquals(1, connection.listCalls);
+        Assert.assertEquals("[b1:null->Queued, b2:null->InProgress]", transitions.toString());
+
+        // unchanged counts only cost the job status request
+        monitor.poll();
+        Assert.assertEquals(1, connection.listCalls);
+
+        connection.b1 = BatchStateEnum.Completed;
+        long interval = monitor.poll();
+        Assert.assertTrue(interval >= 10 && interval <= 1000);
+        Assert.assertEquals(2, connection.listCalls);
+        Assert.assertEquals("b1:Queued->Completed", transitions.get(2));
+
+        connection.b2 = BatchStateEnum.Failed;
+        Assert.assertEquals(-1, monitor.poll());
+        Assert.assertEquals("b2:InProgress->Failed", transitions.get(3));
+        Assert.assertEquals(4, transitions.size());
+        Assert.assertEquals(JobStateEnum.Closed, monitor.getCompletion().get().getState());
+    }
+
+    @Test
+    public void testSettingsAreNotLockedDuringPoll() throws Exception {
+        TestConnection connection = new TestConnection();
+        final JobMonitor[] monitor = new JobMonitor[1];
+        final long[] seen = new long[1];
+        monitor[0] = new JobMonitor(connection, "job", (batch, previous) -> {
+            // another thread reading the interval while the poll is notifying
+            Thread reader = new Thread(() -> seen[0] = monitor[0].getPollInterval());
+            reader.start();
+            try {
+                reader.join(5000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            Assert.assertFalse("getPollInterval() waited for the poll", reader.isAlive());
+        });
+        monitor[0].poll();
+        Assert.assertEquals(JobMonitor.DEFAULT_MIN_INTERVAL, seen[0]);
+    }
+
+    @Test
+    public void testMonitorJobCompletes() throws Exception {
+        TestConnection connection = new TestConnection();
+        connection.b1 = BatchStateEnum.Completed;
+        connection.b2 = BatchStateEnum.Completed;
+        List<BatchInfo> finished = new ArrayList<BatchInfo>();
+
+        JobMonitor monitor = connection.monitorJob("job", (batch, previous) -> finished.add(batch));
+        JobInfo job = monitor.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2, job.getNumberBatchesCompleted());
+        Assert.assertEquals(2, finished.size());
+    }
+
+    private static class TestConnection extends BulkConnection {
+        volatile BatchStateEnum b1 = BatchStateEnum.Queued;
+        volatile BatchStateEnum b2 = BatchStateEnum.InProgress;
+        int listCalls;
+
+        TestConnection() throws AsyncApiException {
+            super(config());
+        }
+
+        private static ConnectorConfig config() {
+            ConnectorConfig config = new ConnectorConfig();
+            config.setRestEndpoint("http://localhost/services/async/65.0");
+            config.setSessionId("session");
+            return config;
+        }
+
+        @Override
+        public JobInfo getJobStatus(String jobId) {
+            JobInfo job = new JobInfo();
+            job.setId(jobId);
+            job.setState(JobStateEnum.Closed);
+            job.setNumberBatchesTotal(2);
+            job.setNumberBatchesQueued(count(BatchStateEnum.Queued));
+            job.setNumberBatchesInProgress(count(BatchStateEnum.InProgress));
+            job.setNumberBatchesCompleted(count(BatchStateEnum.Completed));
+            job.setNumberBatchesFailed(count(BatchStateEnum.Failed));
+            return job;
+        }
+
+        @Override
+        public BatchInfoList getBatchInfoList(String jobId) {
+            listCalls++;
+            BatchInfoList list = new BatchInfoList();
+            list.setBatchInfo(new BatchInfo[] {batch("b1", b1), batch("b2", b2)});
+            return list;
+        }
+
+        private int count(BatchStateEnum state) {
+            return (b1 == state ? 1 : 0) + (b2 == state ? 1 : 0);
+        }
+
+        private static BatchInfo batch(String id, BatchStateEnum state) {
+            BatchInfo batch = new BatchInfo();
+            batch.setId(id);
+            batch.setState(state);
+            return batch;
+        }
+    }
+}
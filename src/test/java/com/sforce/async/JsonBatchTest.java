@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.transport.Transport;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonBatchTest {
+
+    @Test
+    public void testWriteRows() throws Exception {
+        TestTransport transport = new TestTransport();
+        JsonBatchRequest request = new JsonBatchRequest(transport, transport.request);
+        RecordSchema schema = new RecordSchema("Name", "Owner.Email");
+        request.addRow(schema, "Acme \"1\"", "boss@acme.com");
+        request.addRow(schema, "Plain", null);
+        RecordSchema.Row row = schema.newRow();
+        request.addRow(row.set(0, "Reused"));
+        request.addRow(row.clear().setNull(0).setNull(1));
+        SObject object = new SObject();
+        object.setField("Name", "Old");
+        request.addSObject(object);
+
+        BatchInfo info = request.completeRequest();
+        Assert.assertEquals("751xx000000007vAAA", info.getId());
+        Assert.assertEquals("[{\"Name\":\"Acme \\\"1\\\"\",\"Owner\":{\"Email\":\"boss@acme.com\"}},"
+                + "{\"Name\":\"Plain\"},{\"Name\":\"Reused\"},{\"Name\":null,\"Owner\":null},{\"Name\":\"Old\"}]",
+                new String(transport.request.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadResults() throws IOException {
+        JsonRecordReader reader = reader("[{\"success\":true,\"created\":true,\"id\":\"001A\",\"errors\":[]},"
+                + "{\"success\":false,\"created\":false,\"id\":null,\"errors\":[{\"fields\":[\"Name\"],"
+                + "\"message\":\"locked\",\"statusCode\":\"UNABLE_TO_LOCK_ROW\"}]}]");
+
+        JsonRecordReader.Record record = reader.next();
+        Assert.assertTrue(record.getBoolean("success"));
+        Assert.assertEquals("001A", record.get("id").toString());
+        Assert.assertEquals(3, record.size());
+
+        Assert.assertSame(record, reader.next());
+        Assert.assertFalse(record.getBoolean("success"));
+        Assert.assertNull(record.get("id"));
+        Assert.assertEquals("UNABLE_TO_LOCK_ROW", record.getString("errors.0.statusCode"));
+        Assert.assertEquals("Name", record.getString("errors.0.fields.0"));
+        Assert.assertEquals(2, reader.getRecordNumber());
+        Assert.assertNull(reader.next());
+    }
+
+    @Test
+    public void testReadQueryResults() throws IOException {
+        JsonRecordReader reader = reader("[{\"attributes\":{\"type\":\"Account\",\"url\":\"/a/1\"},"
+                + "\"Id\":\"001A\",\"NumberOfEmployees\":12,\"Owner\":{\"attributes\":{\"type\":\"User\"},"
+                + "\"Name\":\"Ann\"}},{\"attributes\":{\"type\":\"Account\"},\"Id\":\"001B\","
+                + "\"NumberOfEmployees\":null,\"Owner\":{\"Name\":\"Bob\"}}]");
+
+        JsonRecordReader.Record first = reader.next();
+        Assert.assertEquals("{Id=001A, NumberOfEmployees=12, Owner.Name=Ann}", first.toString());
+        String ownerName = first.getName(2);
+
+        JsonRecordReader.Record second = reader.next();
+        Assert.assertEquals("{Id=001B, NumberOfEmployees=null, Owner.Name=Bob}", second.toString());
+        // flattened names are built once
+        Assert.assertSame(ownerName, second.getName(2));
+        Assert.assertNull(reader.next());
+    }
+
+    private static JsonRecordReader reader(String json) throws IOException {
+        return new JsonRecordReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class TestTransport implements Transport {
+        final ByteArrayOutputStream request = new ByteArrayOutputStream();
+
+        @Override
+        public void setConfig(ConnectorConfig config) {
+        }
+
+        @Override
+        public OutputStream connect(String url, String soapAction) {
+            return request;
+        }
+
+        @Override
+        public OutputStream connect(String endpoint, HashMap<String, String> headers) {
+            return request;
+        }
+
+        @Override
+        public OutputStream connect(String endpoint, HashMap<String, String> httpHeaders, boolean b) {
+            return request;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream("{\"id\":\"751xx000000007vAAA\",\"state\":\"Queued\"}"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return true;
+        }
+    }
+}
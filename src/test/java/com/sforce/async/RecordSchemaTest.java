@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.async;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.sforce.ws.wsdl.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordSchemaTest {
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<sObjects xmlns=\"http://www.force.com/2009/06/asyncapi/dataload\" "
+            + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">";
+
+    @Test
+    public void testWriteArrays() throws IOException {
+        RecordSchema schema = new RecordSchema("Name", "Description", "ReportsTo.Email");
+        String xml = write(out -> {
+            out.writeRow(schema, "Acme & Co", "<b>", "boss@acme.com");
+            out.writeRow(schema, "Plain", null, null);
+        });
+        Assert.assertEquals(HEADER
+                + "<sObject><Name>Acme &amp; Co</Name><Description>&lt;b></Description>"
+                + "<ReportsTo><sObject><Email>boss@acme.com</Email></sObject></ReportsTo></sObject>"
+                + "<sObject><Name>Plain</Name></sObject></sObjects>", xml);
+    }
+
+    @Test
+    public void testReuseRow() throws IOException {
+        RecordSchema schema = new RecordSchema("Name", "Phone", "Owner.Email");
+        RecordSchema.Row row = schema.newRow();
+        String xml = write(out -> {
+            out.writeRow(row.set(0, "first").set("Phone", new StringBuilder("555")));
+            out.writeRow(row.clear().set(0, "second").setNull(1).setNull(2));
+        });
+        Assert.assertEquals(HEADER
+                + "<sObject><Name>first</Name><Phone>555</Phone></sObject>"
+                + "<sObject><Name>second</Name><Phone xsi:nil=\"true\"/><Owner xsi:nil=\"true\"/></sObject>"
+                + "</sObjects>", xml);
+    }
+
+    @Test
+    public void testInvalidSchema() {
+        try {
+            new RecordSchema("Name", "Owner.");
+            Assert.fail("empty reference field");
+        } catch (IllegalArgumentException expected) {
+        }
+        Assert.assertEquals(-1, new RecordSchema("Name").indexOf("Phone"));
+    }
+
+    private interface Rows {
+        void write(AsyncXmlOutputStream out) throws IOException;
+    }
+
+    private static String write(Rows rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncXmlOutputStream out = new AsyncXmlOutputStream(bytes, false);
+        out.setPrefix("xsi", Constants.SCHEMA_INSTANCE_NS);
+        out.writeStartTag(BulkConnection.NAMESPACE, "sObjects");
+        rows.write(out);
+        out.writeEndTag(BulkConnection.NAMESPACE, "sObjects");
+        out.endDocument();
+        out.close();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.bulk;
+
+import com.sforce.async.*;
+import com.sforce.ws.ConnectorConfig;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RetryingResultStreamTest --
+ */
+public class RetryingResultStreamTest extends TestCase {
+
+    private static final String HEADER = "\"Id\",\"Success\",\"Created\",\"Error\"\n";
+    private static final String SUCCESS = "\"001\",\"true\",\"false\",\"\"\n";
+    private static final String LOCKED = "\"\",\"false\",\"false\",\"UNABLE_TO_LOCK_ROW:unable to obtain exclusive " +
+            "access to this record:--\"\n";
+    private static final String DUPLICATE = "\"\",\"false\",\"false\",\"DUPLICATE_VALUE:duplicate value found:--\"\n";
+
+    private final List<Path> files = new ArrayList<Path>();
+    private final List<long[]> resubmitted = new ArrayList<long[]>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testRetriableRowsAreSentAgain() throws Exception {
+        List<UpdateResult> results = readAll(new TestHandler(3));
+
+        assertEquals(2, resubmitted.size());
+        assertEquals(Arrays.toString(new long[] {20, 40}), Arrays.toString(resubmitted.get(0)));
+        assertEquals(Arrays.toString(new long[] {40}), Arrays.toString(resubmitted.get(1)));
+
+        assertEquals(4, results.size());
+        assertResult(results.get(0), 10, true, null);
+        assertResult(results.get(1), 30, false, StatusCode.DUPLICATE_VALUE);
+        assertResult(results.get(2), 20, true, null);
+        assertResult(results.get(3), 40, true, null);
+        assertEquals("r2", results.get(3).getBatchId());
+    }
+
+    public void testGivesUpAfterLastRound() throws Exception {
+        List<UpdateResult> results = readAll(new TestHandler(1));
+
+        assertEquals(1, resubmitted.size());
+        assertEquals(4, results.size());
+        assertResult(results.get(2), 20, true, null);
+        assertResult(results.get(3), 40, false, StatusCode.UNABLE_TO_LOCK_ROW);
+    }
+
+    private List<UpdateResult> readAll(final TestHandler handler) throws Exception {
+        handler.getConfig().setRestEndpoint("http://localhost/services/async/65.0");
+        handler.getConfig().setSessionId("session");
+        JobInfo job = new JobInfo();
+        job.setId("job");
+
+        // the first job: b1 holds rows 10, 20, 30 and b2 row 40
+        Map<String, String> batches = new HashMap<String, String>();
+        batches.put("b1", HEADER + SUCCESS + LOCKED + DUPLICATE);
+        batches.put("b2", HEADER + LOCKED);
+        RowIndex index = newIndex();
+        add(index, "b1", 10, 20, 30);
+        add(index, "b2", 40);
+        UpdateResultStream first = new UpdateResultStream(handler, new TestConnection(handler.getConfig(), batches),
+                job, index);
+
+        RetryingResultStream stream = new RetryingResultStream(handler, first, job, new String[] {"Name"},
+                new RowSource() {
+                    @Override
+                    public String[] read(long sourceOffset) {
+                        return new String[] {"row " + sourceOffset};
+                    }
+                }) {
+            @Override
+            UpdateResultStream resubmit(long[] rows) throws StreamException {
+                resubmitted.add(rows);
+                // row 40 stays locked in the first retry
+                String batchId = "r" + resubmitted.size();
+                StringBuilder csv = new StringBuilder(HEADER);
+                for (long row : rows) {
+                    csv.append(row == 40 && resubmitted.size() == 1 ? LOCKED : SUCCESS);
+                }
+                Map<String, String> batches = new HashMap<String, String>();
+                batches.put(batchId, csv.toString());
+                try {
+                    RowIndex index = newIndex();
+                    add(index, batchId, rows);
+                    return new UpdateResultStream(handler, new TestConnection(handler.getConfig(), batches),
+                            new JobInfo(), index);
+                } catch (Exception e) {
+                    throw new StreamException("Failed to set up retry", e);
+                }
+            }
+        };
+
+        List<UpdateResult> results = new ArrayList<UpdateResult>();
+        UpdateResult result;
+        while ((result = stream.next()) != null) {
+            results.add(result);
+        }
+        assertNull(stream.next());
+        assertEquals(resubmitted.size(), stream.getRound());
+        return results;
+    }
+
+    private RowIndex newIndex() throws Exception {
+        Path file = Files.createTempFile("rows", ".idx");
+        files.add(file);
+        return RowIndex.create(file);
+    }
+
+    private static void add(RowIndex index, String batchId, long... offsets) throws Exception {
+        for (long offset : offsets) {
+            index.add(offset);
+        }
+        index.setBatchId(index.endBatch(), batchId);
+    }
+
+    private static void assertResult(UpdateResult result, long sourceOffset, boolean success, StatusCode code) {
+        assertEquals(sourceOffset, result.getSourceOffset());
+        assertEquals(success, result.isSuccess());
+        assertEquals(code, result.getStatusCode());
+    }
+
+    private static class TestHandler extends StreamHandler {
+        private final int maxRetryRounds;
+
+        TestHandler(int maxRetryRounds) {
+            this.maxRetryRounds = maxRetryRounds;
+        }
+
+        @Override
+        public PrintStream getLogStream() {
+            return new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            });
+        }
+
+        @Override
+        public int getMaxRetryRounds() {
+            return maxRetryRounds;
+        }
+
+        @Override
+        public long getRetryWaitTime(int round) {
+            return 0;
+        }
+    }
+
+    private static class TestConnection extends BulkConnection {
+        private final Map<String, String> batches;
+
+        TestConnection(ConnectorConfig config, Map<String, String> batches) throws AsyncApiException {
+            super(config);
+            this.batches = batches;
+        }
+
+        @Override
+        public BatchInfoList getBatchInfoList(String jobId) {
+            List<String> ids = new ArrayList<String>(batches.keySet());
+            Collections.sort(ids);
+            BatchInfo[] infos = new BatchInfo[ids.size()];
+            for (int i = 0; i < infos.length; i++) {
+                infos[i] = getBatchInfo(jobId, ids.get(i));
+            }
+            BatchInfoList list = new BatchInfoList();
+            list.setBatchInfo(infos);
+            return list;
+        }
+
+        @Override
+        public BatchInfo getBatchInfo(String jobId, String batchId) {
+            BatchInfo batch = new BatchInfo();
+            batch.setId(batchId);
+            batch.setState(BatchStateEnum.Completed);
+            return batch;
+        }
+
+        @Override
+        public InputStream getBatchResultStream(String jobId, String batchId) {
+            return new ByteArrayInputStream(batches.get(batchId).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.bulk;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RowIndexTest --
+ */
+public class RowIndexTest extends TestCase {
+
+    public void testOffsetsByBatchAndRow() throws Exception {
+        Path file = Files.createTempFile("rows", ".idx");
+        try (RowIndex index = RowIndex.create(file)) {
+            // more rows than the write buffer holds, across batches finishing out of order
+            for (long i = 0; i < 10000; i++) {
+                index.add(i * 3);
+            }
+            int b1 = index.endBatch();
+            for (long i = 10000; i < 10005; i++) {
+                index.add(i * 3);
+            }
+            int b2 = index.endBatch();
+            index.setBatchId(b2, "b2");
+            index.setBatchId(b1, "b1");
+
+            assertEquals(10000, index.getRowCount("b1"));
+            assertEquals(5, index.getRowCount("b2"));
+            assertEquals(-1, index.getRowCount("b3"));
+            assertEquals(0, index.getSourceOffset("b1", 0));
+            assertEquals(9999 * 3, index.getSourceOffset("b1", 9999));
+            assertEquals(10002 * 3, index.getSourceOffset("b2", 2));
+            assertEquals(-1, index.getSourceOffset("b2", 5));
+            assertEquals(-1, index.getSourceOffset("b3", 0));
+            long[] offsets = index.getSourceOffsets("b2");
+            assertEquals(5, offsets.length);
+            assertEquals(10004 * 3, offsets[4]);
+            assertNull(index.getSourceOffsets("b3"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testCsvRowsReadAgainByOffset() throws Exception {
+        Path file = Files.createTempFile("rows", ".csv");
+        Files.write(file, ("Name,Description\r\n" +
+                "Caf\u00e9,plain\r\n" +
+                "\"Two\nLines\",\"say \"\"hi\"\"\"\r\n" +
+                "Last,no line break").getBytes(StandardCharsets.UTF_8));
+        try (CsvRowSource source = new CsvRowSource(file)) {
+            assertEquals(Arrays.asList("Name", "Description"), Arrays.asList(source.getHeader()));
+
+            List<Long> offsets = new ArrayList<Long>();
+            List<List<String>> rows = new ArrayList<List<String>>();
+            String[] row;
+            while ((row = source.next()) != null) {
+                offsets.add(source.getRowOffset());
+                rows.add(Arrays.asList(row));
+            }
+            assertEquals(3, rows.size());
+            assertEquals(Arrays.asList("Caf\u00e9", "plain"), rows.get(0));
+            assertEquals(Arrays.asList("Two\nLines", "say \"hi\""), rows.get(1));
+            assertEquals(Arrays.asList("Last", "no line break"), rows.get(2));
+            assertEquals(18L, (long) offsets.get(0));
+
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                assertEquals(rows.get(i), Arrays.asList(source.read(offsets.get(i))));
+            }
+            assertNull(source.read(Files.size(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testBlankLinesDoNotEndTheRows() throws Exception {
+        Path file = Files.createTempFile("rows", ".csv");
+        Files.write(file, "Name,Phone\nA,1\n\nB,2\r\n\r\nC,3\n\n".getBytes(StandardCharsets.UTF_8));
+        try (CsvRowSource source = new CsvRowSource(file)) {
+            List<Long> offsets = new ArrayList<Long>();
+            List<List<String>> rows = new ArrayList<List<String>>();
+            String[] row;
+            while ((row = source.next()) != null) {
+                offsets.add(source.getRowOffset());
+                rows.add(Arrays.asList(row));
+            }
+            assertEquals(Arrays.asList(Arrays.asList("A", "1"), Arrays.asList("B", "2"), Arrays.asList("C", "3")),
+                    rows);
+            assertEquals(Arrays.asList(11L, 16L, 23L), offsets);
+            assertEquals(Arrays.asList("B", "2"), Arrays.asList(source.read(16)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.bulk;
+
+import com.sforce.async.*;
+import com.sforce.ws.ConnectorConfig;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * UpdateResultStreamTest --
+ */
+public class UpdateResultStreamTest extends TestCase {
+
+    public void testSerialResultsFollowBatchOrder() throws Exception {
+        List<UpdateResult> results = readAll(new TestHandler(0));
+
+        assertEquals(3, results.size());
+        assertResult(results.get(0), "b1", 0, "001A", true, null);
+        assertResult(results.get(1), "b1", 1, null, false, "DUPLICATE_VALUE");
+        assertResult(results.get(2), "b2", 0, "001C", true, null);
+    }
+
+    public void testParallelResultsFollowCompletionOrder() throws Exception {
+        List<UpdateResult> results = readAll(new TestHandler(2));
+
+        // b2 completes first, b1 only on the second poll
+        assertEquals(3, results.size());
+        assertResult(results.get(0), "b2", 0, "001C", true, null);
+        assertResult(results.get(1), "b1", 0, "001A", true, null);
+        assertResult(results.get(2), "b1", 1, null, false, "DUPLICATE_VALUE");
+    }
+
+    public void testParallelResultsOnSingleThreadExecutor() throws Exception {
+        TestHandler handler = new TestHandler(2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        handler.getConfig().setAsyncExecutor(executor);
+        try {
+            List<UpdateResult> results = readAll(handler);
+            assertEquals(3, results.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testParallelResultsOnVirtualThreads() throws Exception {
+        TestHandler handler = new TestHandler(2);
+        // falls back to platform threads before Java 21
+        handler.getConfig().setUseVirtualThreads(true);
+        assertEquals(3, readAll(handler).size());
+    }
+
+    public void testDownloadErrorsAreCountedPerBatch() throws Exception {
+        TestHandler handler = new TestHandler(2) {
+            @Override
+            public int getMaxErrorCount() {
+                return 2;
+            }
+        };
+        // four failures in all, but no batch fails more than twice
+        List<UpdateResult> results = readAll(handler, null, 2);
+        assertEquals(3, results.size());
+        assertTrue(handler.shouldContinue());
+    }
+
+    public void testDroppedStreamStopsDownloads() throws Exception {
+        TestHandler handler = new TestHandler(2) {
+            @Override
+            public int getMaxRecordsInBatch() {
+                return 1;
+            }
+
+            @Override
+            public long getResultReadTimeout() {
+                return 200;
+            }
+        };
+        UpdateResultStream stream = newStream(handler, null, 0);
+        assertNotNull(stream.next());
+        Thread.sleep(1000);
+        try {
+            stream.next();
+            fail("Expected StreamException");
+        } catch (StreamException e) {
+            assertTrue(e.getMessage().contains("not read"));
+        }
+        assertNull(stream.next());
+    }
+
+    public void testResultsCarrySourceOffsets() throws Exception {
+        Path file = Files.createTempFile("rows", ".idx");
+        try (RowIndex index = RowIndex.create(file)) {
+            index.add(100);
+            index.add(250);
+            index.setBatchId(index.endBatch(), "b1");
+            index.add(400);
+            index.setBatchId(index.endBatch(), "b2");
+
+            List<UpdateResult> results = readAll(new TestHandler(2), index);
+            assertEquals(3, results.size());
+            assertEquals(400, results.get(0).getSourceOffset());
+            assertEquals(100, results.get(1).getSourceOffset());
+            assertEquals(250, results.get(2).getSourceOffset());
+
+            assertEquals(-1, readAll(new TestHandler(0)).get(0).getSourceOffset());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<UpdateResult> readAll(StreamHandler handler) throws Exception {
+        return readAll(handler, null);
+    }
+
+    private static List<UpdateResult> readAll(StreamHandler handler, RowIndex index) throws Exception {
+        return readAll(handler, index, 0);
+    }
+
+    private static List<UpdateResult> readAll(StreamHandler handler, RowIndex index, int failuresPerBatch)
+            throws Exception {
+        UpdateResultStream stream = newStream(handler, index, failuresPerBatch);
+        List<UpdateResult> results = new ArrayList<UpdateResult>();
+        UpdateResult result;
+        while ((result = stream.next()) != null) {
+            results.add(result);
+        }
+        assertNull(stream.next());
+        return results;
+    }
+
+    private static UpdateResultStream newStream(StreamHandler handler, RowIndex index, int failuresPerBatch)
+            throws Exception {
+        handler.getConfig().setRestEndpoint("http://localhost/services/async/65.0");
+        handler.getConfig().setSessionId("session");
+        JobInfo job = new JobInfo();
+        job.setId("job");
+
+        return new UpdateResultStream(handler, new TestConnection(handler.getConfig(), failuresPerBatch), job,
+                index);
+    }
+
+    private static void assertResult(UpdateResult result, String batchId, int row, String id, boolean success,
+            String error) {
+        assertEquals(batchId, result.getBatchId());
+        assertEquals(row, result.getBatchRow());
+        assertEquals(id, result.getId());
+        assertEquals(success, result.isSuccess());
+        assertEquals(error, result.getError());
+    }
+
+    private static class TestHandler extends StreamHandler {
+        private final int maxParallelDownloads;
+
+        TestHandler(int maxParallelDownloads) {
+            this.maxParallelDownloads = maxParallelDownloads;
+        }
+
+        @Override
+        public PrintStream getLogStream() {
+            return new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            });
+        }
+
+        @Override
+        public int getMaxParallelDownloads() {
+            return maxParallelDownloads;
+        }
+
+        @Override
+        public long getResultPollInterval() {
+            return 200;
+        }
+
+        @Override
+        public long getWaitTime(int errorCount) {
+            return 0;
+        }
+    }
+
+    private static class TestConnection extends BulkConnection {
+        private final int failuresPerBatch;
+        private final ConcurrentHashMap<String, Integer> failures = new ConcurrentHashMap<String, Integer>();
+        private int polls;
+
+        TestConnection(ConnectorConfig config, int failuresPerBatch) throws AsyncApiException {
+            super(config);
+            this.failuresPerBatch = failuresPerBatch;
+        }
+
+        @Override
+        public BatchInfoList getBatchInfoList(String jobId) {
+            polls++;
+            BatchInfoList list = new BatchInfoList();
+            list.setBatchInfo(new BatchInfo[] {
+                    batch("b1", polls > 1 ? BatchStateEnum.Completed : BatchStateEnum.InProgress),
+                    batch("b2", BatchStateEnum.Completed)});
+            return list;
+        }
+
+        @Override
+        public BatchInfo getBatchInfo(String jobId, String batchId) {
+            return batch(batchId, BatchStateEnum.Completed);
+        }
+
+        @Override
+        public InputStream getBatchResultStream(String jobId, String batchId) throws AsyncApiException {
+            if (failures.merge(batchId, 1, Integer::sum) <= failuresPerBatch) {
+                throw new AsyncApiException("Download failed", AsyncExceptionCode.ClientInputError);
+            }
+            String csv = "b1".equals(batchId)
+                    ? "\"Id\",\"Success\",\"Created\",\"Error\"\n\"001A\",\"true\",\"true\",\"\"\n" +
+                      "\"\",\"false\",\"false\",\"DUPLICATE_VALUE\"\n"
+                    : "\"Id\",\"Success\",\"Created\",\"Error\"\n\"001C\",\"true\",\"false\",\"\"\n";
+            return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static BatchInfo batch(String id, BatchStateEnum state) {
+            BatchInfo batch = new BatchInfo();
+            batch.setId(id);
+            batch.setState(state);
+            return batch;
+        }
+    }
+}
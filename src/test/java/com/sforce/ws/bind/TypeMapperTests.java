@@ -36,9 +36,20 @@ import org.junit.Test;
 import javax.xml.namespace.QName;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * This test validates type mapper functionality
@@ -167,4 +178,103 @@ public class TypeMapperTests {
         assertEquals(ZoneOffset.of("+05:00"), result2.getOffset());
         assertEquals(LocalTime.of(11, 22, 33, 444000000), result2.toLocalTime());
     }
+
+    // test to validate a shared mapper resolves xsi types consistently from many threads
+    @Test
+    public void testConcurrentJavaTypeLookup() throws Exception {
+        final TypeMapper mapper = new TypeMapper(null, null, false);
+        final QName[] types = {
+                new QName(Constants.SCHEMA_NS, "string"),
+                new QName(Constants.SCHEMA_NS, "int"),
+                new QName(Constants.SCHEMA_NS, "dateTime"),
+                new QName(Constants.SCHEMA_NS, "boolean")
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            List<Future<Class<?>[]>> results = new ArrayList<Future<Class<?>[]>>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(new Callable<Class<?>[]>() {
+                    @Override
+                    public Class<?>[] call() throws Exception {
+                        Class<?>[] resolved = new Class<?>[types.length];
+                        for (int n = 0; n < 1000; n++) {
+                            for (int t = 0; t < types.length; t++) {
+                                resolved[t] = mapper.getJavaType(types[t]);
+                            }
+                        }
+                        return resolved;
+                    }
+                }));
+            }
+            for (Future<Class<?>[]> result : results) {
+                Class<?>[] resolved = result.get();
+                for (int t = 0; t < types.length; t++) {
+                    assertSame(mapper.getJavaType(types[t]), resolved[t]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // test to validate primitives are parsed from the parser text the same way the JDK parses Strings
+    @Test
+    public void testPrimitiveRead() throws PullParserException, IOException, ConnectionException {
+        TypeMapper mapper = new TypeMapper(null, null, false);
+        TypeInfo info = new TypeInfo("", "a", "", "int", 0, 1, true);
+
+        XmlInputStream in = primitives("<a>42</a><a>-2147483648</a><a>+7</a><a>9223372036854775807</a>"
+                + "<a>-9223372036854775808</a><a>TRUE</a><a>false</a><a>yes</a><a>-12.375</a><a>-0</a>"
+                + "<a>0.1</a><a>1e300</a><a>12345678901234567</a><a>NaN</a><a>-INF</a><a>123.4500</a>"
+                + "<a xsi:nil=\"true\"/><a xsi:nil=\"true\"/><a/>");
+        assertEquals(42, mapper.readInt(peek(in), info, int.class));
+        assertEquals(Integer.MIN_VALUE, mapper.readInt(peek(in), info, int.class));
+        assertEquals(7, mapper.readInt(peek(in), info, int.class));
+        assertEquals(Long.MAX_VALUE, mapper.readLong(peek(in), info, long.class));
+        assertEquals(Long.MIN_VALUE, mapper.readLong(peek(in), info, long.class));
+        assertTrue(mapper.readBoolean(peek(in), info, boolean.class));
+        assertFalse(mapper.readBoolean(peek(in), info, boolean.class));
+        assertFalse(mapper.readBoolean(peek(in), info, boolean.class));
+        for (String value : new String[] { "-12.375", "-0", "0.1", "1e300", "12345678901234567" }) {
+            double result = mapper.readDouble(peek(in), info, double.class);
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(result));
+        }
+        assertTrue(Double.isNaN(mapper.readDouble(peek(in), info, double.class)));
+        assertEquals(Double.NEGATIVE_INFINITY, mapper.readDouble(peek(in), info, double.class), 0);
+        assertEquals(new BigDecimal("123.4500"), mapper.readDecimal(peek(in), info, BigDecimal.class));
+        assertFalse(mapper.readBoolean(peek(in), info, boolean.class));
+        try {
+            mapper.readInt(peek(in), info, int.class);
+            fail("nil int");
+        } catch (NumberFormatException expected) {
+        }
+        try {
+            mapper.readLong(peek(in), info, long.class);
+            fail("empty long");
+        } catch (NumberFormatException expected) {
+        }
+
+        for (String value : new String[] { "2147483648", "-2147483649", "1x", "-", "" }) {
+            try {
+                mapper.readInt(peek(primitives("<a>" + value + "</a>")), info, int.class);
+                fail(value);
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+
+    private static XmlInputStream primitives(String values) throws PullParserException, IOException, ConnectionException {
+        String xml = "<b xmlns:xsi=\"" + Constants.SCHEMA_INSTANCE_NS + "\">" + values + "</b>";
+        XmlInputStream in = new XmlInputStream();
+        in.setInput(new ByteArrayInputStream(xml.getBytes("UTF-8")), "UTF-8");
+        in.nextTag();
+        return in;
+    }
+
+    // positions the stream on the next element, the way readObject() finds it
+    private static XmlInputStream peek(XmlInputStream in) throws IOException, ConnectionException {
+        in.peekTag();
+        return in;
+    }
 }
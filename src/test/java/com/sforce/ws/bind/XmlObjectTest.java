@@ -31,6 +31,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.namespace.QName;
@@ -117,4 +118,73 @@ public class XmlObjectTest extends TestCase {
 		assertTrue( result.getClass().isArray() );
 		assertTrue( Arrays.equals(ab, (Object[])result));
     }
+
+    public void testFieldLookupOnWideObject() {
+        XmlObject obj = new XmlObject(new QName("urn:sobject.partner.soap.sforce.com", "sObject"));
+        for (int i = 0; i < 300; i++) {
+            obj.setField("Field" + i, "v" + i);
+        }
+        obj.addField("Field7", "duplicate");
+
+        assertEquals("v299", obj.getField("Field299"));
+        assertEquals("v7", obj.getField("Field7"));
+        assertNull(obj.getField("Missing"));
+
+        obj.setField("Field5", "updated");
+        assertEquals("updated", obj.getField("Field5"));
+
+        // removing the first of two children with the same name exposes the second
+        assertTrue(obj.removeField("Field7"));
+        assertEquals("duplicate", obj.getField("Field7"));
+        assertTrue(obj.removeField("Field7"));
+        assertNull(obj.getField("Field7"));
+        assertFalse(obj.getChildren("Field7").hasNext());
+
+        // children removed through the iterator are noticed as well
+        for (Iterator<XmlObject> it = obj.getChildren(); it.hasNext();) {
+            if ("Field9".equals(it.next().getName().getLocalPart())) {
+                it.remove();
+            }
+        }
+        assertNull(obj.getField("Field9"));
+
+        XmlObject copy = new XmlObject() {
+            {
+                cloneFrom(obj);
+            }
+        };
+        assertEquals("v100", copy.getField("Field100"));
+        copy.setField("Extra", "x");
+        assertEquals("x", obj.getField("Extra"));
+    }
+
+    public void testIndexNoticesChangesThatKeepTheSize() {
+        final XmlObject obj = new XmlObject(new QName("urn:sobject.partner.soap.sforce.com", "sObject"));
+        for (int i = 0; i < 20; i++) {
+            obj.setField("F" + i, "v" + i);
+        }
+        assertEquals("v3", obj.getField("F3"));
+
+        // remove through the iterator, then add: the size is back to what the index saw
+        for (Iterator<XmlObject> it = obj.getChildren(); it.hasNext();) {
+            if ("F3".equals(it.next().getName().getLocalPart())) {
+                it.remove();
+            }
+        }
+        obj.addField("New", "n");
+        assertNull(obj.getField("F3"));
+        assertEquals("n", obj.getField("New"));
+
+        // the same through a copy sharing the children
+        XmlObject copy = new XmlObject() {
+            {
+                cloneFrom(obj);
+            }
+        };
+        assertEquals("v4", copy.getField("F4"));
+        assertTrue(copy.removeField("F4"));
+        copy.addField("Other", "o");
+        assertNull(obj.getField("F4"));
+        assertEquals("o", obj.getField("Other"));
+    }
 }
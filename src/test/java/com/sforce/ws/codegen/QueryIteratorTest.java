@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.codegen;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.tools.wsdlc;
+import com.sforce.ws.transport.Transport;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.stringtemplate.v4.STGroupDir;
+
+import static com.sforce.ws.tools.wsdlc.TEMPLATE_DIR;
+
+public class QueryIteratorTest {
+    private static ClassLoader classLoader;
+    private static Path tempPath;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        File wsdl = CodeGeneratorTestUtil.getFileFromResource("QueryIteratorTest.wsdl");
+
+        tempPath = Files.createTempDirectory("QueryIteratorTest");
+        wsdlc.run(wsdl.getAbsolutePath(), tempPath.resolve("test.jar").toString(), null, false, false,
+                  new STGroupDir(TEMPLATE_DIR, '$', '$'), tempPath.toAbsolutePath().toString(), true, false);
+        classLoader = new URLClassLoader(new URL[]{tempPath.toUri().toURL()}, QueryIteratorTest.class.getClassLoader());
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        CodeGeneratorTestUtil.cleanupDirectory(tempPath);
+    }
+
+    @Test
+    public void testQueryIteratorFollowsQueryMore() throws Exception {
+        Assert.assertEquals("abcde", readAll("queryIterator", 2));
+    }
+
+    @Test
+    public void testQueryIteratorWithoutPrefetch() throws Exception {
+        Assert.assertEquals("abcde", readAll("queryAllIterator", 0));
+    }
+
+    private String readAll(String method, int prefetchDepth) throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setServiceEndpoint("http://localhost/services/Soap/q");
+        config.setQueryPrefetchDepth(prefetchDepth);
+        config.setTransportFactory(PagedTransport::new);
+
+        Class<?> connectionClass = classLoader.loadClass("com.sample.query.SoapConnection");
+        Object connection = connectionClass.getConstructor(ConnectorConfig.class).newInstance(config);
+        Iterator<?> records = (Iterator<?>) connectionClass.getMethod(method, String.class)
+                .invoke(connection, "SELECT Name FROM Record");
+
+        StringBuilder names = new StringBuilder();
+        while (records.hasNext()) {
+            names.append(PropertyUtils.getProperty(records.next(), "name"));
+        }
+        return names.toString();
+    }
+
+    /**
+     * answers query with a first page and each queryMore with the page named by its locator
+     */
+    private static class PagedTransport implements Transport {
+        private static final Pattern LOCATOR = Pattern.compile("<(?:\\w+:)?queryLocator>([^<]*)<");
+        private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+
+        @Override
+        public void setConfig(ConnectorConfig config) {
+        }
+
+        @Override
+        public OutputStream connect(String url, String soapAction) {
+            return request;
+        }
+
+        @Override
+        public OutputStream connect(String endpoint, HashMap<String, String> headers) {
+            return request;
+        }
+
+        @Override
+        public OutputStream connect(String endpoint, HashMap<String, String> httpHeaders, boolean enableCompression) {
+            return request;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            String body = request.toString("UTF-8");
+            String response;
+            Matcher locator = LOCATOR.matcher(body);
+            if (!locator.find()) {
+                String element = body.contains("queryAll") ? "queryAllResponse" : "queryResponse";
+                response = page(element, "1", "a", "b");
+            } else if ("1".equals(locator.group(1))) {
+                response = page("queryMoreResponse", "2", "c", "d");
+            } else {
+                response = page("queryMoreResponse", null, "e");
+            }
+            return new ByteArrayInputStream(response.getBytes("UTF-8"));
+        }
+
+        private static String page(String element, String nextLocator, String... names) {
+            List<String> records = new ArrayList<String>();
+            for (String name : names) {
+                records.add("<records><name>" + name + "</name></records>");
+            }
+            return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"" +
+                    " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><soapenv:Body>" +
+                    "<" + element + " xmlns=\"urn:query.sample.com\"><result>" +
+                    "<done>" + (nextLocator == null) + "</done>" +
+                    (nextLocator == null ? "<queryLocator xsi:nil=\"true\"/>" : "<queryLocator>" + nextLocator + "</queryLocator>") +
+                    String.join("", records) +
+                    "<size>5</size></result></" + element + "></soapenv:Body></soapenv:Envelope>";
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.sforce.ws.codegen;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.sforce.ws.bind.TypeInfo;
+import com.sforce.ws.bind.TypeMapper;
+import com.sforce.ws.bind.XMLizable;
+import com.sforce.ws.parser.XmlInputStream;
+import com.sforce.ws.tools.wsdlc;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.stringtemplate.v4.STGroupDir;
+
+import static com.sforce.ws.tools.wsdlc.TEMPLATE_DIR;
+
+/**
+ * Generates and compiles a type wide enough that its TypeInfo table, loader and writer are split
+ * over several methods.
+ */
+public class WideTypeTest {
+    private static final int FIELDS = 1200;
+
+    private static ClassLoader classLoader;
+    private static Path tempPath;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        tempPath = Files.createTempDirectory("WideTypeTest");
+        Path wsdl = tempPath.resolve("WideTypeTest.wsdl");
+        Files.write(wsdl, wideWsdl().getBytes(StandardCharsets.UTF_8));
+
+        wsdlc.run(wsdl.toAbsolutePath().toString(), tempPath.resolve("test.jar").toString(), null, false, false,
+                  new STGroupDir(TEMPLATE_DIR, '$', '$'), tempPath.toAbsolutePath().toString(), true, false);
+        classLoader = new URLClassLoader(new URL[]{tempPath.toUri().toURL()}, WideTypeTest.class.getClassLoader());
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        CodeGeneratorTestUtil.cleanupDirectory(tempPath);
+    }
+
+    @Test
+    public void testTypeInfosAreInFieldOrder() throws Exception {
+        Class<?> type = classLoader.loadClass("com.sample.wide.WideRecord");
+        Field field = type.getDeclaredField("__typeInfos");
+        field.setAccessible(true);
+        TypeInfo[] typeInfos = (TypeInfo[]) field.get(null);
+
+        Assert.assertEquals(FIELDS, typeInfos.length);
+        for (int i = 0; i < FIELDS; i++) {
+            Assert.assertEquals("field" + i, typeInfos[i].getName());
+        }
+
+        int initMethods = 0;
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.getName().startsWith("initTypeInfos")) {
+                initMethods++;
+            }
+        }
+        Assert.assertTrue("expected the table to be filled by several methods", initMethods > 1);
+    }
+
+    @Test
+    public void testLoadWideRecord() throws Exception {
+        StringBuilder xml = new StringBuilder("<record xmlns=\"urn:wide.sample.com\">");
+        for (int i = 0; i < FIELDS; i++) {
+            xml.append("<field").append(i).append(">v").append(i).append("</field").append(i).append(">");
+        }
+        xml.append("</record>");
+
+        XmlInputStream in = new XmlInputStream();
+        in.setInput(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)), "UTF-8");
+        XMLizable record = (XMLizable) classLoader.loadClass("com.sample.wide.WideRecord").newInstance();
+        record.load(in, new TypeMapper());
+
+        Assert.assertEquals("v0", PropertyUtils.getProperty(record, "field0"));
+        Assert.assertEquals("v" + (FIELDS - 1), PropertyUtils.getProperty(record, "field" + (FIELDS - 1)));
+    }
+
+    private static String wideWsdl() {
+        StringBuilder fields = new StringBuilder();
+        for (int i = 0; i < FIELDS; i++) {
+            fields.append("<s:element name=\"field").append(i).append("\" type=\"s:string\" minOccurs=\"0\"/>");
+        }
+        return "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                "<wsdl:definitions xmlns:soap=\"http://schemas.xmlsoap.org/wsdl/soap/\"" +
+                " xmlns:s=\"http://www.w3.org/2001/XMLSchema\" xmlns:tns=\"urn:wide.sample.com\"" +
+                " targetNamespace=\"urn:wide.sample.com\" xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\">" +
+                "<wsdl:types><s:schema elementFormDefault=\"qualified\" targetNamespace=\"urn:wide.sample.com\">" +
+                "<s:complexType name=\"WideRecord\"><s:sequence>" + fields + "</s:sequence></s:complexType>" +
+                "<s:element name=\"get\"><s:complexType><s:sequence>" +
+                "<s:element name=\"id\" type=\"s:string\"/></s:sequence></s:complexType></s:element>" +
+                "<s:element name=\"getResponse\"><s:complexType><s:sequence>" +
+                "<s:element name=\"result\" type=\"tns:WideRecord\"/></s:sequence></s:complexType></s:element>" +
+                "</s:schema></wsdl:types>" +
+                "<wsdl:message name=\"getRequest\"><wsdl:part name=\"parameters\" element=\"tns:get\"/></wsdl:message>" +
+                "<wsdl:message name=\"getResponse\"><wsdl:part name=\"parameters\" element=\"tns:getResponse\"/></wsdl:message>" +
+                "<wsdl:portType name=\"Soap\"><wsdl:operation name=\"get\">" +
+                "<wsdl:input message=\"tns:getRequest\"/><wsdl:output message=\"tns:getResponse\"/>" +
+                "</wsdl:operation></wsdl:portType>" +
+                "<wsdl:binding name=\"SoapBinding\" type=\"tns:Soap\">" +
+                "<soap:binding style=\"document\" transport=\"http://schemas.xmlsoap.org/soap/http\"/>" +
+                "<wsdl:operation name=\"get\"><soap:operation soapAction=\"\"/>" +
+                "<wsdl:input><soap:body use=\"literal\"/></wsdl:input>" +
+                "<wsdl:output><soap:body use=\"literal\"/></wsdl:output></wsdl:operation></wsdl:binding>" +
+                "<wsdl:service name=\"WideService\"><wsdl:port name=\"Soap\" binding=\"tns:SoapBinding\">" +
+                "<soap:address location=\"http://localhost/services/Soap/w\"/></wsdl:port></wsdl:service>" +
+                "</wsdl:definitions>";
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class MXParserTest {
+
+    @Test
+    public void testUtf8MatchesReaderAcrossBufferBoundaries() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root a=\"caf\u00e9\">");
+        for (int i = 0; i < 3000; i++) {
+            xml.append("<v n=\"").append(i).append("\">plain text \u00e9\u20ac\ud83d\ude00 &amp; more</v>");
+        }
+        xml.append("</root>");
+        byte[] bytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+        String expected = parse(readerParser(new ByteArrayInputStream(bytes)));
+        assertEquals(expected, parse(utf8Parser(new ByteArrayInputStream(bytes))));
+        // a stream that returns one byte per read splits every multi-byte sequence
+        assertEquals(expected, parse(utf8Parser(new OneByteInputStream(bytes))));
+    }
+
+    @Test
+    public void testMalformedBytesAreReplaced() throws Exception {
+        byte[] bytes = {'<', 'a', '>', 'x', (byte) 0xc3, 'y', (byte) 0xff, (byte) 0xe2, (byte) 0x82, '<', '/', 'a', '>'};
+        MXParser parser = utf8Parser(new ByteArrayInputStream(bytes));
+        parser.next();
+        assertEquals(XmlPullParser.TEXT, parser.next());
+        assertEquals("x\ufffdy\ufffd\ufffd", parser.getText());
+    }
+
+    private static MXParser utf8Parser(InputStream in) throws Exception {
+        MXParser parser = new MXParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(in, "UTF-8");
+        return parser;
+    }
+
+    private static MXParser readerParser(InputStream in) throws Exception {
+        MXParser parser = new MXParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return parser;
+    }
+
+    private static String parse(MXParser parser) throws Exception {
+        StringBuilder events = new StringBuilder();
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            events.append(event).append(':');
+            if (event == XmlPullParser.START_TAG) {
+                events.append(parser.getName());
+                for (int i = 0; i < parser.getAttributeCount(); i++) {
+                    events.append(' ').append(parser.getAttributeName(i)).append('=')
+                            .append(parser.getAttributeValue(i));
+                }
+            } else if (event == XmlPullParser.TEXT) {
+                events.append(parser.getText());
+            }
+            events.append('\n');
+        }
+        return events.toString();
+    }
+
+    private static class OneByteInputStream extends FilterInputStream {
+        OneByteInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class MXSerializerTest {
+
+    @Test
+    public void testEscaping() throws Exception {
+        assertEquals("<a>x &amp; y &lt; z > ]]&gt; ]>]]]&gt;tab\tdropped</a>",
+                serialize("x & y < z > ]]> ]>]]]>tab\t\u0001dropped"));
+        assertEquals("<a>plain</a>", serialize("plain"));
+        assertEquals("<a b=\"&amp;&lt;&quot;&#10;\">text</a>", serialize("b", "&<\"\n", "text"));
+    }
+
+    @Test
+    public void testUtf8MatchesOutputStreamWriter() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("caf\u00e9 \u20ac\ud83d\ude00 ").append(i);
+        }
+        // unpaired surrogates
+        text.append("\ud83d!\ude00");
+        String value = text.toString();
+
+        for (boolean chars : new boolean[] {false, true}) {
+            ByteArrayOutputStream direct = new ByteArrayOutputStream();
+            write(direct, null, value, chars);
+            ByteArrayOutputStream reference = new ByteArrayOutputStream();
+            write(reference, new OutputStreamWriter(reference, StandardCharsets.UTF_8), value, chars);
+            assertArrayEquals(reference.toByteArray(), direct.toByteArray());
+        }
+    }
+
+    private static String serialize(String text) throws Exception {
+        return serialize(null, null, text);
+    }
+
+    private static String serialize(String attribute, String value, String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MXSerializer serializer = new MXSerializer();
+        serializer.setOutput(bytes, "UTF-8");
+        serializer.startTag(null, "a");
+        if (attribute != null) {
+            serializer.attribute(null, attribute, value);
+        }
+        serializer.text(text);
+        serializer.endTag(null, "a");
+        serializer.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(ByteArrayOutputStream bytes, OutputStreamWriter writer, String text, boolean chars)
+            throws Exception {
+        MXSerializer serializer = new MXSerializer();
+        if (writer == null) {
+            serializer.setOutput(bytes, "UTF-8");
+        } else {
+            serializer.setOutput(writer);
+        }
+        serializer.startDocument("UTF-8", null);
+        serializer.startTag(null, "a");
+        if (chars) {
+            serializer.text(text.toCharArray(), 0, text.length());
+        } else {
+            serializer.text(text);
+        }
+        serializer.endTag(null, "a");
+        serializer.endDocument();
+    }
+}
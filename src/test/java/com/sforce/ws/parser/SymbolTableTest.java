@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTest {
+
+    @Test
+    public void testSymbolsAreCanonical() {
+        SymbolTable symbols = new SymbolTable(1000);
+        char[] chars = "xx Envelope xx".toCharArray();
+        String fromChars = symbols.symbol(chars, 3, 8);
+        assertSame("Envelope", fromChars);
+        assertSame(fromChars, symbols.symbol("sf:Envelope", 3, 8));
+        assertSame(fromChars, symbols.symbol(new String("Envelope")));
+        assertNull(symbols.symbol(null));
+
+        QName qname = symbols.qname("urn:x", new String("Account"));
+        assertSame(qname, symbols.qname(new String("urn:x"), "Account"));
+        assertSame("Account", qname.getLocalPart());
+        assertEquals(new QName("", "Id"), symbols.qname(null, "Id"));
+        assertNotSame(qname, symbols.qname("urn:y", "Account"));
+    }
+
+    @Test
+    public void testFullTableStillReturnsEqualValues() {
+        SymbolTable symbols = new SymbolTable(10);
+        for (int i = 0; i < 100; i++) {
+            String name = "field" + i;
+            assertEquals(name, symbols.symbol(name.toCharArray(), 0, name.length()));
+            assertSame(name.intern(), symbols.symbol(name));
+            assertEquals(new QName("urn:x", name), symbols.qname("urn:x", name));
+        }
+        assertSame(symbols.qname("urn:x", "field0"), symbols.qname("urn:x", "field0"));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final SymbolTable symbols = new SymbolTable(100000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String[]>> results = new ArrayList<Future<String[]>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<String[]>() {
+                    @Override
+                    public String[] call() {
+                        String[] found = new String[5000];
+                        for (int i = 0; i < found.length; i++) {
+                            char[] name = ("n" + i).toCharArray();
+                            found[i] = symbols.symbol(name, 0, name.length);
+                        }
+                        return found;
+                    }
+                }));
+            }
+            String[] first = results.get(0).get();
+            for (Future<String[]> result : results) {
+                String[] found = result.get();
+                for (int i = 0; i < found.length; i++) {
+                    assertSame(first[i], found[i]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParsedNamesAreShared() throws Exception {
+        String xml = "<env:Envelope xmlns:env=\"urn:e\"><env:Body a=\"1\"/></env:Envelope>";
+        for (int i = 0; i < 2; i++) {
+            XmlInputStream in = new XmlInputStream();
+            in.setInput(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "UTF-8");
+            in.nextTag();
+            assertSame("Envelope", in.getName());
+            assertSame("urn:e", in.getNamespace());
+            in.nextTag();
+            assertSame("Body", in.getName());
+            assertSame("a", in.getAttributeName(0));
+            in.release();
+        }
+    }
+}
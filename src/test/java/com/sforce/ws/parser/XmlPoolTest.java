@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.parser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class XmlPoolTest {
+
+    @Test
+    public void testReleasedParserIsReused() throws Exception {
+        assertEquals("one", readText("<a>one</a>"));
+        // a stream that was not reset by a release still parses new input after reset()
+        XmlInputStream in = new XmlInputStream();
+        in.setInput(stream("<a>two</a>"), "UTF-8");
+        in.nextTag();
+        in.reset();
+        in.setInput(stream("<b xmlns=\"urn:x\">three</b>"), "UTF-8");
+        assertEquals(XmlInputStream.START_TAG, in.nextTag());
+        assertEquals("urn:x", in.getNamespace());
+        assertEquals("three", in.nextText());
+        in.release();
+
+        MXParser pooled = XmlPool.takeParser();
+        assertNotNull(pooled);
+        assertNull(pooled.getText());
+        assertEquals(XmlPullParser.START_DOCUMENT, pooled.getEventType());
+        XmlPool.giveBack(pooled);
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        while (XmlPool.takeSerializer() != null) {
+            // start from an empty pool
+        }
+        for (int i = 0; i < XmlPool.MAX_POOLED + 2; i++) {
+            XmlPool.giveBack(new MXSerializer());
+        }
+        for (int i = 0; i < XmlPool.MAX_POOLED; i++) {
+            assertNotNull(XmlPool.takeSerializer());
+        }
+        assertNull(XmlPool.takeSerializer());
+    }
+
+    @Test
+    public void testPoolIsSharedAcrossThreads() throws Exception {
+        while (XmlPool.takeParser() != null) {
+            // start from an empty pool
+        }
+        final MXParser parser = new MXParser();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                XmlPool.giveBack(parser);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertSame(parser, XmlPool.takeParser());
+    }
+
+    @Test
+    public void testReusedSerializerKeepsNoIndentation() throws Exception {
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><a>\n <b>x</b>\n</a>", write(true));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><a><b>x</b></a>", write(false));
+    }
+
+    private static String readText(String xml) throws Exception {
+        XmlInputStream in = new XmlInputStream();
+        try {
+            in.setInput(stream(xml), "UTF-8");
+            in.nextTag();
+            return in.nextText();
+        } finally {
+            in.release();
+        }
+    }
+
+    private static String write(boolean prettyPrint) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XmlOutputStream out = new XmlOutputStream(bytes, prettyPrint);
+        out.startDocument();
+        out.writeStartTag(null, "a");
+        out.writeStringElement(null, "b", "x");
+        out.writeEndTag(null, "a");
+        out.endDocument();
+        out.close();
+        out.close();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.sforce.ws.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncLimiterTest {
+
+    @Test
+    public void testSubmitQueuesInsteadOfBlocking() throws Exception {
+        AsyncLimiter limiter = new AsyncLimiter(2);
+        final List<CompletableFuture<Integer>> started = new ArrayList<CompletableFuture<Integer>>();
+        List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 5; i++) {
+            results.add(limiter.submit(() -> {
+                CompletableFuture<Integer> call = new CompletableFuture<Integer>();
+                started.add(call);
+                return call;
+            }));
+        }
+        assertEquals(2, started.size());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, limiter.getQueued());
+
+        // each completed call starts the next queued one, in submission order
+        for (int i = 0; i < 5; i++) {
+            started.get(i).complete(i);
+            assertEquals(Integer.valueOf(i), results.get(i).get());
+            assertEquals(Math.min(5, i + 3), started.size());
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void testFailedCallsGiveBackTheirSlot() throws Exception {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        List<CompletableFuture<Object>> results = new ArrayList<CompletableFuture<Object>>();
+        // synchronous failures must not recurse once per queued call
+        for (int i = 0; i < 10000; i++) {
+            results.add(limiter.submit(() -> {
+                throw new IllegalStateException("refused");
+            }));
+        }
+        for (CompletableFuture<Object> result : results) {
+            assertTrue(result.isCompletedExceptionally());
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testQueueIsBounded() throws Exception {
+        AsyncLimiter limiter = new AsyncLimiter(1, 2);
+        final List<CompletableFuture<Integer>> started = new ArrayList<CompletableFuture<Integer>>();
+        List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 4; i++) {
+            results.add(limiter.submit(() -> {
+                CompletableFuture<Integer> call = new CompletableFuture<Integer>();
+                started.add(call);
+                return call;
+            }));
+        }
+        assertEquals(1, started.size());
+        assertEquals(2, limiter.getQueued());
+        try {
+            results.get(3).get();
+            fail("the call beyond the queue limit should have been rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        // once a call completes there is room again
+        started.get(0).complete(0);
+        assertEquals(1, limiter.getQueued());
+        assertFalse(limiter.submit(() -> CompletableFuture.completedFuture(4)).isDone());
+        assertEquals(2, limiter.getQueued());
+    }
+
+    @Test
+    public void testQueuedCallsStartOnTheExecutor() throws Exception {
+        final List<Runnable> executed = new ArrayList<Runnable>();
+        Executor executor = executed::add;
+        AsyncLimiter limiter = new AsyncLimiter(1, 10, executor);
+        final List<Thread> threads = new ArrayList<Thread>();
+        CompletableFuture<Integer> first = new CompletableFuture<Integer>();
+
+        limiter.submit(() -> {
+            threads.add(Thread.currentThread());
+            return first;
+        });
+        limiter.submit(() -> {
+            threads.add(Thread.currentThread());
+            return CompletableFuture.completedFuture(2);
+        });
+        assertEquals("a call with a free slot starts on the caller", 1, threads.size());
+        assertEquals(0, executed.size());
+
+        first.complete(1);
+        assertEquals("the queued call is handed to the executor", 1, executed.size());
+        assertEquals(1, threads.size());
+        executed.get(0).run();
+        assertEquals(2, threads.size());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import com.sforce.ws.ConnectionException;
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.bind.TypeMapper;
+import com.sforce.ws.bind.XMLizable;
+import com.sforce.ws.parser.XmlInputStream;
+import com.sforce.ws.parser.XmlOutputStream;
+import com.sforce.ws.util.FileUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validates HttpClientTransport against a local http server.
+ */
+public class HttpClientTransportTest {
+
+    private HttpServer server;
+    private String endpoint;
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                byte[] body = FileUtil.toBytes(exchange.getRequestBody());
+                int status = exchange.getRequestHeaders().getFirst("SOAPAction").contains("fail") ? 500 : 200;
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.createContext("/soap", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String request = new String(FileUtil.toBytes(exchange.getRequestBody()), "UTF-8");
+                String text = request.substring(request.indexOf("<m:echo") + 1);
+                text = text.substring(text.indexOf('>') + 1, text.indexOf("</m:echo>"));
+                byte[] body = ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+                        "<soapenv:Body><m:echoResponse xmlns:m=\"urn:test\"><m:result>" + text +
+                        "</m:result></m:echoResponse></soapenv:Body></soapenv:Envelope>").getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort() + "/echo";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private ConnectorConfig newConfig(HttpClientConnectionPool pool) {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setCompression(false);
+        config.setTransport(HttpClientTransport.class);
+        config.setConnectionPool(pool);
+        return config;
+    }
+
+    private String call(ConnectorConfig config, String soapAction, String body) throws Exception {
+        Transport transport = config.createTransport();
+        OutputStream out = transport.connect(endpoint, soapAction);
+        out.write(body.getBytes("UTF-8"));
+        out.close();
+        InputStream in = transport.getContent();
+        String result = new String(FileUtil.toBytes(in), "UTF-8");
+        assertEquals(!soapAction.contains("fail"), transport.isSuccessful());
+        return result;
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool(2, 30000);
+        pool.setHttp2(false);
+        ConnectorConfig config = newConfig(pool);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("<request>" + i + "</request>", call(config, "echo", "<request>" + i + "</request>"));
+        }
+        assertEquals("all calls should share one keep-alive connection", 1, clientPorts.size());
+        assertEquals(2, pool.getAvailableConnections());
+
+        assertEquals("<oops/>", call(config, "fail", "<oops/>"));
+        assertEquals(2, pool.getAvailableConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testDefaultPoolIsAttachedToConfig() throws Exception {
+        ConnectorConfig config = newConfig(null);
+        call(config, "echo", "<a/>");
+        assertTrue(config.getConnectionPool() instanceof HttpClientConnectionPool);
+        assertEquals(HttpClientConnectionPool.DEFAULT_MAX_CONNECTIONS, config.getConnectionPool().getMaxConnections());
+        config.getConnectionPool().close();
+    }
+
+    @Test
+    public void testPoolLeavesJvmPropertiesAlone() throws Exception {
+        String timeout = System.clearProperty("jdk.httpclient.keepalive.timeout");
+        String size = System.clearProperty("jdk.httpclient.connectionPoolSize");
+        try {
+            HttpClientConnectionPool pool = new HttpClientConnectionPool(3, 5000);
+            call(newConfig(pool), "echo", "<a/>");
+            assertNull(System.getProperty("jdk.httpclient.keepalive.timeout"));
+            assertNull(System.getProperty("jdk.httpclient.connectionPoolSize"));
+            pool.close();
+        } finally {
+            restoreProperty("jdk.httpclient.keepalive.timeout", timeout);
+            restoreProperty("jdk.httpclient.connectionPoolSize", size);
+        }
+    }
+
+    private static void restoreProperty(String name, String value) {
+        if (value == null) {
+            System.clearProperty(name);
+        } else {
+            System.setProperty(name, value);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLimitsCannotChangeOncePoolIsInUse() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool();
+        call(newConfig(pool), "echo", "<a/>");
+        pool.setMaxConnections(5);
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool(2, 200);
+        pool.setHttp2(false);
+        ConnectorConfig config = newConfig(pool);
+
+        call(config, "echo", "<a/>");
+        call(config, "echo", "<b/>");
+        assertEquals(1, clientPorts.size());
+        Thread.sleep(1000);
+        call(config, "echo", "<c/>");
+        assertEquals("the idle connection should have been closed", 2, clientPorts.size());
+        assertEquals(2, pool.getAvailableConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testSlotsOutliveClose() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool(2, 30000);
+        ConnectorConfig config = newConfig(pool);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint)).header("SOAPAction", "echo")
+                .POST(HttpRequest.BodyPublishers.ofString("<a/>")).build();
+
+        InputStream open = pool.send(config, request).body();
+        assertEquals(1, pool.getAvailableConnections());
+        pool.close();
+
+        FileUtil.toBytes(pool.send(config, request).body());
+        assertEquals(1, pool.getAvailableConnections());
+        open.close();
+        assertEquals(2, pool.getAvailableConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testSendAsync() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool(4, 30000);
+        ConnectorConfig config = newConfig(pool);
+        config.setMaxAsyncRequests(2);
+        String url = endpoint.replace("/echo", "/soap");
+        AsyncLimiter limiter = new AsyncLimiter(config.getMaxAsyncRequests());
+
+        List<CompletableFuture<XMLizable>> futures = new ArrayList<CompletableFuture<XMLizable>>();
+        for (int i = 0; i < 20; i++) {
+            final SoapConnection connection = new SoapConnection(url, null, new TypeMapper(), config);
+            final EchoRequest request = new EchoRequest("call " + i);
+            futures.add(limiter.submit(() -> connection.sendAsync("echo", ECHO, request, ECHO_RESPONSE,
+                    EchoResponse.class)));
+            assertTrue(limiter.getInFlight() <= 2);
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            EchoResponse response = (EchoResponse) futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals("call " + i, response.result);
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(4, pool.getAvailableConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testSendAsyncQueuesWhenPoolIsBusy() throws Exception {
+        HttpClientConnectionPool pool = new HttpClientConnectionPool(1, 30000);
+        ConnectorConfig config = newConfig(pool);
+        String url = endpoint.replace("/echo", "/soap");
+
+        List<CompletableFuture<XMLizable>> futures = new ArrayList<CompletableFuture<XMLizable>>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            SoapConnection connection = new SoapConnection(url, null, new TypeMapper(), config);
+            futures.add(connection.sendAsync("echo", ECHO, new EchoRequest("call " + i), ECHO_RESPONSE,
+                    EchoResponse.class));
+        }
+        assertTrue("sendAsync must not wait for a free connection", System.currentTimeMillis() - start < 5000);
+
+        for (int i = 0; i < futures.size(); i++) {
+            EchoResponse response = (EchoResponse) futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals("call " + i, response.result);
+        }
+        assertEquals(1, pool.getAvailableConnections());
+        pool.close();
+    }
+
+    private static final QName ECHO = new QName("urn:test", "echo");
+    private static final QName ECHO_RESPONSE = new QName("urn:test", "echoResponse");
+
+    public static class EchoRequest implements XMLizable {
+        private final String text;
+
+        public EchoRequest(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void write(QName element, XmlOutputStream out, TypeMapper typeMapper) throws IOException {
+            out.writeStartTag(element.getNamespaceURI(), element.getLocalPart());
+            out.writeText(text);
+            out.writeEndTag(element.getNamespaceURI(), element.getLocalPart());
+        }
+
+        @Override
+        public void load(XmlInputStream in, TypeMapper typeMapper) {
+        }
+    }
+
+    public static class EchoResponse implements XMLizable {
+        private String result;
+
+        @Override
+        public void write(QName element, XmlOutputStream out, TypeMapper typeMapper) {
+        }
+
+        @Override
+        public void load(XmlInputStream in, TypeMapper typeMapper) throws IOException, ConnectionException {
+            typeMapper.consumeStartTag(in);
+            in.nextTag();
+            result = in.nextText();
+            typeMapper.consumeEndTag(in);
+        }
+    }
+}
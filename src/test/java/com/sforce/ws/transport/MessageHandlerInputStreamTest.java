@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.transport;
+
+import com.sforce.ws.ConnectorConfig;
+import com.sforce.ws.MessageHandler;
+import com.sforce.ws.StreamingMessageHandler;
+import com.sforce.ws.util.FileUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MessageHandlerInputStreamTest {
+
+    private static final String RESPONSE = "<?xml version=\"1.0\"?><a><b>one</b><c><d>two</d></c><e/></a>";
+
+    @Test
+    public void testStreamingHandlerIsNotBuffered() throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        RecordingHandler handler = new RecordingHandler();
+        config.addMessageHandler(handler);
+
+        ByteArrayInputStream source = new ByteArrayInputStream(RESPONSE.getBytes("UTF-8"));
+        InputStream in = MessageHandlerInputStream.wrap(config, new URL("http://localhost/"), source,
+                Collections.singletonMap("Content-Type", Collections.singletonList("text/xml")));
+
+        assertEquals("nothing read before the caller reads", RESPONSE.length(), source.available());
+        assertEquals(1, handler.starts);
+        assertEquals(0, handler.body.size());
+
+        byte[] buf = new byte[7];
+        assertEquals(7, in.read(buf));
+        assertEquals(RESPONSE.substring(0, 7), handler.body.toString("UTF-8"));
+        assertEquals(0, handler.ends);
+
+        assertEquals(RESPONSE.substring(7), new String(FileUtil.toBytes(in), "UTF-8"));
+        assertEquals(RESPONSE, handler.body.toString("UTF-8"));
+        assertEquals(1, handler.ends);
+    }
+
+    @Test
+    public void testWholeMessageHandlersStillGetTheResponse() throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        final byte[][] seen = new byte[1][];
+        config.addMessageHandler(new MessageHandler() {
+            @Override
+            public void handleRequest(URL endpoint, byte[] request) {
+            }
+
+            @Override
+            public void handleResponse(URL endpoint, byte[] response) {
+                seen[0] = response;
+            }
+        });
+        RecordingHandler streaming = new RecordingHandler();
+        config.addMessageHandler(streaming);
+
+        InputStream in = MessageHandlerInputStream.wrap(config, new URL("http://localhost/"),
+                new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")), null);
+        assertEquals(RESPONSE, new String(seen[0], "UTF-8"));
+
+        assertEquals(RESPONSE, new String(FileUtil.toBytes(in), "UTF-8"));
+        assertEquals(RESPONSE, streaming.body.toString("UTF-8"));
+        assertEquals(1, streaming.ends);
+    }
+
+    @Test
+    public void testStreamingTraceMatchesBufferedTrace() throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setPrettyPrintXml(true);
+        config.setTraceMessage(true);
+        File buffered = File.createTempFile("buffered", ".log");
+        File streamed = File.createTempFile("streamed", ".log");
+        buffered.deleteOnExit();
+        streamed.deleteOnExit();
+
+        config.setTraceFile(buffered.getPath());
+        config.teeInputStream(RESPONSE.getBytes("UTF-8"));
+
+        config.setTraceFile(streamed.getPath());
+        InputStream in = config.teeInputStream(new ByteArrayInputStream(RESPONSE.getBytes("UTF-8")));
+        byte[] buf = new byte[3];
+        while (in.read(buf) != -1) {
+            // read in small chunks so element boundaries fall between reads
+        }
+        in.close();
+        config.getTraceStream().flush();
+
+        String expected = FileUtil.toString(buffered);
+        assertEquals(expected, FileUtil.toString(streamed));
+        assertTrue(expected, expected.contains("  <b>one</b>"));
+    }
+
+    private static class RecordingHandler implements StreamingMessageHandler {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int starts;
+        int ends;
+
+        @Override
+        public void handleResponseStart(URL endpoint, Map<String, List<String>> headers) {
+            starts++;
+        }
+
+        @Override
+        public void handleResponseChunk(URL endpoint, byte[] chunk, int offset, int length) {
+            body.write(chunk, offset, length);
+        }
+
+        @Override
+        public void handleResponseEnd(URL endpoint) {
+            ends++;
+        }
+
+        @Override
+        public void handleRequest(URL endpoint, byte[] request) {
+        }
+
+        @Override
+        public void handleResponse(URL endpoint, byte[] response) {
+            fail("streaming handlers do not get the whole response");
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.sforce.ws.ConnectionException;
 import com.sforce.ws.ConnectorConfig;
 import com.sforce.ws.MessageHandler;
 import com.sforce.ws.bind.HTMLResponseException;
+import com.sforce.ws.bind.TypeInfo;
 import com.sforce.ws.bind.TypeMapper;
 import com.sforce.ws.bind.XMLizable;
 import com.sforce.ws.parser.PullParserException;
@@ -42,9 +43,13 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import static org.junit.Assert.*;
 
@@ -186,6 +191,170 @@ public class SoapConnectionTest {
     }
 
 
+    private static final String QUERY_RESPONSE = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+            "<soapenv:Body><queryResponse xmlns=\"urn:test\"><done>true</done>" +
+            "<records><name>a</name></records><records><name>b</name></records><records><name>c</name></records>" +
+            "</queryResponse></soapenv:Body></soapenv:Envelope>";
+    private static final QName QUERY_RESPONSE_NAME = new QName("urn:test", "queryResponse");
+
+    private SoapConnection newQueryConnection(ConnectorConfig config) {
+        config.setTransportFactory(new MockTransportFactory(new ByteArrayOutputStream(),
+                new ByteArrayInputStream(QUERY_RESPONSE.getBytes()), true, config));
+        return new SoapConnection("http://www.salesforce.com", "sobject", new TypeMapper(null, null, false), config);
+    }
+
+    @Test
+    public void testArraysAreBoundWithoutStreaming() throws ConnectionException {
+        SoapConnection connection = newQueryConnection(new ConnectorConfig());
+        TestQueryResult result = (TestQueryResult) connection.send("query", QUERY_RESPONSE_NAME, new TestClass(),
+                QUERY_RESPONSE_NAME, TestQueryResult.class);
+        assertTrue(result.done);
+        assertEquals(3, result.records.length);
+        assertEquals("c", result.records[2].name);
+    }
+
+    @Test
+    public void testStreamArrayToConsumer() throws ConnectionException {
+        SoapConnection connection = newQueryConnection(new ConnectorConfig());
+        final List<String> names = new ArrayList<>();
+        TestQueryResult result = (TestQueryResult) connection.send("query", QUERY_RESPONSE_NAME, new TestClass(),
+                QUERY_RESPONSE_NAME, TestQueryResult.class, TestRecord.class, record -> names.add(record.name));
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        assertTrue(result.done);
+        assertEquals(0, result.records.length);
+    }
+
+    @Test
+    public void testStreamingDoesNotLeakIntoConcurrentCalls() throws Exception {
+        final ConnectorConfig config = new ConnectorConfig();
+        config.setTransportFactory(() -> new MockTransport(new ByteArrayOutputStream(),
+                new ByteArrayInputStream(QUERY_RESPONSE.getBytes()), true, config));
+        final SoapConnection connection = new SoapConnection("http://www.salesforce.com", "sobject",
+                new TypeMapper(null, null, false), config);
+
+        final List<String> names = new ArrayList<>();
+        final TestQueryResult[] other = new TestQueryResult[1];
+        connection.send("query", QUERY_RESPONSE_NAME, new TestClass(), QUERY_RESPONSE_NAME, TestQueryResult.class,
+                TestRecord.class, record -> {
+                    names.add(record.name);
+                    if (other[0] == null) {
+                        // a plain call on another thread while this one is streaming
+                        Thread thread = new Thread(() -> {
+                            try {
+                                other[0] = (TestQueryResult) connection.send("query", QUERY_RESPONSE_NAME,
+                                        new TestClass(), QUERY_RESPONSE_NAME, TestQueryResult.class);
+                            } catch (ConnectionException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+                        thread.start();
+                        try {
+                            thread.join();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        assertEquals(3, other[0].records.length);
+    }
+
+    @Test
+    public void testStreamArrayToIterator() throws ConnectionException {
+        SoapConnection connection = newQueryConnection(new ConnectorConfig());
+        StreamingResponse<TestRecord> records = connection.sendStreaming("query", QUERY_RESPONSE_NAME,
+                new TestClass(), QUERY_RESPONSE_NAME, TestQueryResult.class, TestRecord.class);
+        StringBuilder names = new StringBuilder();
+        while (records.hasNext()) {
+            names.append(records.next().name);
+        }
+        assertEquals("abc", names.toString());
+        assertTrue(((TestQueryResult) records.getResponse()).done);
+    }
+
+    @Test
+    public void testClosingIteratorStopsTheCall() throws ConnectionException {
+        SoapConnection connection = newQueryConnection(new ConnectorConfig());
+        StreamingResponse<TestRecord> records = connection.sendStreaming("query", QUERY_RESPONSE_NAME,
+                new TestClass(), QUERY_RESPONSE_NAME, TestQueryResult.class, TestRecord.class);
+        assertEquals("a", records.next().name);
+        records.close();
+        assertFalse(records.hasNext());
+        try {
+            records.getResponse();
+            fail("Expected ConnectionException");
+        } catch (ConnectionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+    }
+
+    @Test
+    public void testDroppedIteratorIsGivenUp() throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setReadTimeout(200);
+        SoapConnection connection = newQueryConnection(config);
+        StreamingResponse<TestRecord> records = connection.sendStreaming("query", QUERY_RESPONSE_NAME,
+                new TestClass(), QUERY_RESPONSE_NAME, TestQueryResult.class, TestRecord.class);
+        assertEquals("a", records.next().name);
+        Thread.sleep(1000);
+        try {
+            records.hasNext();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("not read"));
+        }
+        try {
+            records.getResponse();
+            fail("Expected ConnectionException");
+        } catch (ConnectionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+    }
+
+    public static class TestQueryResult implements XMLizable {
+        private static final TypeInfo DONE = new TypeInfo("urn:test", "done", null, null, 1, 1, true);
+        private static final TypeInfo RECORDS = new TypeInfo("urn:test", "records", null, null, 0, -1, true);
+
+        boolean done;
+        TestRecord[] records;
+
+        @Override
+        public void write(QName element, XmlOutputStream out, TypeMapper typeMapper) throws IOException {
+        }
+
+        @Override
+        public void load(XmlInputStream in, TypeMapper typeMapper) throws IOException, ConnectionException {
+            typeMapper.consumeStartTag(in);
+            in.peekTag();
+            if (typeMapper.verifyElement(in, DONE)) {
+                done = typeMapper.readBoolean(in, DONE, boolean.class);
+            }
+            in.peekTag();
+            if (typeMapper.isElement(in, RECORDS)) {
+                records = (TestRecord[]) typeMapper.readObject(in, RECORDS, TestRecord[].class);
+            }
+            typeMapper.consumeEndTag(in);
+        }
+    }
+
+    public static class TestRecord implements XMLizable {
+        private static final TypeInfo NAME = new TypeInfo("urn:test", "name", null, null, 1, 1, true);
+
+        String name;
+
+        @Override
+        public void write(QName element, XmlOutputStream out, TypeMapper typeMapper) throws IOException {
+        }
+
+        @Override
+        public void load(XmlInputStream in, TypeMapper typeMapper) throws IOException, ConnectionException {
+            typeMapper.consumeStartTag(in);
+            in.peekTag();
+            name = typeMapper.readString(in, NAME, String.class);
+            typeMapper.consumeEndTag(in);
+        }
+    }
+
     public static class MockTransportFactory implements TransportFactory {
 
         private final ByteArrayOutputStream outputStream;
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.sforce.ws.util;
+
+import com.sforce.ws.ConnectorConfig;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadsTest {
+
+    private static boolean isJava21() {
+        String spec = System.getProperty("java.specification.version");
+        return !spec.startsWith("1.") && Integer.parseInt(spec) >= 21;
+    }
+
+    @Test
+    public void testSupportMatchesRuntime() {
+        assertEquals(isJava21(), VirtualThreads.isSupported());
+    }
+
+    @Test
+    public void testConfigFallsBackToPlatformThreads() throws Exception {
+        ConnectorConfig config = new ConnectorConfig();
+        config.setUseVirtualThreads(true);
+        assertEquals(VirtualThreads.isSupported(), config.isUseVirtualThreads());
+
+        String name = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                config.getAsyncExecutor()).get(10, TimeUnit.SECONDS);
+        assertTrue(name, name.startsWith(config.isUseVirtualThreads() ? "wsc-virtual-" : "wsc-async-"));
+
+        config.setUseVirtualThreads(false);
+        assertFalse(config.isUseVirtualThreads());
+    }
+
+    @Test
+    public void testExplicitExecutorWins() {
+        ConnectorConfig config = new ConnectorConfig();
+        Executor executor = Runnable::run;
+        config.setAsyncExecutor(executor);
+        config.setUseVirtualThreads(true);
+        assertSame(executor, config.getAsyncExecutor());
+    }
+}
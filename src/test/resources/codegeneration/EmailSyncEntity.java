@@ -11,15 +11,11 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
      */
     public EmailSyncEntity() {}
 
-    /* Cache the typeInfo instead of declaring static fields throughout*/
-    private transient java.util.Map<String, com.sforce.ws.bind.TypeInfo> typeInfoCache = new java.util.HashMap<String, com.sforce.ws.bind.TypeInfo>();
-    private com.sforce.ws.bind.TypeInfo _lookupTypeInfo(String fieldName, String namespace, String name, String typeNS, String type, int minOcc, int maxOcc, boolean elementForm) {
-      com.sforce.ws.bind.TypeInfo typeInfo = typeInfoCache.get(fieldName);
-      if (typeInfo == null) {
-        typeInfo = new com.sforce.ws.bind.TypeInfo(namespace, name, typeNS, type, minOcc, maxOcc, elementForm);
-        typeInfoCache.put(fieldName, typeInfo);
-      }
-      return typeInfo;
+    /* TypeInfo shared by all instances, indexed by field ordinal and filled in splits to keep <clinit> small */
+    private static final com.sforce.ws.bind.TypeInfo[] __typeInfos = new com.sforce.ws.bind.TypeInfo[8];
+    static {
+      int __n = 0;
+      __n = initTypeInfos1(__n);
     }
 
     /**
@@ -42,13 +38,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setConflictResolution(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("conflictResolution", "urn:partner.soap.sforce.com","conflictResolution","urn:partner.soap.sforce.com","EmailSyncConflictResolution",1,1,true))) {
-        setConflictResolution((com.sforce.soap.partner.wsc.EmailSyncConflictResolution)__typeMapper.readObject(__in, _lookupTypeInfo("conflictResolution", "urn:partner.soap.sforce.com","conflictResolution","urn:partner.soap.sforce.com","EmailSyncConflictResolution",1,1,true), com.sforce.soap.partner.wsc.EmailSyncConflictResolution.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[0])) {
+        setConflictResolution((com.sforce.soap.partner.wsc.EmailSyncConflictResolution)__typeMapper.readObject(__in, __typeInfos[0], com.sforce.soap.partner.wsc.EmailSyncConflictResolution.class));
       }
     }
 
     private void writeFieldConflictResolution(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("conflictResolution", "urn:partner.soap.sforce.com","conflictResolution","urn:partner.soap.sforce.com","EmailSyncConflictResolution",1,1,true), conflictResolution, conflictResolution__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[0], conflictResolution, conflictResolution__is_set);
     }
 
     /**
@@ -71,13 +67,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setDataSetFilter(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.isElement(__in, _lookupTypeInfo("dataSetFilter", "urn:partner.soap.sforce.com","dataSetFilter","http://www.w3.org/2001/XMLSchema","string",0,1,true))) {
-        setDataSetFilter(__typeMapper.readString(__in, _lookupTypeInfo("dataSetFilter", "urn:partner.soap.sforce.com","dataSetFilter","http://www.w3.org/2001/XMLSchema","string",0,1,true), java.lang.String.class));
+      if (__typeMapper.isElement(__in, __typeInfos[1])) {
+        setDataSetFilter(__typeMapper.readString(__in, __typeInfos[1], java.lang.String.class));
       }
     }
 
     private void writeFieldDataSetFilter(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("dataSetFilter", "urn:partner.soap.sforce.com","dataSetFilter","http://www.w3.org/2001/XMLSchema","string",0,1,true), dataSetFilter, dataSetFilter__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[1], dataSetFilter, dataSetFilter__is_set);
     }
 
     /**
@@ -100,13 +96,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setFieldMapping(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.isElement(__in, _lookupTypeInfo("fieldMapping", "urn:partner.soap.sforce.com","fieldMapping","urn:partner.soap.sforce.com","EmailSyncFieldMapping",0,-1,true))) {
-        setFieldMapping((com.sforce.soap.partner.wsc.EmailSyncFieldMapping[])__typeMapper.readObject(__in, _lookupTypeInfo("fieldMapping", "urn:partner.soap.sforce.com","fieldMapping","urn:partner.soap.sforce.com","EmailSyncFieldMapping",0,-1,true), com.sforce.soap.partner.wsc.EmailSyncFieldMapping[].class));
+      if (__typeMapper.isElement(__in, __typeInfos[2])) {
+        setFieldMapping((com.sforce.soap.partner.wsc.EmailSyncFieldMapping[])__typeMapper.readObject(__in, __typeInfos[2], com.sforce.soap.partner.wsc.EmailSyncFieldMapping[].class));
       }
     }
 
     private void writeFieldFieldMapping(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("fieldMapping", "urn:partner.soap.sforce.com","fieldMapping","urn:partner.soap.sforce.com","EmailSyncFieldMapping",0,-1,true), fieldMapping, fieldMapping__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[2], fieldMapping, fieldMapping__is_set);
     }
 
     /**
@@ -129,13 +125,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setMatchPreference(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("matchPreference", "urn:partner.soap.sforce.com","matchPreference","urn:partner.soap.sforce.com","EmailSyncMatchPreference",1,1,true))) {
-        setMatchPreference((com.sforce.soap.partner.wsc.EmailSyncMatchPreference)__typeMapper.readObject(__in, _lookupTypeInfo("matchPreference", "urn:partner.soap.sforce.com","matchPreference","urn:partner.soap.sforce.com","EmailSyncMatchPreference",1,1,true), com.sforce.soap.partner.wsc.EmailSyncMatchPreference.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[3])) {
+        setMatchPreference((com.sforce.soap.partner.wsc.EmailSyncMatchPreference)__typeMapper.readObject(__in, __typeInfos[3], com.sforce.soap.partner.wsc.EmailSyncMatchPreference.class));
       }
     }
 
     private void writeFieldMatchPreference(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("matchPreference", "urn:partner.soap.sforce.com","matchPreference","urn:partner.soap.sforce.com","EmailSyncMatchPreference",1,1,true), matchPreference, matchPreference__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[3], matchPreference, matchPreference__is_set);
     }
 
     /**
@@ -158,13 +154,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setName(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("name", "urn:partner.soap.sforce.com","name","http://www.w3.org/2001/XMLSchema","string",1,1,true))) {
-        setName(__typeMapper.readString(__in, _lookupTypeInfo("name", "urn:partner.soap.sforce.com","name","http://www.w3.org/2001/XMLSchema","string",1,1,true), java.lang.String.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[4])) {
+        setName(__typeMapper.readString(__in, __typeInfos[4], java.lang.String.class));
       }
     }
 
     private void writeFieldName(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("name", "urn:partner.soap.sforce.com","name","http://www.w3.org/2001/XMLSchema","string",1,1,true), name, name__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[4], name, name__is_set);
     }
 
     /**
@@ -187,13 +183,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setRecordTypeId(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("recordTypeId", "urn:partner.soap.sforce.com","recordTypeId","urn:partner.soap.sforce.com","ID",1,1,true))) {
-        setRecordTypeId(__typeMapper.readString(__in, _lookupTypeInfo("recordTypeId", "urn:partner.soap.sforce.com","recordTypeId","urn:partner.soap.sforce.com","ID",1,1,true), java.lang.String.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[5])) {
+        setRecordTypeId(__typeMapper.readString(__in, __typeInfos[5], java.lang.String.class));
       }
     }
 
     private void writeFieldRecordTypeId(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("recordTypeId", "urn:partner.soap.sforce.com","recordTypeId","urn:partner.soap.sforce.com","ID",1,1,true), recordTypeId, recordTypeId__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[5], recordTypeId, recordTypeId__is_set);
     }
 
     /**
@@ -216,13 +212,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setSyncDirection(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("syncDirection", "urn:partner.soap.sforce.com","syncDirection","urn:partner.soap.sforce.com","EmailSyncDirection",1,1,true))) {
-        setSyncDirection((com.sforce.soap.partner.wsc.EmailSyncDirection)__typeMapper.readObject(__in, _lookupTypeInfo("syncDirection", "urn:partner.soap.sforce.com","syncDirection","urn:partner.soap.sforce.com","EmailSyncDirection",1,1,true), com.sforce.soap.partner.wsc.EmailSyncDirection.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[6])) {
+        setSyncDirection((com.sforce.soap.partner.wsc.EmailSyncDirection)__typeMapper.readObject(__in, __typeInfos[6], com.sforce.soap.partner.wsc.EmailSyncDirection.class));
       }
     }
 
     private void writeFieldSyncDirection(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("syncDirection", "urn:partner.soap.sforce.com","syncDirection","urn:partner.soap.sforce.com","EmailSyncDirection",1,1,true), syncDirection, syncDirection__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[6], syncDirection, syncDirection__is_set);
     }
 
     /**
@@ -249,13 +245,13 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
     protected void setSyncFollowed(com.sforce.ws.parser.XmlInputStream __in,
         com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException, com.sforce.ws.ConnectionException {
       __in.peekTag();
-      if (__typeMapper.verifyElement(__in, _lookupTypeInfo("syncFollowed", "urn:partner.soap.sforce.com","syncFollowed","http://www.w3.org/2001/XMLSchema","boolean",1,1,true))) {
-        setSyncFollowed(__typeMapper.readBoolean(__in, _lookupTypeInfo("syncFollowed", "urn:partner.soap.sforce.com","syncFollowed","http://www.w3.org/2001/XMLSchema","boolean",1,1,true), boolean.class));
+      if (__typeMapper.verifyElement(__in, __typeInfos[7])) {
+        setSyncFollowed(__typeMapper.readBoolean(__in, __typeInfos[7], boolean.class));
       }
     }
 
     private void writeFieldSyncFollowed(com.sforce.ws.parser.XmlOutputStream __out, com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
-      __typeMapper.writeObject(__out, _lookupTypeInfo("syncFollowed", "urn:partner.soap.sforce.com","syncFollowed","http://www.w3.org/2001/XMLSchema","boolean",1,1,true), syncFollowed, syncFollowed__is_set);
+      __typeMapper.writeObject(__out, __typeInfos[7], syncFollowed, syncFollowed__is_set);
     }
 
     /**
@@ -302,6 +298,18 @@ public class EmailSyncEntity implements com.sforce.ws.bind.XMLizable {
       sb.append(' ').append(name).append("='").append(com.sforce.ws.util.Verbose.toString(value)).append("'\n");
     }
 
+    private static int initTypeInfos1(int __n) {
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","conflictResolution","urn:partner.soap.sforce.com","EmailSyncConflictResolution",1,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","dataSetFilter","http://www.w3.org/2001/XMLSchema","string",0,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","fieldMapping","urn:partner.soap.sforce.com","EmailSyncFieldMapping",0,-1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","matchPreference","urn:partner.soap.sforce.com","EmailSyncMatchPreference",1,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","name","http://www.w3.org/2001/XMLSchema","string",1,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","recordTypeId","urn:partner.soap.sforce.com","ID",1,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","syncDirection","urn:partner.soap.sforce.com","EmailSyncDirection",1,1,true);
+      __typeInfos[__n++] = new com.sforce.ws.bind.TypeInfo("urn:partner.soap.sforce.com","syncFollowed","http://www.w3.org/2001/XMLSchema","boolean",1,1,true);
+      return __n;
+    }
+
     private void writeFields1(com.sforce.ws.parser.XmlOutputStream __out,
          com.sforce.ws.bind.TypeMapper __typeMapper) throws java.io.IOException {
       writeFieldConflictResolution(__out, __typeMapper);
@@ -18,6 +18,7 @@ public class PartnerConnection {
   private TypeMapper __typeMapper = new TypeMapper("wsc130", null, false);
   private ConnectorConfig __config;
   private HashMap<QName, XMLizable> __extraHeaders = new HashMap<QName, XMLizable>();
+  private com.sforce.ws.transport.AsyncLimiter __asyncLimiter;
 
   public ConnectorConfig getConfig() {
     return __config;
@@ -242,6 +243,7 @@ public class PartnerConnection {
   public PartnerConnection(ConnectorConfig config) throws ConnectionException {
     this.__config = config;
     this.__typeMapper.setConfig(config);
+    this.__asyncLimiter = new com.sforce.ws.transport.AsyncLimiter(config);
 
     config.verifyPartnerEndpoint();
     if (!config.isManualLogin()) {
@@ -293,6 +295,34 @@ public class PartnerConnection {
     return __response.getResult();
   }
 
+  /**
+   * Asynchronous version of retrieve. Only HttpClientTransport waits for the response without
+   * holding a thread; with other transports each call holds a thread of
+   * ConnectorConfig.getAsyncExecutor() until it completes.
+   */
+  public java.util.concurrent.CompletableFuture<com.sforce.soap.partner.sobject.wsc130.SObject[]> retrieveAsync(java.lang.String fieldList,java.lang.String sObjectType,java.lang.String[] ids) {
+    com.sforce.ws.transport.SoapConnection __connection = newConnection();
+    com.sforce.soap.partner.wsc130.Retrieve_element __request = new com.sforce.soap.partner.wsc130.Retrieve_element();
+
+    __request.setFieldList(fieldList);
+    __request.setSObjectType(sObjectType);
+    __request.setIds(ids);
+
+    if (__SessionHeader != null) __connection.addHeader(SessionHeader_qname, __SessionHeader);
+    if (__CallOptions != null) __connection.addHeader(CallOptions_qname, __CallOptions);
+    if (__QueryOptions != null) __connection.addHeader(QueryOptions_qname, __QueryOptions);
+    if (__MruHeader != null) __connection.addHeader(MruHeader_qname, __MruHeader);
+
+    addHeaders(__connection);
+
+    return __asyncLimiter.submit(() -> __connection.sendAsync("",
+       retrieve_qname, __request, retrieveResponse_qname,
+       com.sforce.soap.partner.wsc130.RetrieveResponse_element.class)).thenApply(__result -> {
+      com.sforce.soap.partner.wsc130.RetrieveResponse_element __response = (com.sforce.soap.partner.wsc130.RetrieveResponse_element) __result;
+      return __response.getResult();
+    });
+  }
+
   private void addHeaders(com.sforce.ws.transport.SoapConnection __connection) {
     for(java.util.Map.Entry<QName, XMLizable> entry : __extraHeaders.entrySet()) {
       __connection.addHeader(entry.getKey(), entry.getValue());